@@ -1,19 +1,26 @@
 package com.github.cysong.dbassert;
 
 
+import com.github.cysong.dbassert.assertion.AssertResult;
 import com.github.cysong.dbassert.assertion.Assertion;
 import com.github.cysong.dbassert.assertion.AssertionExecutor;
+import com.github.cysong.dbassert.assertion.DbAssertExecutor;
+import com.github.cysong.dbassert.assertion.SampleEstimate;
 import com.github.cysong.dbassert.constant.*;
 import com.github.cysong.dbassert.exception.ConfigurationException;
 import com.github.cysong.dbassert.expression.*;
 import com.github.cysong.dbassert.object.Column;
 import com.github.cysong.dbassert.object.DbObject;
 import com.github.cysong.dbassert.option.DbAssertOptions;
+import com.github.cysong.dbassert.probe.ChangeProbe;
+import com.github.cysong.dbassert.probe.ChangeProbes;
+import com.github.cysong.dbassert.retry.BackoffStrategy;
 import com.github.cysong.dbassert.utitls.Utils;
 
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 
 /**
@@ -28,7 +35,7 @@ public class DbAssert {
     private List<Condition> currentConditions;
 
     /**
-     * create DbAssert instance by dbKey(get connect by dbKey from ConnectFactory)
+     * create DbAssert instance by dbKey(borrow connect by dbKey from ConnectFactory when run)
      *
      * @param dbKey database key
      * @return com.github.cysong.dbassert.DbAssert
@@ -37,8 +44,7 @@ public class DbAssert {
      **/
     public static DbAssert create(String dbKey) {
         assert Utils.isNotBlank(dbKey);
-        Connection conn = DbAssertOptions.getGlobal().getFactory().getConnectionByDbKey(dbKey);
-        return DbAssert.create(conn);
+        return new DbAssert(new Assertion(dbKey));
     }
 
     /**
@@ -50,11 +56,11 @@ public class DbAssert {
      * @date 2022/8/22 16:20
      **/
     public static DbAssert create(Connection conn) {
-        return new DbAssert(conn);
+        return new DbAssert(new Assertion(conn));
     }
 
-    private DbAssert(Connection conn) {
-        this.assertion = new Assertion(conn);
+    private DbAssert(Assertion assertion) {
+        this.assertion = assertion;
     }
 
     /**
@@ -96,6 +102,62 @@ public class DbAssert {
         return this;
     }
 
+    /**
+     * Set strategy to decide milliseconds to wait before every retry, such as exponential or jittered backoff
+     *
+     * @param backoff backoff strategy
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/14 11:00
+     **/
+    public DbAssert backoff(BackoffStrategy backoff) {
+        this.assertion.setBackoff(backoff);
+        return this;
+    }
+
+    /**
+     * Set overall deadline of assertion, polls until the deadline instead of retry times
+     * and the query in flight is cancelled when the deadline expires
+     *
+     * @param timeout milliseconds before assertion fails, 0 for no deadline
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/14 11:00
+     **/
+    public DbAssert timeout(long timeout) {
+        this.assertion.setTimeout(timeout);
+        return this;
+    }
+
+    /**
+     * Probe changes of the table before every retry, verification is skipped if the fingerprint not moves,
+     * the first and the final poll are always verified
+     *
+     * @param changeProbe change probe, such as {@link ChangeProbes#auto()} or {@link ChangeProbes#maxColumn(String)}
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/15 11:00
+     **/
+    public DbAssert changeProbe(ChangeProbe changeProbe) {
+        this.assertion.setChangeProbe(changeProbe);
+        return this;
+    }
+
+    /**
+     * Retry as soon as a write to the table is observed instead of waiting the whole interval,
+     * only supported by sqlite connections which observe writes by the same connection,
+     * other databases wait on timer
+     *
+     * @param waitOnChange whether retry on writes observed
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/16 11:00
+     **/
+    public DbAssert waitOnChange(boolean waitOnChange) {
+        this.assertion.setWaitOnChange(waitOnChange);
+        return this;
+    }
+
     /**
      * wait milliseconds before first database assert
      * (in case sometimes before database assertion system need time process data)
@@ -149,6 +211,224 @@ public class DbAssert {
         return this;
     }
 
+    /**
+     * Set rows fetched from database per round-trip when reading details(0 to use the driver default)
+     *
+     * @param fetchSize rows fetched per round-trip
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/5 11:02
+     **/
+    public DbAssert fetchSize(int fetchSize) {
+        this.assertion.setFetchSize(fetchSize);
+        return this;
+    }
+
+    /**
+     * Evaluate simple column conditions(equal, compare, between, in, null, contains) by database as violation counts,
+     * detail rows are only fetched for the other conditions or to report failures
+     * <p>
+     * values are compared by the rules of database, such as string collation and implicit type conversion
+     *
+     * @param pushdown whether push conditions down to database
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/9 14:20
+     **/
+    public DbAssert pushdown(boolean pushdown) {
+        this.assertion.setPushdown(pushdown);
+        return this;
+    }
+
+    /**
+     * Set which values tested are recorded and rendered to the report,
+     * record failures or summary only for assertions on many rows
+     *
+     * @param recordPolicy record policy
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/22 10:40
+     **/
+    public DbAssert recordPolicy(RecordPolicy recordPolicy) {
+        this.assertion.setRecordPolicy(recordPolicy);
+        return this;
+    }
+
+    /**
+     * Record the first failures only, the others are counted
+     *
+     * @param limit max failures recorded
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/22 10:40
+     **/
+    public DbAssert recordFirstFailures(int limit) {
+        this.assertion.setRecordPolicy(RecordPolicy.FIRST_FAILURES);
+        this.assertion.setRecordLimit(limit);
+        return this;
+    }
+
+    /**
+     * Set name of the assertion, consistency metrics are grouped by name, or by table name if not set
+     *
+     * @param name assertion name
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/21 10:10
+     **/
+    public DbAssert name(String name) {
+        this.assertion.setName(name);
+        return this;
+    }
+
+    /**
+     * Set reference timestamp of time to consistency, such as when the event was published,
+     * the time {@link #create(String)} called is used if not set
+     *
+     * @param timestamp reference timestamp in milliseconds
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/21 10:10
+     **/
+    public DbAssert since(long timestamp) {
+        this.assertion.setSince(timestamp);
+        return this;
+    }
+
+    /**
+     * Measure time to consistency by polling every {@link Constants#CONSISTENCY_POLL_INTERVAL} milliseconds
+     *
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/21 10:12
+     * @see #measureConsistency(long)
+     **/
+    public DbAssert measureConsistency() {
+        return this.measureConsistency(Constants.CONSISTENCY_POLL_INTERVAL);
+    }
+
+    /**
+     * Measure time from the reference timestamp to the first poll passed, reported to
+     * {@link com.github.cysong.dbassert.metrics.AssertionListener} as time to consistency.
+     * <p>
+     * Polls until the timeout, or the retry window(retryTimes * retryInterval) if timeout not set,
+     * so retry settings should be set before. Verification is skipped while the fingerprint of
+     * {@link ChangeProbes#exact()} not moves if no change probe set, and sqlite retries wake up on writes.
+     * Set a probe such as {@link ChangeProbes#maxColumn(String)} to skip verification on other databases,
+     * a probe under-reporting changes delays the time measured.
+     *
+     * @param pollInterval milliseconds between polls
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/21 10:12
+     **/
+    public DbAssert measureConsistency(long pollInterval) {
+        long window = assertion.getTimeout() > 0 ? assertion.getTimeout()
+                : assertion.getRetryTimes() * assertion.getRetryInterval();
+        this.assertion.setMeasureConsistency(true);
+        this.assertion.setRetry(true);
+        this.assertion.setTimeout(window);
+        this.assertion.setRetryInterval(pollInterval);
+        this.assertion.setBackoff(null);
+        if (assertion.getChangeProbe() == null) {
+            this.assertion.setChangeProbe(ChangeProbes.exact());
+        }
+        this.assertion.setWaitOnChange(true);
+        return this;
+    }
+
+    /**
+     * Verify all rows matched instead of the first page, rows are read in chunks of pageSize
+     * ordered by the single column primary key of the table
+     *
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/13 10:05
+     **/
+    public DbAssert fullScan() {
+        return this.fullScan(null);
+    }
+
+    /**
+     * Verify all rows matched instead of the first page, rows are read in chunks of pageSize ordered by scanKey
+     *
+     * @param scanKey unique and not null column to order and paginate rows, null to use the primary key
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/13 10:05
+     **/
+    public DbAssert fullScan(String scanKey) {
+        this.assertion.setFullScan(true);
+        this.assertion.setScanKey(scanKey);
+        return this;
+    }
+
+    /**
+     * Verify column conditions on rows sampled by random keys of the single column primary key,
+     * see {@link DbAssert#sample(int, double, String)}
+     *
+     * @param sampleSize rows sampled, a query per row
+     * @param tolerance  max violation rate of all rows allowed, such as 0.01
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/29 11:20
+     **/
+    public DbAssert sample(int sampleSize, double tolerance) {
+        return this.sample(sampleSize, tolerance, null);
+    }
+
+    /**
+     * Verify column conditions on rows sampled instead of all rows matched, for tables too large to scan.
+     * Each row sampled is the first row at or after a random key between the min and max sampleKey, queried one by one,
+     * the assertion passes if the upper bound of the confidence interval of the violation rate does not exceed the tolerance.
+     * A row is drawn in proportion to the gap of keys before it, so the sample is only unbiased if keys are dense,
+     * such as auto increment ids without many rows deleted or filtered out.
+     * Total rows and aggregate conditions are still verified on all rows matched.
+     * Even without any violation the upper bound is above 0, so the sample size must be at least
+     * {@link SampleEstimate#getMinSampleSize(double, double)}, otherwise the assertion is rejected as it can never pass
+     *
+     * @param sampleSize rows sampled, a query per row
+     * @param tolerance  max violation rate of all rows allowed, such as 0.01
+     * @param sampleKey  unique, not null and numeric column to draw keys, null to use the primary key
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/29 11:20
+     **/
+    public DbAssert sample(int sampleSize, double tolerance, String sampleKey) {
+        assert sampleSize > 0;
+        assert tolerance >= 0 && tolerance < 1;
+        this.assertion.setSampleSize(sampleSize);
+        this.assertion.setSampleTolerance(tolerance);
+        this.assertion.setScanKey(sampleKey);
+        return this;
+    }
+
+    /**
+     * Set confidence level of the violation rate interval estimated by sample(default 0.95)
+     *
+     * @param confidence confidence level between 0 and 1
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/29 11:25
+     **/
+    public DbAssert sampleConfidence(double confidence) {
+        this.assertion.setSampleConfidence(confidence);
+        return this;
+    }
+
+    /**
+     * Set seed of random keys sampled, the same rows are sampled by the same seed if data not changed
+     *
+     * @param seed random seed
+     * @return com.github.cysong.dbassert.DbAssert
+     * @author cysong
+     * @date 2022/9/29 11:25
+     **/
+    public DbAssert sampleSeed(long seed) {
+        this.assertion.setSampleSeed(seed);
+        return this;
+    }
+
     /**
      * Set name of database
      *
@@ -1066,6 +1346,25 @@ public class DbAssert {
      * @date 2022/8/22 17:05
      **/
     public void run() {
+        validate();
+        AssertionExecutor.create(this.assertion).run();
+    }
+
+    /**
+     * Execute the Assertions by the executor of global options without blocking the current thread,
+     * see {@link DbAssertExecutor} for the limits of concurrency
+     *
+     * @return java.util.concurrent.CompletableFuture<com.github.cysong.dbassert.assertion.AssertResult>
+     * completed with the result if passed, or exceptionally with the AssertionError or exception thrown if failed
+     * @author cysong
+     * @date 2022/9/24 11:45
+     **/
+    public CompletableFuture<AssertResult> runAsync() {
+        validate();
+        return DbAssertOptions.getGlobal().getExecutor().submit(AssertionExecutor.create(this.assertion));
+    }
+
+    private void validate() {
         flushCurrentObject(null);
         if (assertion.getTableName() == null) {
             throw new ConfigurationException("Table name can not be null");
@@ -1073,8 +1372,53 @@ public class DbAssert {
         if (Utils.isEmpty(assertion.getVerifies()) && Utils.isEmpty(assertion.getRowVerifies())) {
             throw new ConfigurationException("At least one verify condition required");
         }
+        if (assertion.isFullScan() && assertion.isSampled()) {
+            throw new ConfigurationException("Full scan and sample can not be used together");
+        }
+        if (assertion.isFullScan() || assertion.isSampled()) {
+            checkFullScan();
+        }
+        if (assertion.isSampled()) {
+            checkSample();
+        }
+    }
 
-        AssertionExecutor.create(this.assertion).run();
+    private void checkSample() {
+        long minSize = SampleEstimate.getMinSampleSize(assertion.getSampleConfidence(), assertion.getSampleTolerance());
+        if (minSize < 0) {
+            throw new ConfigurationException(String.format("Sample can never pass tolerance %s at confidence %s, use fullScan instead",
+                    assertion.getSampleTolerance(), assertion.getSampleConfidence()));
+        }
+        if (assertion.getSampleSize() < minSize) {
+            throw new ConfigurationException(String.format("Sample of %d rows can never pass tolerance %s at confidence %s, at least %d rows required",
+                    assertion.getSampleSize(), assertion.getSampleTolerance(), assertion.getSampleConfidence(), minSize));
+        }
+        if (assertion.getVerifies() != null) {
+            assertion.getVerifies().stream()
+                    .filter(con -> con instanceof ListCondition)
+                    .findAny()
+                    .ifPresent(con -> {
+                        throw new ConfigurationException("List condition is not supported by sample:" + con.getColumnName());
+                    });
+        }
+    }
+
+    private void checkFullScan() {
+        if (Utils.isNotEmpty(assertion.getSorts())) {
+            throw new ConfigurationException("Sort is not supported by full scan, rows are ordered by the scan key");
+        }
+        if (assertion.getStartIndex() > 0) {
+            throw new ConfigurationException("Start index is not supported by full scan");
+        }
+        if (assertion.getVerifies() != null) {
+            assertion.getVerifies().stream()
+                    .filter(con -> con instanceof ListCondition)
+                    .filter(con -> con.getComparator() == Comparator.LIST_MATCHES || con.getComparator() == Comparator.LIST_NOT_MATCH)
+                    .findAny()
+                    .ifPresent(con -> {
+                        throw new ConfigurationException("Predicate on entire list is not supported by full scan:" + con.getColumnName());
+                    });
+        }
     }
 
 }
@@ -2,73 +2,190 @@ package com.github.cysong.dbassert.assertion;
 
 import com.github.cysong.dbassert.constant.Aggregate;
 import com.github.cysong.dbassert.constant.Comparator;
+import com.github.cysong.dbassert.constant.RecordPolicy;
 import com.github.cysong.dbassert.expression.AggregateCondition;
 import com.github.cysong.dbassert.expression.Condition;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
+ * values tested by conditions, recorded by the record policy
+ * <p>
+ * Details are only created for values the policy keeps, {@link RecordPolicy#SUMMARY} keeps counters
+ * of each condition instead, so memory used does not grow with the rows tested.
+ *
  * @author cysong
  * @date 2022/8/26 15:03
  **/
 public class AssertResult {
+    private final RecordPolicy policy;
+    private final int limit;
     private List<Detail> details;
+    /**
+     * summary of each condition, keyed by condition
+     **/
+    private Map<Object, ConditionSummary> summaries;
+    /**
+     * failures not recorded by {@link RecordPolicy#FIRST_FAILURES}
+     **/
+    private long droppedFailures;
+    /**
+     * violation rate estimated by the last sample, null if not sampled
+     **/
+    private SampleEstimate sampleEstimate;
 
     public static AssertResult create() {
-        return new AssertResult();
+        return new AssertResult(RecordPolicy.ALL, 0);
     }
 
-    private AssertResult() {
-        this.details = new ArrayList<>();
+    /**
+     * create result with the record policy
+     *
+     * @param policy record policy
+     * @param limit  max failures recorded by {@link RecordPolicy#FIRST_FAILURES}
+     * @return com.github.cysong.dbassert.assertion.AssertResult
+     * @author cysong
+     * @date 2022/9/22 10:20
+     **/
+    public static AssertResult create(RecordPolicy policy, int limit) {
+        assert policy != null && limit >= 0;
+        return new AssertResult(policy, limit);
+    }
+
+    private AssertResult(RecordPolicy policy, int limit) {
+        this.policy = policy;
+        this.limit = limit;
+        this.clearDetails();
     }
 
     public AssertResult addSuccess(String column, Comparator comparator, Object actual, Object expected) {
-        this.details.add(Detail.success(column, comparator, actual, expected));
-        return this;
+        return this.record(null, column, null, comparator, true, actual, expected, -1);
     }
 
     public AssertResult addSuccess(String column, Aggregate aggregate, Comparator comparator, Object actual, Object expected) {
-        this.details.add(Detail.success(column, aggregate, comparator, actual, expected));
-        return this;
+        return this.record(null, column, aggregate, comparator, true, actual, expected, -1);
     }
 
     public AssertResult addFail(String column, Comparator comparator, Object actual, Object expected) {
-        this.details.add(Detail.fail(column, comparator, actual, expected));
-        return this;
+        return this.record(null, column, null, comparator, false, actual, expected, -1);
     }
 
     public AssertResult addFail(String column, Aggregate aggregate, Comparator comparator, Object actual, Object expected) {
-        this.details.add(Detail.fail(column, aggregate, comparator, actual, expected));
-        return this;
+        return this.record(null, column, aggregate, comparator, false, actual, expected, -1);
     }
 
     public AssertResult addSuccess(String column, Aggregate aggregate, Comparator comparator, boolean success, Object actual, Object expected) {
-        this.details.add(Detail.create(column, aggregate, comparator, success, actual, expected));
-        return this;
+        return this.record(null, column, aggregate, comparator, success, actual, expected, -1);
     }
 
     public AssertResult add(boolean pass, AggregateCondition con, Object actual) {
-        this.details.add(Detail.create(con.getColumnName(), con.getAggregate(), con.getComparator(), pass, actual, con.getExpected()));
-        return this;
+        return this.record(con, con.getColumnName(), con.getAggregate(), con.getComparator(), pass, actual, con.getExpected(), -1);
     }
 
     public AssertResult add(boolean pass, Condition con, Object actual) {
-        this.details.add(Detail.create(con.getColumnName(), null, con.getComparator(), pass, actual, con.getExpected()));
-        return this;
+        return this.add(pass, con, actual, -1);
+    }
+
+    /**
+     * record a value of a row tested by the condition
+     *
+     * @param pass   whether the value passed
+     * @param con    condition tested
+     * @param actual value tested
+     * @param row    row number starts from 1, -1 if not a row value
+     * @return com.github.cysong.dbassert.assertion.AssertResult
+     * @author cysong
+     * @date 2022/9/22 10:22
+     **/
+    public AssertResult add(boolean pass, Condition con, Object actual, long row) {
+        return this.record(con, con.getColumnName(), null, con.getComparator(), pass, actual, con.getExpected(), row);
     }
 
     public AssertResult add(String column, Aggregate aggregate, Comparator comparator, boolean pass, Object actual, Object expected) {
-        this.details.add(Detail.create(column, aggregate, comparator, pass, actual, expected));
+        return this.record(null, column, aggregate, comparator, pass, actual, expected, -1);
+    }
+
+    private AssertResult record(Object key, String column, Aggregate aggregate, Comparator comparator,
+                                boolean pass, Object actual, Object expected, long row) {
+        switch (policy) {
+            case ALL:
+                break;
+            case FAILURES:
+                if (pass) {
+                    return this;
+                }
+                break;
+            case FIRST_FAILURES:
+                if (pass) {
+                    return this;
+                }
+                if (details.size() >= limit) {
+                    droppedFailures++;
+                    return this;
+                }
+                break;
+            case SUMMARY:
+                if (key == null) {
+                    key = Arrays.asList(column, aggregate, comparator, expected);
+                }
+                ConditionSummary summary = summaries.get(key);
+                if (summary == null) {
+                    summary = new ConditionSummary(column, aggregate, comparator, expected);
+                    summaries.put(key, summary);
+                }
+                summary.count(pass, actual, row);
+                return this;
+            default:
+                throw new IllegalArgumentException("Unrecognized record policy:" + policy.name());
+        }
+        details.add(Detail.create(column, aggregate, comparator, pass, actual, expected));
         return this;
     }
 
+    public RecordPolicy getPolicy() {
+        return policy;
+    }
 
     public List<Detail> getDetails() {
         return this.details;
     }
 
+    /**
+     * summaries of conditions in order first tested, empty if policy is not {@link RecordPolicy#SUMMARY}
+     *
+     * @return java.util.Collection<com.github.cysong.dbassert.assertion.ConditionSummary>
+     * @author cysong
+     * @date 2022/9/22 10:26
+     **/
+    public Collection<ConditionSummary> getSummaries() {
+        return summaries == null ? Collections.emptyList() : summaries.values();
+    }
+
+    public long getDroppedFailures() {
+        return droppedFailures;
+    }
+
+    public SampleEstimate getSampleEstimate() {
+        return sampleEstimate;
+    }
+
+    public void setSampleEstimate(SampleEstimate sampleEstimate) {
+        this.sampleEstimate = sampleEstimate;
+    }
+
+    /**
+     * clear values recorded by the previous poll
+     *
+     * @author cysong
+     * @date 2022/9/22 10:28
+     **/
     public void clearDetails() {
-        this.details = new ArrayList<>();
+        droppedFailures = 0;
+        if (policy == RecordPolicy.SUMMARY) {
+            this.details = Collections.emptyList();
+            this.summaries = new LinkedHashMap<>();
+        } else {
+            this.details = new ArrayList<>();
+        }
     }
 }
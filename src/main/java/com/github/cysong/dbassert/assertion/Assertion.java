@@ -1,11 +1,14 @@
 package com.github.cysong.dbassert.assertion;
 
 import com.github.cysong.dbassert.constant.Constants;
+import com.github.cysong.dbassert.constant.RecordPolicy;
 import com.github.cysong.dbassert.constant.Sort;
 import com.github.cysong.dbassert.expression.AbstractFilter;
 import com.github.cysong.dbassert.expression.Condition;
 import com.github.cysong.dbassert.object.DbObject;
 import com.github.cysong.dbassert.option.DbAssertOptions;
+import com.github.cysong.dbassert.probe.ChangeProbe;
+import com.github.cysong.dbassert.retry.BackoffStrategy;
 
 import java.sql.Connection;
 import java.util.ArrayList;
@@ -19,6 +22,10 @@ import java.util.List;
  * @date 2022/08/22 15:50
  **/
 public class Assertion {
+    /**
+     * connection is borrowed by dbKey when run if set
+     **/
+    private String dbKey;
     private Connection conn;
     private String database;
     private String databaseAlias;
@@ -28,11 +35,47 @@ public class Assertion {
     private boolean retry;
     private int retryTimes;
     private long retryInterval;
+    private BackoffStrategy backoff;
+    private long timeout;
+    private ChangeProbe changeProbe;
+    private boolean waitOnChange;
     private long delay;
     private boolean failIfNotFound;
 
     private int startIndex = Constants.START_INDEX;
     private int pageSize;
+    private int fetchSize;
+    private boolean pushdown;
+    /**
+     * walk all rows matched in chunks of pageSize ordered by scanKey, instead of the first page only
+     **/
+    private boolean fullScan;
+    private String scanKey;
+    /**
+     * rows sampled by random ranges of scanKey, 0 for not sampled
+     **/
+    private int sampleSize;
+    /**
+     * max violation rate of all rows allowed, estimated from the sample at the confidence level
+     **/
+    private double sampleTolerance;
+    private double sampleConfidence = Constants.SAMPLE_CONFIDENCE;
+    private long sampleSeed = Constants.SAMPLE_SEED;
+    private RecordPolicy recordPolicy;
+    private int recordLimit;
+    /**
+     * name of the assertion, consistency metrics are grouped by name or table name if not set
+     **/
+    private String name;
+    private final long createTime = System.currentTimeMillis();
+    /**
+     * reference timestamp of time to consistency, create time is used if 0
+     **/
+    private long since;
+    /**
+     * record time from the reference timestamp to the first poll passed
+     **/
+    private boolean measureConsistency;
 
     private List<AbstractFilter> filters;
     private List<Condition> verifies;
@@ -45,6 +88,12 @@ public class Assertion {
         this.initFromGlobalOptions();
     }
 
+    public Assertion(String dbKey) {
+        assert dbKey != null;
+        this.dbKey = dbKey;
+        this.initFromGlobalOptions();
+    }
+
     public void addAlias(DbObject dbObject) {
         assert dbObject != null;
         switch (dbObject.getType()) {
@@ -112,15 +161,31 @@ public class Assertion {
         this.retry = options.isRetry();
         this.retryInterval = options.getRetryInterval();
         this.retryTimes = options.getRetryTimes();
+        this.backoff = options.getBackoff();
+        this.timeout = options.getTimeout();
+        this.changeProbe = options.getChangeProbe();
+        this.waitOnChange = options.isWaitOnChange();
         this.delay = options.getDelay();
         this.failIfNotFound = options.isFailIfNotFound();
         this.pageSize = options.getMaxPageSize();
+        this.fetchSize = options.getFetchSize();
+        this.pushdown = options.isPushdown();
+        this.recordPolicy = options.getRecordPolicy();
+        this.recordLimit = options.getRecordLimit();
+    }
+
+    public String getDbKey() {
+        return dbKey;
     }
 
     public Connection getConn() {
         return conn;
     }
 
+    public void setConn(Connection conn) {
+        this.conn = conn;
+    }
+
     public String getDatabase() {
         return database;
     }
@@ -181,6 +246,39 @@ public class Assertion {
         this.retryInterval = retryInterval;
     }
 
+    public BackoffStrategy getBackoff() {
+        return backoff;
+    }
+
+    public void setBackoff(BackoffStrategy backoff) {
+        this.backoff = backoff;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        assert timeout >= 0;
+        this.timeout = timeout;
+    }
+
+    public ChangeProbe getChangeProbe() {
+        return changeProbe;
+    }
+
+    public void setChangeProbe(ChangeProbe changeProbe) {
+        this.changeProbe = changeProbe;
+    }
+
+    public boolean isWaitOnChange() {
+        return waitOnChange;
+    }
+
+    public void setWaitOnChange(boolean waitOnChange) {
+        this.waitOnChange = waitOnChange;
+    }
+
     public long getDelay() {
         return delay;
     }
@@ -216,6 +314,136 @@ public class Assertion {
         this.pageSize = pageSize;
     }
 
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        assert fetchSize >= 0;
+        this.fetchSize = fetchSize;
+    }
+
+    public boolean isPushdown() {
+        return pushdown;
+    }
+
+    public void setPushdown(boolean pushdown) {
+        this.pushdown = pushdown;
+    }
+
+    public boolean isFullScan() {
+        return fullScan;
+    }
+
+    public void setFullScan(boolean fullScan) {
+        this.fullScan = fullScan;
+    }
+
+    public String getScanKey() {
+        return scanKey;
+    }
+
+    public void setScanKey(String scanKey) {
+        this.scanKey = scanKey;
+    }
+
+    public boolean isSampled() {
+        return sampleSize > 0;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public void setSampleSize(int sampleSize) {
+        assert sampleSize >= 0;
+        this.sampleSize = sampleSize;
+    }
+
+    public double getSampleTolerance() {
+        return sampleTolerance;
+    }
+
+    public void setSampleTolerance(double sampleTolerance) {
+        assert sampleTolerance >= 0 && sampleTolerance < 1;
+        this.sampleTolerance = sampleTolerance;
+    }
+
+    public double getSampleConfidence() {
+        return sampleConfidence;
+    }
+
+    public void setSampleConfidence(double sampleConfidence) {
+        assert sampleConfidence > 0 && sampleConfidence < 1;
+        this.sampleConfidence = sampleConfidence;
+    }
+
+    public long getSampleSeed() {
+        return sampleSeed;
+    }
+
+    public void setSampleSeed(long sampleSeed) {
+        this.sampleSeed = sampleSeed;
+    }
+
+    public RecordPolicy getRecordPolicy() {
+        return recordPolicy;
+    }
+
+    public void setRecordPolicy(RecordPolicy recordPolicy) {
+        assert recordPolicy != null;
+        this.recordPolicy = recordPolicy;
+    }
+
+    public int getRecordLimit() {
+        return recordLimit;
+    }
+
+    public void setRecordLimit(int recordLimit) {
+        assert recordLimit >= 0;
+        this.recordLimit = recordLimit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    public void setSince(long since) {
+        assert since >= 0;
+        this.since = since;
+    }
+
+    /**
+     * reference timestamp of time to consistency
+     *
+     * @return long since if set, otherwise create time
+     * @author cysong
+     * @date 2022/9/21 10:05
+     **/
+    public long getReferenceTime() {
+        return since > 0 ? since : createTime;
+    }
+
+    public boolean isMeasureConsistency() {
+        return measureConsistency;
+    }
+
+    public void setMeasureConsistency(boolean measureConsistency) {
+        this.measureConsistency = measureConsistency;
+    }
+
     public List<AbstractFilter> getFilters() {
         return filters;
     }
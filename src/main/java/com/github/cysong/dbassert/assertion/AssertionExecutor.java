@@ -2,14 +2,28 @@ package com.github.cysong.dbassert.assertion;
 
 import com.github.cysong.dbassert.constant.Aggregate;
 import com.github.cysong.dbassert.constant.Constants;
+import com.github.cysong.dbassert.constant.RecordPolicy;
+import com.github.cysong.dbassert.datasource.QueryCoalescer;
+import com.github.cysong.dbassert.datasource.ResultCache;
+import com.github.cysong.dbassert.datasource.StatementCache;
+import com.github.cysong.dbassert.exception.AssertionInterruptedException;
 import com.github.cysong.dbassert.exception.Exceptions;
 import com.github.cysong.dbassert.expression.AggregateCondition;
 import com.github.cysong.dbassert.expression.Condition;
-import com.github.cysong.dbassert.expression.ListCondition;
+import com.github.cysong.dbassert.metrics.AssertionListener;
+import com.github.cysong.dbassert.metrics.AssertionMetrics;
+import com.github.cysong.dbassert.metrics.Phase;
 import com.github.cysong.dbassert.option.DbAssertOptions;
-import com.github.cysong.dbassert.report.HtmlTableBuilder;
+import com.github.cysong.dbassert.probe.ChangeProbe;
+import com.github.cysong.dbassert.report.ReportFormat;
+import com.github.cysong.dbassert.report.ReportWriter;
 import com.github.cysong.dbassert.report.Reporter;
 import com.github.cysong.dbassert.report.Status;
+import com.github.cysong.dbassert.retry.BackoffStrategy;
+import com.github.cysong.dbassert.retry.FixedBackoff;
+import com.github.cysong.dbassert.retry.TimerWaitStrategy;
+import com.github.cysong.dbassert.retry.WaitStrategies;
+import com.github.cysong.dbassert.retry.WaitStrategy;
 import com.github.cysong.dbassert.sql.SqlBuilderSelector;
 import com.github.cysong.dbassert.sql.SqlResult;
 import com.github.cysong.dbassert.utitls.SqlUtils;
@@ -17,12 +31,19 @@ import com.github.cysong.dbassert.utitls.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sql.rowset.CachedRowSet;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.sql.SQLTimeoutException;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Executor for asserting
@@ -32,8 +53,51 @@ import java.util.Map;
  **/
 public class AssertionExecutor {
     private static final Logger log = LoggerFactory.getLogger(AssertionExecutor.class);
+    /**
+     * cancel queries still running when the deadline expires
+     **/
+    private static final ScheduledThreadPoolExecutor CANCELLER = createCanceller();
     private final Assertion assertion;
     private AssertResult result;
+    private DetailEvaluator detailEvaluator;
+    /**
+     * evaluate all conditions including conditions pushed down, only used to report failures
+     **/
+    private DetailEvaluator reportEvaluator;
+    private ScanEvaluator scanEvaluator;
+    private ScanEvaluator reportScanEvaluator;
+    private SampleEvaluator sampleEvaluator;
+    /**
+     * deadline timestamp of assertion, 0 for no deadline
+     **/
+    private long deadline;
+    /**
+     * fingerprint of data at the last verification
+     **/
+    private Object fingerprint;
+    private WaitStrategy waitStrategy = TimerWaitStrategy.create();
+    private List<CompiledCondition> rowConditions;
+    private Map<String, List<CompiledCondition>> aggConditions;
+    /**
+     * metrics of the assertion, null if no listener registered
+     **/
+    private AssertionMetrics metrics;
+    /**
+     * reporter of global options when created, null if not set
+     **/
+    private final Reporter reporter;
+    /**
+     * polls are scheduled by {@link DbAssertExecutor} instead of blocking the thread
+     **/
+    private boolean async;
+    private long start;
+    private SqlResult sqlResult;
+    private BackoffStrategy backoff;
+    private int retry;
+    /**
+     * connection the fingerprint was taken on, fingerprints of different connections are not comparable
+     **/
+    private Connection fingerprintConn;
 
     public static AssertionExecutor create(Assertion assertion) {
         return new AssertionExecutor(assertion);
@@ -41,65 +105,714 @@ public class AssertionExecutor {
 
     private AssertionExecutor(Assertion assertion) {
         this.assertion = assertion;
-        result = AssertResult.create();
+        this.reporter = DbAssertOptions.getGlobal().getReporter();
+        result = AssertResult.create(assertion.getRecordPolicy(), assertion.getRecordLimit());
     }
 
     /**
-     * do the assert
+     * do the assert, the current thread is blocked until the assertion passes or fails
      *
      * @author cysong
      * @date 2022/8/23 9:25
      **/
     public void run() {
-        startStep();
+        begin();
         try {
-            SqlResult result = SqlBuilderSelector.getSqlBuilder(assertion).build();
-            printSql(result);
-            addSqlAttachment(result);
-
+            acquireConnection();
+            prepare();
             if (this.assertion.getDelay() > 0) {
-                Utils.sleep(this.assertion.getDelay());
-            }
-
-            //total loop times
-            int totalLoop = assertion.isRetry() ? assertion.getRetryTimes() + 1 : 1;
-            int loop = 1;
-            long timestamp = System.currentTimeMillis();
-            printSummaryLog();
-            do {
-                if (loop > 1) {
-                    printRetryLog(loop - 1);
-                    long waitMills = timestamp + assertion.getRetryInterval() - System.currentTimeMillis();
-                    if (waitMills > 0) {
-                        Utils.sleep(waitMills);
+                sleep(this.assertion.getDelay());
+            }
+            if (assertion.isRetry() && assertion.isWaitOnChange()) {
+                waitStrategy = WaitStrategies.onChange(assertion.getConn(), assertion.getDatabase(), assertion.getTableName());
+            }
+            long waitMills;
+            while ((waitMills = poll()) >= 0) {
+                sleep(waitMills);
+            }
+        } catch (Throwable throwable) {
+            fail(throwable);
+            Exceptions.check(throwable);
+        } finally {
+            releaseConnection();
+            end();
+        }
+    }
+
+    /**
+     * start timing and reporting of the assertion, the report step of asynchronous assertions
+     * is started when completed, so that all report calls of the step are made by one thread
+     *
+     * @author cysong
+     * @date 2022/9/24 10:10
+     **/
+    void begin() {
+        start = System.currentTimeMillis();
+        if (!DbAssertOptions.getGlobal().getListeners().isEmpty()) {
+            metrics = AssertionMetrics.create(assertion.getDbKey(), assertion.getTableName());
+            metrics.setName(assertion.getName());
+            metrics.setConsistencyMeasured(assertion.isMeasureConsistency());
+        }
+        if (!async) {
+            startStep();
+        }
+    }
+
+    /**
+     * borrow connection by dbKey, connections given by user are used as is
+     *
+     * @author cysong
+     * @date 2022/9/24 10:15
+     **/
+    void acquireConnection() {
+        if (assertion.getDbKey() != null) {
+            long acquireStart = startTimer();
+            assertion.setConn(DbAssertOptions.getGlobal().getFactory().borrowConnection(assertion.getDbKey()));
+            stopTimer(Phase.CONNECTION_ACQUIRE, acquireStart);
+        }
+    }
+
+    void releaseConnection() {
+        if (assertion.getDbKey() != null && assertion.getConn() != null) {
+            DbAssertOptions.getGlobal().getFactory().returnConnection(assertion.getDbKey(), assertion.getConn());
+            assertion.setConn(null);
+        }
+    }
+
+    /**
+     * build sql and compile conditions before the first poll
+     *
+     * @author cysong
+     * @date 2022/9/24 10:20
+     **/
+    void prepare() {
+        if (assertion.getTimeout() > 0) {
+            deadline = System.currentTimeMillis() + assertion.getTimeout();
+        }
+        long buildStart = startTimer();
+        sqlResult = SqlBuilderSelector.getSqlBuilder(assertion).build();
+        compileConditions(sqlResult);
+        stopTimer(Phase.SQL_BUILD, buildStart);
+        long renderStart = startTimer();
+        printSql(sqlResult);
+        if (!async) {
+            addSqlAttachment(sqlResult);
+        }
+        stopTimer(Phase.REPORT_RENDER, renderStart);
+
+        backoff = assertion.getBackoff() != null ? assertion.getBackoff()
+                : FixedBackoff.create(assertion.getRetryInterval());
+        printSummaryLog();
+    }
+
+    /**
+     * run one poll of the assertion
+     *
+     * @return long milliseconds to wait before the next poll, not beyond the deadline, -1 if the assertion is completed
+     * @author cysong
+     * @date 2022/9/24 10:25
+     **/
+    long poll() throws SQLException {
+        checkInterrupted();
+        long timestamp = System.currentTimeMillis();
+        long interval = backoff.nextInterval(retry + 1);
+        //the final poll throws AssertionError if fail
+        boolean isFinal;
+        if (!assertion.isRetry()) {
+            isFinal = true;
+        } else if (deadline > 0) {
+            isFinal = timestamp + interval >= deadline;
+        } else {
+            isFinal = retry >= assertion.getRetryTimes();
+        }
+
+        //the fingerprint is taken before verification, the first and the final poll are always verified
+        boolean changed = isFinal || isChanged();
+        if (retry > 0 && !changed) {
+            log.info("Data not changed, skip verification");
+        } else if (verify(sqlResult, isFinal)) {
+            log.info("Assert success");
+            if (metrics != null) {
+                metrics.setPassed(true);
+                metrics.setTimeToPass(System.currentTimeMillis() - start);
+            }
+            if (assertion.isMeasureConsistency()) {
+                recordConsistency(timestamp);
+            }
+            if (async) {
+                startStep();
+                addSqlAttachment(sqlResult);
+            }
+            addReportDetails();
+            endStep(Status.PASSED);
+            return -1;
+        } else if (isFinal) {
+            return -1;
+        }
+        this.result.clearDetails();
+        printRetryLog(++retry);
+        if (metrics != null) {
+            metrics.setRetries(retry);
+        }
+        return Math.max(0, remaining(timestamp + interval - System.currentTimeMillis()));
+    }
+
+    /**
+     * report the failure of the assertion
+     *
+     * @param throwable AssertionError or exception thrown by the assertion
+     * @author cysong
+     * @date 2022/9/24 10:30
+     **/
+    void fail(Throwable throwable) {
+        if (async) {
+            startStep();
+            if (sqlResult != null) {
+                addSqlAttachment(sqlResult);
+            }
+        }
+        addReportDetails(throwable);
+        endStep(throwable);
+    }
+
+    /**
+     * release resources and notify listeners after the assertion passes or fails
+     *
+     * @author cysong
+     * @date 2022/9/24 10:35
+     **/
+    void end() {
+        waitStrategy.close();
+        notifyListeners(start);
+    }
+
+    /**
+     * milliseconds to wait before the first poll, not beyond the deadline
+     *
+     * @return long
+     * @author cysong
+     * @date 2022/9/24 10:40
+     **/
+    long getDelay() {
+        return Math.max(0, remaining(assertion.getDelay()));
+    }
+
+    Assertion getAssertion() {
+        return assertion;
+    }
+
+    void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public AssertResult getResult() {
+        return result;
+    }
+
+    /**
+     * time to consistency is measured to the start of the poll passed,
+     * so the precision is the poll interval plus the time of a verification
+     *
+     * @param timestamp start timestamp of the poll passed
+     * @author cysong
+     * @date 2022/9/21 10:20
+     **/
+    private void recordConsistency(long timestamp) {
+        long elapsed = Math.max(0, timestamp - assertion.getReferenceTime());
+        log.info("Consistent after {}ms", elapsed);
+        if (metrics != null) {
+            metrics.setTimeToConsistency(elapsed);
+        }
+    }
+
+    private long startTimer() {
+        return metrics == null ? 0 : System.nanoTime();
+    }
+
+    private void stopTimer(Phase phase, long start) {
+        if (metrics != null) {
+            metrics.addPhaseNanos(phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * notify listeners with metrics of the assertion, failures of listeners are only logged
+     *
+     * @param start start timestamp of the assertion
+     * @author cysong
+     * @date 2022/9/20 11:20
+     **/
+    private void notifyListeners(long start) {
+        if (metrics == null) {
+            return;
+        }
+        metrics.setElapsed(System.currentTimeMillis() - start);
+        for (AssertionListener listener : DbAssertOptions.getGlobal().getListeners()) {
+            try {
+                listener.onComplete(metrics);
+            } catch (RuntimeException e) {
+                log.warn("Assertion listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * probe fingerprint of data before verification, the probe is disabled if fails
+     *
+     * @return boolean false if the fingerprint not moves since the last verification
+     * @author cysong
+     * @date 2022/9/15 11:10
+     **/
+    private boolean isChanged() {
+        ChangeProbe probe = assertion.getChangeProbe();
+        if (probe == null) {
+            return true;
+        }
+        Object previous = assertion.getConn() == fingerprintConn ? this.fingerprint : null;
+        fingerprintConn = assertion.getConn();
+        try {
+            this.fingerprint = probe.fingerprint(assertion.getConn(), assertion);
+        } catch (SQLException e) {
+            log.warn("Change probe failed and disabled: {}", e.getMessage());
+            assertion.setChangeProbe(null);
+            this.fingerprint = null;
+            return true;
+        }
+        return fingerprint == null || !fingerprint.equals(previous);
+    }
+
+    /**
+     * compile conditions once, retries only run the compiled predicates
+     *
+     * @param result sql build result
+     * @author cysong
+     * @date 2022/9/7 11:20
+     **/
+    private void compileConditions(SqlResult result) {
+        detailEvaluator = DetailEvaluator.create(result, result.getPushdownColumns().values());
+        reportEvaluator = result.hasPushdown() ? DetailEvaluator.create(result) : detailEvaluator;
+        if (result.hasScanSql()) {
+            scanEvaluator = ScanEvaluator.create(result, result.getPushdownColumns().values());
+            reportScanEvaluator = result.hasPushdown() ? ScanEvaluator.create(result, Collections.emptyList()) : scanEvaluator;
+            scanEvaluator.setMetrics(metrics);
+            reportScanEvaluator.setMetrics(metrics);
+        }
+        if (result.hasSampleSql()) {
+            sampleEvaluator = SampleEvaluator.create(result);
+            sampleEvaluator.setMetrics(metrics);
+        }
+        detailEvaluator.setMetrics(metrics);
+        reportEvaluator.setMetrics(metrics);
+        rowConditions = new ArrayList<>();
+        if (Utils.isNotEmpty(assertion.getRowVerifies())) {
+            assertion.getRowVerifies().forEach(condition -> rowConditions.add(CompiledCondition.compile(condition)));
+        }
+        aggConditions = new LinkedHashMap<>();
+        if (Utils.isNotEmpty(result.getAggColumns())) {
+            result.getAggColumns().forEach((col, conditions) -> aggConditions.put(col,
+                    conditions.stream().map(CompiledCondition::compile).collect(Collectors.toList())));
+        }
+    }
+
+    private boolean verify(SqlResult result, boolean isFinal) throws SQLException {
+        if (result.hasCombinedSql()) {
+            return verifyCombined(result, isFinal);
+        }
+        if (result.hasSampleSql()) {
+            return verifySample(result, isFinal);
+        }
+        Map<String, Object> rowData = query(result.getAggregateSql(), result.getAggregateParams(), 0, this::readAggregateRow);
+        long evaluateStart = startTimer();
+        boolean pass = verifyAggregateRow(rowData, result, isFinal);
+        stopTimer(Phase.CONDITION_EVALUATE, evaluateStart);
+        if (!pass) {
+            return false;
+        }
+        if (!verifyPushdown(rowData, result, isFinal)) {
+            return false;
+        }
+
+        //verify all rows by full scan
+        if (result.hasScanSql()) {
+            if (!scanEvaluator.hasConditions()) {
+                return true;
+            }
+            DetailEvaluator.Violation violation = scan(result, scanEvaluator);
+            if (violation != null) {
+                this.doAssert(isFinal, violation::getAssertMessage);
+                return false;
+            }
+            return true;
+        }
+
+        //verify columns details, skipped if all conditions pushed down
+        String detailSql = result.getDetailSql();
+        if (detailSql != null && detailEvaluator.hasConditions()) {
+            return query(detailSql, result.getDetailParams(), assertion.getFetchSize(),
+                    detailRs -> verifyDetails(detailRs, RowReader.next(detailRs, metrics), isFinal));
+        }
+        return true;
+    }
+
+    /**
+     * verify column conditions by the violation rate estimated from sampled rows,
+     * total rows and aggregate values are still verified on all rows matched, only queried if verified
+     *
+     * @param result  sql build result
+     * @param isFinal determine throw AssertionError or print log when verify fail
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/29 11:00
+     **/
+    private boolean verifySample(SqlResult result, boolean isFinal) throws SQLException {
+        if (!rowConditions.isEmpty() || !aggConditions.isEmpty()) {
+            Map<String, Object> rowData = query(result.getAggregateSql(), result.getAggregateParams(), 0, this::readAggregateRow);
+            long evaluateStart = startTimer();
+            boolean pass = verifyAggregateRow(rowData, result, isFinal);
+            stopTimer(Phase.CONDITION_EVALUATE, evaluateStart);
+            if (!pass) {
+                return false;
+            }
+        }
+        if (!sampleEvaluator.hasConditions()) {
+            return true;
+        }
+        SampleEstimate estimate = sample(result, sampleEvaluator);
+        if (estimate == null) {
+            if (isFinal && assertion.isFailIfNotFound()) {
+                throw new AssertionError("Data records not found");
+            }
+            return false;
+        }
+        this.result.setSampleEstimate(estimate);
+        DetailEvaluator.Violation violation = sampleEvaluator.finish(this.result, estimate);
+        if (!estimate.isPass()) {
+            //no violation sampled but the interval is still wider than the tolerance, more rows should be sampled
+            this.doAssert(isFinal, () -> "Violation rate of sampled rows exceeds tolerance: " + estimate
+                    + (violation == null ? "" : ", first violation: " + violation.getAssertMessage()));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * read the first row at or after each of sample size random keys between the min and max key,
+     * every row is an independent draw as assumed by the confidence interval.
+     * Keys are drawn by the seed of the assertion, so the same rows are sampled if not changed
+     *
+     * @param result    sql build result
+     * @param evaluator evaluator of the sample
+     * @return com.github.cysong.dbassert.assertion.SampleEstimate null if no rows matched
+     * @author cysong
+     * @date 2022/9/29 11:05
+     **/
+    private SampleEstimate sample(SqlResult result, SampleEvaluator evaluator) throws SQLException {
+        long start = System.currentTimeMillis();
+        Object[] range = query(result.getSampleRangeSql(), result.getScanParams(), 0,
+                rs -> RowReader.next(rs, metrics) ? new Object[]{rs.getObject(1), rs.getObject(2)} : null);
+        if (range == null || range[0] == null) {
+            return null;
+        }
+        int sampleSize = assertion.getSampleSize();
+        List<Object> keys = SampleEvaluator.randomKeys(range[0], range[1], sampleSize, new Random(assertion.getSampleSeed()));
+        evaluator.begin();
+        for (Object key : keys) {
+            List<Object> params = new ArrayList<>(result.getScanParams());
+            params.add(key);
+            //no row if rows after the key deleted since the range queried
+            query(result.getSampleSql(), params, 0, evaluator::evaluate);
+        }
+        if (evaluator.getRows() == 0) {
+            return null;
+        }
+        SampleEstimate estimate = SampleEstimate.create(evaluator.getRows(), evaluator.getViolatedRows(),
+                assertion.getSampleConfidence(), assertion.getSampleTolerance());
+        log.info("Sampled {} rows by {} random keys in {}ms, {}", evaluator.getRows(), keys.size(),
+                System.currentTimeMillis() - start, estimate);
+        return estimate;
+    }
+
+    /**
+     * verify aggregate values and details returned by a single query,
+     * aggregate values are read from the first row
+     *
+     * @param result  sql build result
+     * @param isFinal determine throw AssertionError or print log when verify fail
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/1 11:05
+     **/
+    private boolean verifyCombined(SqlResult result, boolean isFinal) throws SQLException {
+        return query(result.getCombinedSql(), result.getCombinedParams(), assertion.getFetchSize(), rs -> {
+            boolean hasRow = RowReader.next(rs, metrics);
+            Map<String, Object> rowData = new HashMap<>();
+            if (hasRow) {
+                rowData.put(Constants.COUNT_ROWS_LABEL, RowReader.getObject(rs, Constants.COUNT_ROWS_LABEL, metrics));
+                if (Utils.isNotEmpty(result.getAggColumns())) {
+                    for (List<AggregateCondition> conditions : result.getAggColumns().values()) {
+                        for (AggregateCondition condition : conditions) {
+                            String label = condition.getWrappedColumnLabel();
+                            rowData.put(label, RowReader.getObject(rs, label, metrics));
+                        }
                     }
                 }
-                timestamp = System.currentTimeMillis();
+            } else {
+                rowData.put(Constants.COUNT_ROWS_LABEL, 0L);
+            }
+            if (!verifyAggregateRow(rowData, result, isFinal)) {
+                return false;
+            }
+            return verifyDetails(rs, hasRow, isFinal);
+        });
+    }
 
-                if (verify(result, loop == totalLoop)) {
-                    log.info("Assert success");
-                    addReportDetails();
-                    endStep(Status.PASSED);
-                    break;
-                } else {
-                    this.result.clearDetails();
-                    continue;
+    /**
+     * execute the query, or take rows of the same query from the result cache or the coalescer of global options if enabled
+     *
+     * @param sql       parameterized sql
+     * @param params    ordered bind values
+     * @param fetchSize rows fetched from database per round-trip, 0 to use the driver default
+     * @param handler   handler of the result set, rows executed or shared
+     * @return T value return by handler
+     * @author cysong
+     * @date 2022/9/25 10:40
+     **/
+    private <T> T query(String sql, List<Object> params, int fetchSize, ResultSetHandler<T> handler) throws SQLException {
+        DbAssertOptions options = DbAssertOptions.getGlobal();
+        QueryCoalescer coalescer = options.getQueryCoalescer();
+        ResultCache resultCache = options.getResultCache();
+        if (resultCache != null && resultCache.getTtl(assertion.getTableName()) <= 0) {
+            resultCache = null;
+        }
+        long executeStart = startTimer();
+        if (coalescer == null && resultCache == null) {
+            return execute(sql, params, fetchSize, rs -> {
+                stopTimer(Phase.QUERY_EXECUTE, executeStart);
+                return handle(rs, handler);
+            });
+        }
+        Object source = assertion.getDbKey() != null ? assertion.getDbKey() : assertion.getConn();
+        ResultSet rows = resultCache == null ? null : resultCache.get(source, sql, params);
+        if (rows == null) {
+            ResultCache cache = resultCache;
+            QueryCoalescer.Loader loader = () -> {
+                CachedRowSet loaded = execute(sql, params, fetchSize, QueryCoalescer::cache);
+                if (cache != null) {
+                    cache.put(source, sql, params, assertion.getTableName(), loaded);
                 }
-            } while (loop++ < totalLoop);
-        } catch (Throwable throwable) {
-            addReportDetails(throwable);
-            endStep(throwable);
-            Exceptions.check(throwable);
+                return loaded;
+            };
+            rows = coalescer == null ? loader.load().createShared() : coalesce(coalescer, source, sql, params, loader);
         }
+        stopTimer(Phase.QUERY_EXECUTE, executeStart);
+        return handle(rows, handler);
     }
 
-    private boolean verify(SqlResult result, boolean isFinal) throws SQLException {
-        String aggSql = result.getAggregateSql();
-        ResultSet aggRs = assertion.getConn().prepareStatement(aggSql).executeQuery();
+    private ResultSet coalesce(QueryCoalescer coalescer, Object source, String sql, List<Object> params,
+                               QueryCoalescer.Loader loader) throws SQLException {
+        long timeout = 0;
+        if (deadline > 0) {
+            timeout = deadline - System.currentTimeMillis();
+            if (timeout <= 0) {
+                throw timeoutError(null);
+            }
+        }
+        try {
+            return coalescer.execute(source, sql, params, timeout, loader);
+        } catch (SQLTimeoutException e) {
+            throw timeoutError(e);
+        }
+    }
+
+    /**
+     * time of handler not spent by reading rows is spent by evaluation
+     **/
+    private <T> T handle(ResultSet rs, ResultSetHandler<T> handler) throws SQLException {
+        if (metrics == null) {
+            return handler.handle(rs);
+        }
+        long fetched = metrics.getPhaseNanos(Phase.ROW_FETCH);
+        long handleStart = System.nanoTime();
+        try {
+            return handler.handle(rs);
+        } finally {
+            long evaluated = System.nanoTime() - handleStart - (metrics.getPhaseNanos(Phase.ROW_FETCH) - fetched);
+            metrics.addPhaseNanos(Phase.CONDITION_EVALUATE, Math.max(0, evaluated));
+        }
+    }
+
+    /**
+     * execute query by a cached prepared statement, the result set is closed after handled
+     * and the statement is given back to the cache
+     *
+     * @param sql       parameterized sql
+     * @param params    ordered bind values
+     * @param fetchSize rows fetched from database per round-trip, 0 to use the driver default
+     * @param handler   handler of the result set
+     * @return T
+     * @author cysong
+     * @date 2022/9/2 16:05
+     **/
+    private <T> T execute(String sql, List<Object> params, int fetchSize, ResultSetHandler<T> handler) throws SQLException {
+        StatementCache cache = DbAssertOptions.getGlobal().getStatementCache();
+        Connection conn = assertion.getConn();
+        PreparedStatement ps = cache.borrow(conn, sql);
+        Cancellation cancellation = null;
+        try {
+            SqlUtils.setParameters(ps, params);
+            ps.setFetchSize(fetchSize);
+            int queryTimeout = 0;
+            if (deadline > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw timeoutError(null);
+                }
+                //query timeout is in seconds, so the statement is also cancelled exactly at the deadline
+                queryTimeout = (int) TimeUnit.MILLISECONDS.toSeconds(remaining + 999);
+                cancellation = new Cancellation(ps);
+                cancellation.future = CANCELLER.schedule(cancellation, remaining, TimeUnit.MILLISECONDS);
+            }
+            ps.setQueryTimeout(queryTimeout);
+            try (ResultSet rs = ps.executeQuery()) {
+                return handler.handle(rs);
+            }
+        } catch (SQLException e) {
+            if (deadline > 0 && System.currentTimeMillis() >= deadline) {
+                throw timeoutError(e);
+            }
+            throw e;
+        } finally {
+            if (cancellation == null || cancellation.release()) {
+                cache.release(conn, sql, ps);
+            } else {
+                //a cancelled statement may still carry the cancel request on some drivers, never reuse it
+                close(ps);
+            }
+        }
+    }
 
-        aggRs.next();
-        Map<String, Object> rowData = SqlUtils.convertCurrentRowToMap(aggRs);
-        aggRs.close();
+    private Map<String, Object> readAggregateRow(ResultSet rs) throws SQLException {
+        if (metrics == null) {
+            rs.next();
+            return SqlUtils.convertCurrentRowToMap(rs);
+        }
+        RowReader.next(rs, metrics);
+        long start = System.nanoTime();
+        Map<String, Object> row = SqlUtils.convertCurrentRowToMap(rs);
+        metrics.addPhaseNanos(Phase.ROW_FETCH, System.nanoTime() - start);
+        row.values().forEach(value -> metrics.addBytesFetched(RowReader.sizeOf(value)));
+        return row;
+    }
+
+    private static void cancel(PreparedStatement ps) {
+        try {
+            ps.cancel();
+        } catch (SQLException e) {
+            log.debug("Cancel query failed", e);
+        }
+    }
+
+    private static void close(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            log.debug("Close statement failed", e);
+        }
+    }
+
+    /**
+     * cancel of a statement at the deadline, cancel and release are mutually exclusive,
+     * release waits for a cancel already started and a cancel never fires after release
+     **/
+    private static class Cancellation implements Runnable {
+        private final PreparedStatement ps;
+        private ScheduledFuture<?> future;
+        private boolean released;
+        private boolean cancelled;
+
+        Cancellation(PreparedStatement ps) {
+            this.ps = ps;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (!released) {
+                cancelled = true;
+                cancel(ps);
+            }
+        }
+
+        /**
+         * @return boolean true if the statement was not cancelled and can be given back to the cache
+         **/
+        synchronized boolean release() {
+            released = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+            return !cancelled;
+        }
+    }
+
+    private AssertionError timeoutError(Throwable cause) {
+        AssertionError error = new AssertionError(String.format("Assert timeout after %dms", assertion.getTimeout()));
+        if (cause != null) {
+            error.initCause(cause);
+        }
+        return error;
+    }
+
+    /**
+     * wait by the wait strategy and honour interrupts, the interrupt status is kept
+     *
+     * @param mills milliseconds to sleep, not beyond the deadline
+     * @author cysong
+     * @date 2022/9/14 11:20
+     **/
+    private void sleep(long mills) {
+        mills = remaining(mills);
+        if (mills <= 0) {
+            return;
+        }
+        try {
+            waitStrategy.await(mills);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionInterruptedException("Assert interrupted", e);
+        }
+    }
+
+    private long remaining(long mills) {
+        return deadline > 0 ? Math.min(mills, deadline - System.currentTimeMillis()) : mills;
+    }
+
+    private void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new AssertionInterruptedException("Assert interrupted");
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createCanceller() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "dbassert-query-canceller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * verify total rows and aggregate columns of the aggregate row
+     *
+     * @param rowData aggregate data return by sql query
+     * @param result  sql build result
+     * @param isFinal determine throw AssertionError or print log when verify fail
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/1 11:05
+     **/
+    private boolean verifyAggregateRow(Map<String, Object> rowData, SqlResult result, boolean isFinal) throws SQLException {
         long totalRows = getTotalRows(rowData.get(Constants.COUNT_ROWS_LABEL));
         if (totalRows == 0) {
             if (isFinal && assertion.isFailIfNotFound()) {
@@ -114,20 +827,7 @@ public class AssertionExecutor {
         }
 
         //verify aggregate columns
-        if (!verifyAggregates(rowData, result.getAggColumns(), isFinal)) {
-            return false;
-        }
-
-        //verify columns details
-        String detailSql = result.getDetailSql();
-        if (detailSql != null) {
-            ResultSet detailRs = assertion.getConn().prepareStatement(detailSql).executeQuery();
-            if (!verifyDetails(detailRs, result, isFinal)) {
-                detailRs.close();
-                return false;
-            }
-        }
-        return true;
+        return verifyAggregates(rowData, aggConditions, isFinal);
     }
 
     /**
@@ -140,11 +840,9 @@ public class AssertionExecutor {
      * @date 2022/8/23 9:26
      **/
     private boolean verifyRows(long totalRows, boolean isFinal) {
-        if (Utils.isEmpty(assertion.getRowVerifies())) {
-            return true;
-        }
-        for (Condition condition : assertion.getRowVerifies()) {
-            boolean pass = ConditionTester.test(condition.getComparator(), totalRows, condition.getExpected());
+        for (CompiledCondition compiled : rowConditions) {
+            Condition condition = compiled.getCondition();
+            boolean pass = compiled.test(totalRows);
             result.add(Constants.COUNT_ROWS_COLUMN, Aggregate.COUNT, condition.getComparator(), pass, totalRows, condition.getExpected());
             if (!pass) {
                 doAssert(isFinal, () -> condition.getAssertMessage(totalRows));
@@ -164,21 +862,17 @@ public class AssertionExecutor {
      * @author cysong
      * @date 2022/8/23 9:31
      **/
-    private boolean verifyAggregates(Map<String, Object> rowData, Map<String, List<AggregateCondition>> aggColumnMap, boolean isFinal) throws SQLException {
-        if (Utils.isEmpty(aggColumnMap)) {
-            return true;
-        }
-
+    private boolean verifyAggregates(Map<String, Object> rowData, Map<String, List<CompiledCondition>> aggColumnMap, boolean isFinal) throws SQLException {
         for (String col : aggColumnMap.keySet()) {
-            List<AggregateCondition> aggConditions = aggColumnMap.get(col);
-            for (AggregateCondition aggCondition : aggConditions) {
+            for (CompiledCondition compiled : aggColumnMap.get(col)) {
+                AggregateCondition aggCondition = (AggregateCondition) compiled.getCondition();
                 Aggregate aggregate = aggCondition.getAggregate();
                 String label = aggregate.getWrappedColumnLabel(col);
                 if (!rowData.containsKey(label)) {
                     throw new RuntimeException(String.format("column data %s not exists", label));
                 }
                 Object actual = rowData.get(label);
-                boolean pass = ConditionTester.test(aggCondition.getComparator(), actual, aggCondition.getExpected());
+                boolean pass = compiled.test(actual);
                 result.add(pass, aggCondition, actual);
                 if (!pass) {
                     this.doAssert(isFinal, () -> aggCondition.getAssertMessage(actual));
@@ -190,54 +884,101 @@ public class AssertionExecutor {
     }
 
     /**
-     * verify column details
+     * verify violation counts of conditions pushed down,
+     * detail rows are only fetched to report the failure at the final loop
      *
-     * @param rs        result set return by query
-     * @param sqlResult sql build result
-     * @param isFinal   determine throw AssertionError or print log when verify fail
+     * @param rowData aggregate data return by sql query
+     * @param result  sql build result
+     * @param isFinal determine throw AssertionError or print log when verify fail
      * @return boolean
      * @author cysong
-     * @date 2022/8/23 9:35
+     * @date 2022/9/9 15:20
      **/
-    private boolean verifyDetails(ResultSet rs, SqlResult sqlResult, boolean isFinal) throws SQLException {
-        Map<String, List<Object>> valueMap = new HashMap<>(sqlResult.getColumnSet().size());
-        Map<String, List<Condition>> columnMap = sqlResult.getColumns();
-        while (rs.next()) {
-            for (String col : sqlResult.getColumnSet()) {
-                Object value = rs.getObject(col);
-                valueMap.compute(col, (key, val) -> {
-                    if (val == null) {
-                        val = new ArrayList<>();
-                    }
-                    val.add(value);
-                    return val;
-                });
-
-                if (columnMap.containsKey(col)) {
-                    List<Condition> conditions = sqlResult.getColumns().get(col);
-                    for (Condition condition : conditions) {
-                        boolean pass = ConditionTester.test(condition.getComparator(), value, condition.getExpected());
-                        result.add(pass, condition, value);
-                        if (!pass) {
-                            this.doAssert(isFinal, () -> condition.getAssertMessage(value));
-                            return false;
-                        }
-                    }
+    private boolean verifyPushdown(Map<String, Object> rowData, SqlResult result, boolean isFinal) throws SQLException {
+        for (Map.Entry<String, Condition> entry : result.getPushdownColumns().entrySet()) {
+            Condition condition = entry.getValue();
+            long violations = getTotalRows(rowData.get(entry.getKey()));
+            String actual = violations + " rows violated";
+            if (violations == 0) {
+                this.result.add(true, condition, actual);
+                continue;
+            }
+            if (isFinal) {
+                //report the failed row, rows may be changed after the aggregate query
+                DetailEvaluator.Violation violation;
+                if (result.hasScanSql()) {
+                    violation = scan(result, reportScanEvaluator);
+                } else {
+                    violation = query(result.getDetailSql(), result.getDetailParams(), assertion.getFetchSize(),
+                            rs -> reportEvaluator.evaluate(rs, RowReader.next(rs, metrics), this.result));
+                }
+                if (violation != null) {
+                    throw new AssertionError(violation.getAssertMessage());
                 }
             }
+            this.result.add(false, condition, actual);
+            this.doAssert(isFinal, () -> condition.getAssertMessage(actual));
+            return false;
         }
+        return true;
+    }
 
-        Map<String, List<ListCondition>> listColumnMap = sqlResult.getListColumns();
-        for (String col : listColumnMap.keySet()) {
-            List<ListCondition> conditions = listColumnMap.get(col);
-            for (ListCondition condition : conditions) {
-                boolean pass = ConditionTester.test(condition.getComparator(), valueMap.get(col), condition.getExpected());
-                result.add(pass, condition, valueMap.get(col));
-                if (!pass) {
-                    this.doAssert(isFinal, () -> condition.getAssertMessage(valueMap.get(col)));
-                    return false;
-                }
+    /**
+     * read all rows in chunks by keyset pagination until all rows read or a condition fails,
+     * progress and throughput are logged periodically
+     *
+     * @param result    sql build result
+     * @param evaluator evaluator of the scan
+     * @return com.github.cysong.dbassert.assertion.DetailEvaluator.Violation the first condition failed, null if all pass
+     * @author cysong
+     * @date 2022/9/13 15:00
+     **/
+    private DetailEvaluator.Violation scan(SqlResult result, ScanEvaluator evaluator) throws SQLException {
+        evaluator.begin();
+        long start = System.currentTimeMillis();
+        long logTime = start;
+        int read;
+        do {
+            String sql = result.getScanSql();
+            List<Object> params = result.getScanParams();
+            if (evaluator.getRows() > 0) {
+                sql = result.getNextScanSql();
+                params = new ArrayList<>(params);
+                params.add(evaluator.getLastKey());
             }
+            read = query(sql, params, assertion.getFetchSize(), evaluator::evaluate);
+            long now = System.currentTimeMillis();
+            if (now - logTime >= Constants.SCAN_LOG_INTERVAL) {
+                log.info("Scanned {} rows, {} rows/s", evaluator.getRows(), getThroughput(evaluator.getRows(), now - start));
+                logTime = now;
+            }
+        } while (read == assertion.getPageSize() && evaluator.getViolation() == null);
+        DetailEvaluator.Violation violation = evaluator.finish(this.result);
+        long elapsed = System.currentTimeMillis() - start;
+        log.info("Full scan {}, {} rows in {}ms, {} rows/s", violation == null ? "finished" : "stopped",
+                evaluator.getRows(), elapsed, getThroughput(evaluator.getRows(), elapsed));
+        return violation;
+    }
+
+    private long getThroughput(long rows, long mills) {
+        return mills <= 0 ? rows : rows * 1000 / mills;
+    }
+
+    /**
+     * verify column details
+     *
+     * @param rs      result set return by query
+     * @param onRow   whether the cursor is already positioned on the first row
+     * @param isFinal determine throw AssertionError or print log when verify fail
+     * @return boolean
+     * @author cysong
+     * @date 2022/8/23 9:35
+     **/
+    private boolean verifyDetails(ResultSet rs, boolean onRow, boolean isFinal) throws SQLException {
+        DetailEvaluator.Violation violation = detailEvaluator.evaluate(rs, onRow, result);
+        if (violation != null) {
+            this.doAssert(isFinal, violation::getAssertMessage);
+            return false;
         }
         return true;
     }
@@ -260,17 +1001,44 @@ public class AssertionExecutor {
 
     private void printSql(SqlResult sqlResult) {
         System.out.println("==================== sql ====================");
-        if (sqlResult.getDetailSql() != null) {
-            System.out.println(sqlResult.getDetailSql());
+        System.out.print(formatSql(sqlResult));
+        System.out.println("==================== sql ====================");
+    }
+
+    private String formatSql(SqlResult sqlResult) {
+        StringBuilder content = new StringBuilder();
+        if (sqlResult.hasCombinedSql()) {
+            appendSql(content, sqlResult.getCombinedSql(), sqlResult.getCombinedParams());
+        } else {
+            if (sqlResult.getDetailSql() != null) {
+                appendSql(content, sqlResult.getDetailSql(), sqlResult.getDetailParams());
+            }
+            if (sqlResult.hasScanSql()) {
+                appendSql(content, sqlResult.getScanSql(), sqlResult.getScanParams());
+                appendSql(content, sqlResult.getNextScanSql(), sqlResult.getScanParams());
+            }
+            if (sqlResult.hasSampleSql()) {
+                appendSql(content, sqlResult.getSampleRangeSql(), sqlResult.getScanParams());
+                appendSql(content, sqlResult.getSampleSql(), sqlResult.getScanParams());
+            }
+            if (sqlResult.getAggregateSql() != null) {
+                appendSql(content, sqlResult.getAggregateSql(), sqlResult.getAggregateParams());
+            }
         }
-        if (sqlResult.getAggregateSql() != null) {
-            System.out.println(sqlResult.getAggregateSql());
+        return content.toString();
+    }
+
+    private void appendSql(StringBuilder content, String sql, List<Object> params) {
+        content.append(sql).append(System.lineSeparator());
+        if (Utils.isNotEmpty(params)) {
+            content.append("params: ").append(params).append(System.lineSeparator());
         }
-        System.out.println("==================== sql ====================");
     }
 
     private void printSummaryLog() {
-        if (assertion.isRetry()) {
+        if (assertion.isRetry() && deadline > 0) {
+            log.info("Assert with timeout {}ms", assertion.getTimeout());
+        } else if (assertion.isRetry()) {
             log.info("Assert with total {} retries, interval {}ms", assertion.getRetryTimes(), assertion.getRetryInterval());
         } else {
             log.info("Assert without retry...");
@@ -278,6 +1046,10 @@ public class AssertionExecutor {
     }
 
     private void printRetryLog(int retryTimes) {
+        if (deadline > 0) {
+            log.info("Retry {}, {}ms left...", retryTimes, deadline - System.currentTimeMillis());
+            return;
+        }
         log.info("Retry {}/{}...", retryTimes, assertion.getRetryTimes());
     }
 
@@ -295,69 +1067,93 @@ public class AssertionExecutor {
     }
 
     private void addReportDetails(Throwable throwable) {
-        if (throwable != null) {
-            addAttachment("Throwable", throwable.getMessage());
-        }
-        List<Detail> details = result.getDetails();
-        if (details.size() == 0) {
+        if (reporter == null) {
             return;
         }
-        HtmlTableBuilder builder = new HtmlTableBuilder(null);
-        builder.addTableHeader(Detail.getTableHeader());
-        for (Detail detail : details) {
-            builder.addRowValues(detail.isPass() ? "white" : "red", detail.getTableRow());
+        long start = startTimer();
+        if (throwable != null) {
+            reporter.addAttachment("Throwable", throwable.getMessage());
         }
-        addHtmlAttachment("Details", builder.build());
+        //written lazily by the reporter, values recorded are not changed after the last poll
+        DbAssertOptions options = DbAssertOptions.getGlobal();
+        ReportFormat format = options.getReportFormat();
+        //compressed bytes would be corrupted by reporters taking attachments as text
+        boolean gzip = options.isReportGzip() && reporter.isBinaryAttachmentSupported();
+        String type = format.getType(gzip);
+        String extension = format.getExtension(gzip);
+        if (result.getPolicy() == RecordPolicy.SUMMARY) {
+            Collection<ConditionSummary> summaries = result.getSummaries();
+            if (!summaries.isEmpty()) {
+                reporter.addAttachment("Summary", type, extension, out -> {
+                    try (ReportWriter writer = createReportWriter(out, options, gzip)) {
+                        writer.writeHeader(null, ConditionSummary.getTableHeader());
+                        for (ConditionSummary summary : summaries) {
+                            writer.writeRow(summary.isPass(), summary.getTableRow());
+                        }
+                    }
+                });
+            }
+        } else if (result.getDetails().size() > 0) {
+            List<Detail> details = result.getDetails();
+            long dropped = result.getDroppedFailures();
+            reporter.addAttachment("Details", type, extension, out -> {
+                try (ReportWriter writer = createReportWriter(out, options, gzip)) {
+                    writer.writeHeader(dropped > 0 ? String.format("First %d failures, %d more not recorded", details.size(), dropped) : null,
+                            Detail.getTableHeader());
+                    for (int i = 0; i < details.size(); i++) {
+                        Detail detail = details.get(i);
+                        if (!writer.writeRow(detail.isPass(), detail.getTableRow())) {
+                            writer.skipRows(details.size() - i - 1);
+                            break;
+                        }
+                    }
+                }
+            });
+        }
+        stopTimer(Phase.REPORT_RENDER, start);
+    }
+
+    private static ReportWriter createReportWriter(OutputStream out, DbAssertOptions options, boolean gzip) throws IOException {
+        return ReportWriter.create(out, options.getReportFormat(), options.getReportMaxRows(),
+                options.getReportMaxBytes(), gzip);
     }
 
     private void startStep() {
-        Reporter reporter = DbAssertOptions.getGlobal().getReporter();
         if (reporter != null) {
             reporter.startStep(Constants.REPORT_STEP_NAME);
         }
     }
 
     private void endStep(Status status) {
-        Reporter reporter = DbAssertOptions.getGlobal().getReporter();
         if (reporter != null) {
             reporter.endStep(status);
         }
     }
 
     private void endStep(Throwable throwable) {
-        Reporter reporter = DbAssertOptions.getGlobal().getReporter();
         if (reporter != null) {
             reporter.endStep(throwable);
         }
     }
 
     private void addSqlAttachment(SqlResult result) {
-        Reporter reporter = DbAssertOptions.getGlobal().getReporter();
-        StringBuilder content = new StringBuilder();
         if (reporter != null) {
-            if (result.getDetailSql() != null) {
-                content.append(result.getDetailSql());
-                content.append(System.lineSeparator());
-            }
-            if (result.getAggregateSql() != null) {
-                content.append(result.getAggregateSql());
-            }
-            reporter.addAttachment("Sql", content.toString());
+            reporter.addAttachment("Sql", () -> formatSql(result));
         }
     }
 
-    private void addAttachment(String name, String content) {
-        Reporter reporter = DbAssertOptions.getGlobal().getReporter();
-        if (reporter != null) {
-            reporter.addAttachment(name, content);
-        }
-    }
+    @FunctionalInterface
+    private interface ResultSetHandler<T> {
+        /**
+         * handle the result set of query
+         *
+         * @param rs result set
+         * @return T
+         * @author cysong
+         * @date 2022/9/2 16:05
+         **/
+        T handle(ResultSet rs) throws SQLException;
 
-    private void addHtmlAttachment(String name, String content) {
-        Reporter reporter = DbAssertOptions.getGlobal().getReporter();
-        if (reporter != null) {
-            reporter.addAttachment(name, "text/html", content, "html");
-        }
     }
 
     @FunctionalInterface
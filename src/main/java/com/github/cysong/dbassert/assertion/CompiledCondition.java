@@ -0,0 +1,388 @@
+package com.github.cysong.dbassert.assertion;
+
+import com.github.cysong.dbassert.constant.Comparator;
+import com.github.cysong.dbassert.expression.Boundary;
+import com.github.cysong.dbassert.expression.Condition;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * condition compiled to a specialized predicate, the comparator dispatch is resolved once when compiled
+ * and the expected value is converted once the type of actual value is known,
+ * so the retry loop and the row loop only run the prepared predicate
+ * <p>
+ * The result is always the same as {@link ConditionTester#test(Comparator, Object, Object)}
+ *
+ * @author cysong
+ * @date 2022/9/7 10:15
+ **/
+public abstract class CompiledCondition {
+    protected final Condition condition;
+
+    /**
+     * compile condition to a predicate
+     *
+     * @param condition condition to be compiled
+     * @return com.github.cysong.dbassert.assertion.CompiledCondition
+     * @author cysong
+     * @date 2022/9/7 10:16
+     **/
+    public static CompiledCondition compile(Condition condition) {
+        assert condition != null;
+        Object expected = condition.getExpected();
+        switch (condition.getComparator()) {
+            case EQUAL:
+                return new Comparison(condition, c -> c == 0);
+            case NOT_EQUAL:
+                return new Comparison(condition, c -> c != 0);
+            case LESS_THAN:
+                return new Comparison(condition, c -> c < 0);
+            case LESS_THAN_OR_EQUAL:
+                return new Comparison(condition, c -> c <= 0);
+            case GREATER_THAN:
+                return new Comparison(condition, c -> c > 0);
+            case GREATER_THAN_OR_EQUAL:
+                return new Comparison(condition, c -> c >= 0);
+            case BETWEEN:
+                return new Between(condition);
+            case NULL:
+                return new Simple(condition, actual -> actual == null);
+            case NOT_NULL:
+                return new Simple(condition, actual -> actual != null);
+            case IS_TRUE:
+                return new Simple(condition, ConditionTester::isTrue);
+            case IS_FALSE:
+                return new Simple(condition, ConditionTester::isFalse);
+            case IN:
+                return new Membership(condition, true);
+            case NOT_IN:
+                return new Membership(condition, false);
+            case LIST_EQUALS_AT_ANY_ORDER:
+                return new ListEqualsAtAnyOrder(condition);
+            case LIST_CONTAINS:
+                return new ListContains(condition);
+            case LIST_NOT_CONTAIN:
+                return new ListContainsAny(condition, false);
+            case LIST_CONTAINS_ANY:
+                return new ListContainsAny(condition, true);
+            case CONTAINS:
+                return new Contains(condition, (String) expected, true);
+            case NOT_CONTAIN:
+                return new Contains(condition, (String) expected, false);
+            default:
+                return new Generic(condition);
+        }
+    }
+
+    protected CompiledCondition(Condition condition) {
+        this.condition = condition;
+    }
+
+    /**
+     * test the actual value
+     *
+     * @param actual actual value return by query
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/7 10:18
+     **/
+    public abstract boolean test(Object actual);
+
+    public Condition getCondition() {
+        return condition;
+    }
+
+    /**
+     * compare actual value with a expected value converted to the type of actual value
+     **/
+    @FunctionalInterface
+    interface ValueComparator {
+        /**
+         * compare actual value with the converted expected value
+         *
+         * @param actual actual value, not null
+         * @return int
+         * @author cysong
+         * @date 2022/9/7 10:20
+         **/
+        int compare(Object actual);
+
+        static ValueComparator of(Class<?> clazz, Object expected) {
+            try {
+                switch (clazz.getName()) {
+                    case "java.lang.String": {
+                        String e = Converter.toString(expected);
+                        return actual -> ((String) actual).compareTo(e);
+                    }
+                    case "java.lang.Integer": {
+                        int e = Converter.toInteger(expected);
+                        return actual -> Integer.compare((Integer) actual, e);
+                    }
+                    case "java.lang.Long": {
+                        long e = Converter.toLong(expected);
+                        return actual -> Long.compare((Long) actual, e);
+                    }
+                    case "java.lang.Short": {
+                        short e = Converter.toShort(expected);
+                        return actual -> Short.compare((Short) actual, e);
+                    }
+                    case "java.lang.Float": {
+                        float e = Converter.toFloat(expected);
+                        return actual -> Float.compare((Float) actual, e);
+                    }
+                    case "java.lang.Double": {
+                        double e = Converter.toDouble(expected);
+                        return actual -> Double.compare((Double) actual, e);
+                    }
+                    case "java.lang.Boolean": {
+                        boolean e = Converter.toBoolean(expected);
+                        return actual -> Boolean.compare((Boolean) actual, e);
+                    }
+                    default:
+                        throw new IllegalArgumentException("Unsupported data type:" + clazz.getName());
+                }
+            } catch (NumberFormatException e) {
+                throw new ClassCastException(String.format("Expected value [%s] cannot be cast to %s", expected, clazz));
+            }
+        }
+    }
+
+    /**
+     * a {@link ValueComparator} resolved by the type of the first non null actual value,
+     * resolved again only if the driver returns another type
+     **/
+    static class TypedComparator {
+        private final Object expected;
+        private Class<?> type;
+        private ValueComparator comparator;
+
+        TypedComparator(Object expected) {
+            this.expected = expected;
+        }
+
+        int compare(Object actual) {
+            assert actual != null;
+            Class<?> clazz = actual.getClass();
+            if (clazz != type) {
+                comparator = ValueComparator.of(clazz, expected);
+                type = clazz;
+            }
+            return comparator.compare(actual);
+        }
+    }
+
+    static class Comparison extends CompiledCondition {
+        private final TypedComparator comparator;
+        private final IntPredicate result;
+        private final boolean nullExpected;
+
+        Comparison(Condition condition, IntPredicate result) {
+            super(condition);
+            this.comparator = new TypedComparator(condition.getExpected());
+            this.result = result;
+            this.nullExpected = condition.getExpected() == null;
+        }
+
+        @Override
+        public boolean test(Object actual) {
+            if (actual == null) {
+                return result.test(nullExpected ? 0 : -1);
+            }
+            return result.test(comparator.compare(actual));
+        }
+    }
+
+    static class Between extends CompiledCondition {
+        private final TypedComparator min;
+        private final TypedComparator max;
+        private final boolean excludeMin;
+        private final boolean excludeMax;
+
+        Between(Condition condition) {
+            super(condition);
+            Boundary<?> boundary = (Boundary<?>) condition.getExpected();
+            this.min = new TypedComparator(boundary.getMin());
+            this.max = new TypedComparator(boundary.getMax());
+            this.excludeMin = boundary.isExcludeMin();
+            this.excludeMax = boundary.isExcludeMax();
+        }
+
+        @Override
+        public boolean test(Object actual) {
+            if (actual == null) {
+                return false;
+            }
+            int c = min.compare(actual);
+            if (excludeMin ? c <= 0 : c < 0) {
+                return false;
+            }
+            c = max.compare(actual);
+            return excludeMax ? c < 0 : c <= 0;
+        }
+    }
+
+    static class Contains extends CompiledCondition {
+        private final String expected;
+        private final boolean contains;
+
+        Contains(Condition condition, String expected, boolean contains) {
+            super(condition);
+            this.expected = expected;
+            this.contains = contains;
+        }
+
+        @Override
+        public boolean test(Object actual) {
+            if (actual == null) {
+                return false;
+            }
+            if (actual instanceof String) {
+                return ((String) actual).contains(expected) == contains;
+            }
+            throw new IllegalArgumentException(Comparator.CONTAINS.name() + " not support type:" + actual.getClass().getName());
+        }
+    }
+
+    static class Simple extends CompiledCondition {
+        private final Predicate<Object> predicate;
+
+        Simple(Condition condition, Predicate<Object> predicate) {
+            super(condition);
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean test(Object actual) {
+            return predicate.test(actual);
+        }
+    }
+
+    /**
+     * in/not in tested by a hash set of expected values built when compiled
+     **/
+    static class Membership extends CompiledCondition {
+        private final Set<Object> keys;
+        private final boolean in;
+
+        Membership(Condition condition, boolean in) {
+            super(condition);
+            this.keys = ConditionTester.toKeySet((Iterable<?>) condition.getExpected());
+            this.in = in;
+        }
+
+        @Override
+        public boolean test(Object actual) {
+            if (actual instanceof Collection) {
+                for (Object item : (Collection<?>) actual) {
+                    if (keys.contains(Converter.toKey(item)) != in) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return keys.contains(Converter.toKey(actual)) == in;
+        }
+    }
+
+    /**
+     * compare the multiset of actual values with the multiset of expected values built when compiled
+     **/
+    static class ListEqualsAtAnyOrder extends CompiledCondition {
+        private final Map<Object, Integer> counts;
+        private final int size;
+
+        ListEqualsAtAnyOrder(Condition condition) {
+            super(condition);
+            Iterable<?> expected = (Iterable<?>) condition.getExpected();
+            this.counts = expected == null ? Collections.emptyMap() : ConditionTester.toKeyCounts(expected);
+            this.size = counts.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        @Override
+        public boolean test(Object actual) {
+            if (actual == null) {
+                return size == 0;
+            }
+            List<?> list = (List<?>) actual;
+            return list.size() == size && ConditionTester.toKeyCounts(list).equals(counts);
+        }
+    }
+
+    /**
+     * every expected value is found while iterating actual values
+     **/
+    static class ListContains extends CompiledCondition {
+        private final Set<Object> keys;
+
+        ListContains(Condition condition) {
+            super(condition);
+            this.keys = ConditionTester.toKeySet(ConditionTester.asIterable(condition.getExpected()));
+        }
+
+        @Override
+        public boolean test(Object actual) {
+            if (actual == null) {
+                return false;
+            }
+            if (keys.isEmpty()) {
+                return true;
+            }
+            Set<Object> found = new HashSet<>();
+            for (Object item : (List<?>) actual) {
+                Object key = Converter.toKey(item);
+                if (keys.contains(key) && found.add(key) && found.size() == keys.size()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * any actual value in the hash set of expected values built when compiled
+     **/
+    static class ListContainsAny extends CompiledCondition {
+        private final Set<Object> keys;
+        private final boolean any;
+
+        ListContainsAny(Condition condition, boolean any) {
+            super(condition);
+            this.keys = ConditionTester.toKeySet(ConditionTester.asIterable(condition.getExpected()));
+            this.any = any;
+        }
+
+        @Override
+        public boolean test(Object actual) {
+            if (actual == null) {
+                return !any;
+            }
+            for (Object item : (List<?>) actual) {
+                if (keys.contains(Converter.toKey(item))) {
+                    return any;
+                }
+            }
+            return !any;
+        }
+    }
+
+    /**
+     * conditions without a specialized predicate are tested by {@link ConditionTester}
+     **/
+    static class Generic extends CompiledCondition {
+        private final Comparator comparator;
+        private final Object expected;
+
+        Generic(Condition condition) {
+            super(condition);
+            this.comparator = condition.getComparator();
+            this.expected = condition.getExpected();
+        }
+
+        @Override
+        public boolean test(Object actual) {
+            return ConditionTester.test(comparator, actual, expected);
+        }
+    }
+}
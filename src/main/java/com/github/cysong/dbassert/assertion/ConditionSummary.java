@@ -0,0 +1,99 @@
+package com.github.cysong.dbassert.assertion;
+
+import com.github.cysong.dbassert.constant.Aggregate;
+import com.github.cysong.dbassert.constant.Comparator;
+
+/**
+ * counters of a condition recorded by {@link com.github.cysong.dbassert.constant.RecordPolicy#SUMMARY}
+ *
+ * @author cysong
+ * @date 2022/9/22 10:10
+ **/
+public class ConditionSummary {
+    private final String column;
+    private final Aggregate aggregate;
+    private final Comparator comparator;
+    private final Object expected;
+    private long evaluated;
+    private long passed;
+    private long failed;
+    /**
+     * row number(starts from 1) of the first failed value, -1 if not failed or not a row value
+     **/
+    private long firstFailedRow = -1;
+    private Object firstFailedValue;
+
+    ConditionSummary(String column, Aggregate aggregate, Comparator comparator, Object expected) {
+        this.column = column;
+        this.aggregate = aggregate;
+        this.comparator = comparator;
+        this.expected = expected;
+    }
+
+    void count(boolean pass, Object actual, long row) {
+        evaluated++;
+        if (pass) {
+            passed++;
+            return;
+        }
+        if (failed++ == 0) {
+            firstFailedRow = row;
+            firstFailedValue = actual;
+        }
+    }
+
+    public static String[] getTableHeader() {
+        return new String[]{"column", "aggregate", "comparator", "expected", "evaluated", "passed", "failed",
+                "first failed row", "first failed value"};
+    }
+
+    public String[] getTableRow() {
+        //aggregate and expected are formatted the same as details
+        Detail detail = Detail.create(column, aggregate, comparator, failed == 0, firstFailedValue, expected);
+        String[] row = detail.getTableRow();
+        return new String[]{column, row[1], comparator.name(), row[4], String.valueOf(evaluated),
+                String.valueOf(passed), String.valueOf(failed),
+                firstFailedRow > 0 ? String.valueOf(firstFailedRow) : "",
+                failed > 0 ? String.valueOf(firstFailedValue) : ""};
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Aggregate getAggregate() {
+        return aggregate;
+    }
+
+    public Comparator getComparator() {
+        return comparator;
+    }
+
+    public Object getExpected() {
+        return expected;
+    }
+
+    public long getEvaluated() {
+        return evaluated;
+    }
+
+    public long getPassed() {
+        return passed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getFirstFailedRow() {
+        return firstFailedRow;
+    }
+
+    public Object getFirstFailedValue() {
+        return firstFailedValue;
+    }
+
+    public boolean isPass() {
+        return failed == 0;
+    }
+}
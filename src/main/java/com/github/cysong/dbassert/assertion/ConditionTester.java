@@ -155,34 +155,29 @@ public class ConditionTester {
     }
 
     public static boolean in(Object actual, Object expected) {
-        Collection<?> cc = actual instanceof Collection ? (Collection<?>) actual : Arrays.asList(actual);
-        for (Object item : cc) {
-            boolean in = false;
-            Iterator<?> eit = ((Iterable<?>) expected).iterator();
-            while (eit.hasNext()) {
-                if (Objects.equals(item, eit.next())) {
-                    in = true;
-                    break;
+        if (actual instanceof Collection) {
+            Set<Object> keys = toKeySet((Iterable<?>) expected);
+            for (Object item : (Collection<?>) actual) {
+                if (!keys.contains(Converter.toKey(item))) {
+                    return false;
                 }
             }
-            if (!in) {
-                return false;
-            }
+            return true;
         }
-        return true;
+        return iterableContains((Iterable<?>) expected, actual);
     }
 
     public static boolean notIn(Object actual, Object expected) {
-        Collection<?> cc = actual instanceof Collection ? (Collection<?>) actual : Arrays.asList(actual);
-        for (Object item : cc) {
-            Iterator<?> eit = ((Iterable<?>) expected).iterator();
-            while (eit.hasNext()) {
-                if (Objects.equals(item, eit.next())) {
+        if (actual instanceof Collection) {
+            Set<Object> keys = toKeySet((Iterable<?>) expected);
+            for (Object item : (Collection<?>) actual) {
+                if (keys.contains(Converter.toKey(item))) {
                     return false;
                 }
             }
+            return true;
         }
-        return true;
+        return !iterableContains((Iterable<?>) expected, actual);
     }
 
     public static boolean between(Object actual, Boundary<?> boundary) {
@@ -252,7 +247,7 @@ public class ConditionTester {
         Iterator<?> a = ((Iterable<?>) actual).iterator();
         Iterator<?> e = ((Iterable<?>) expected).iterator();
         while (a.hasNext()) {
-            if (!(e.hasNext() && Objects.equals(a.next(), e.next()))) {
+            if (!(e.hasNext() && keyEquals(a.next(), e.next()))) {
                 return false;
             }
         }
@@ -260,55 +255,36 @@ public class ConditionTester {
     }
 
     public static boolean listNotEqual(Object actual, Object expected) {
-        if (actual == null) {
-            return !(expected != null && ((Iterable<?>) expected).iterator().hasNext());
-        }
-        Iterator<?> a = ((Iterable<?>) actual).iterator();
-        Iterator<?> e = ((Iterable<?>) expected).iterator();
-        while (a.hasNext()) {
-            if (!(e.hasNext() && Objects.equals(a.next(), e.next()))) {
-                return true;
-            }
-        }
-        return e.hasNext();
+        return !listEquals(actual, expected);
     }
 
     public static boolean listEqualsAtAnyOrder(Object actual, Object expected) {
         if (actual == null) {
             return expected == null || !((Iterable<?>) expected).iterator().hasNext();
         }
-        Iterator<?> a = ((Iterable<?>) actual).iterator();
-        List<Object> eList = new ArrayList<>();
-        ((Iterable<?>) expected).forEach(item -> eList.add(item));
-        while (a.hasNext()) {
-            Object aValue = a.next();
-            Iterator<Object> e = eList.iterator();
-            boolean match = false;
-            while (e.hasNext()) {
-                if (Objects.equals(aValue, e.next())) {
-                    e.remove();
-                    match = true;
-                    break;
-                }
-            }
-            if (!match) {
+        Map<Object, Integer> counts = toKeyCounts((Iterable<?>) expected);
+        for (Object item : (Iterable<?>) actual) {
+            Object key = Converter.toKey(item);
+            Integer count = counts.get(key);
+            if (count == null) {
                 return false;
             }
+            if (count == 1) {
+                counts.remove(key);
+            } else {
+                counts.put(key, count - 1);
+            }
         }
-        return eList.size() == 0;
+        return counts.isEmpty();
     }
 
     public static boolean listContains(Object actual, Object expected) {
         if (actual == null) {
             return false;
         }
-        List<?> aList = (List) actual;
-        if (!(expected instanceof Iterable)) {
-            return aList.contains(expected);
-        }
-        Iterator<?> e = ((Iterable<?>) expected).iterator();
-        while (e.hasNext()) {
-            if (!aList.contains(e.next())) {
+        Set<Object> keys = toKeySet((List<?>) actual);
+        for (Object item : asIterable(expected)) {
+            if (!keys.contains(Converter.toKey(item))) {
                 return false;
             }
         }
@@ -316,33 +292,16 @@ public class ConditionTester {
     }
 
     public static boolean listNotContain(Object actual, Object expected) {
-        if (actual == null) {
-            return true;
-        }
-        List<?> aList = (List) actual;
-        if (!(expected instanceof Iterable)) {
-            return !aList.contains(expected);
-        }
-        Iterator<?> e = ((Iterable<?>) expected).iterator();
-        while (e.hasNext()) {
-            if (aList.contains(e.next())) {
-                return false;
-            }
-        }
-        return true;
+        return actual == null || !listContainsAny(actual, expected);
     }
 
     public static boolean listContainsAny(Object actual, Object expected) {
         if (actual == null) {
             return false;
         }
-        List<?> aList = (List) actual;
-        if (!(expected instanceof Iterable)) {
-            return aList.contains(expected);
-        }
-        Iterator<?> e = ((Iterable<?>) expected).iterator();
-        while (e.hasNext()) {
-            if (aList.contains(e.next())) {
+        Set<Object> keys = toKeySet(asIterable(expected));
+        for (Object item : (List<?>) actual) {
+            if (keys.contains(Converter.toKey(item))) {
                 return true;
             }
         }
@@ -375,6 +334,68 @@ public class ConditionTester {
         return true;
     }
 
+    /**
+     * whether two values are equal after normalized by {@link Converter#toKey(Object)}
+     *
+     * @param a value a
+     * @param b value b
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/9 10:30
+     **/
+    public static boolean keyEquals(Object a, Object b) {
+        return Objects.equals(Converter.toKey(a), Converter.toKey(b));
+    }
+
+    /**
+     * hash set of normalized values for membership test
+     *
+     * @param values values
+     * @return java.util.Set<java.lang.Object>
+     * @author cysong
+     * @date 2022/9/9 10:30
+     **/
+    public static Set<Object> toKeySet(Iterable<?> values) {
+        Set<Object> keys = values instanceof Collection ? new HashSet<>(((Collection<?>) values).size() * 2) : new HashSet<>();
+        for (Object value : values) {
+            keys.add(Converter.toKey(value));
+        }
+        return keys;
+    }
+
+    /**
+     * multiset of normalized values, map from value to occurrences
+     *
+     * @param values values
+     * @return java.util.Map<java.lang.Object, java.lang.Integer>
+     * @author cysong
+     * @date 2022/9/9 10:30
+     **/
+    public static Map<Object, Integer> toKeyCounts(Iterable<?> values) {
+        Map<Object, Integer> counts = new HashMap<>();
+        for (Object value : values) {
+            counts.merge(Converter.toKey(value), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * expected value of list contains comparators may be a single element or iterable
+     **/
+    static Iterable<?> asIterable(Object expected) {
+        return expected instanceof Iterable ? (Iterable<?>) expected : Collections.singletonList(expected);
+    }
+
+    private static boolean iterableContains(Iterable<?> values, Object value) {
+        Object key = Converter.toKey(value);
+        for (Object item : values) {
+            if (Objects.equals(key, Converter.toKey(item))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static boolean listMatches(Object actual, Object expected) {
         List<?> param = actual == null ? new ArrayList<>(0) : (List<?>) actual;
         Predicate<List> predicate = (Predicate<List>) expected;
@@ -152,6 +152,55 @@ public class Converter {
         return new BigDecimal(String.valueOf(value));
     }
 
+    /**
+     * normalize value as a key for hashing and equality, numbers of the same value are normalized to the same key
+     * whatever the type is, such as 20, 20L, 20.0d and BigDecimal("20.00")
+     *
+     * @param value value to be normalized
+     * @return java.lang.Object a Long for integral numbers fit in long, a stripped BigDecimal for other numbers,
+     * the value itself for non numbers
+     * @author cysong
+     * @date 2022/9/9 10:05
+     **/
+    public static Object toKey(Object value) {
+        if (!(value instanceof Number)) {
+            return value;
+        }
+        if (value instanceof Long) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        BigDecimal decimal;
+        if (value instanceof BigDecimal) {
+            decimal = (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            decimal = new BigDecimal((BigInteger) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return d;
+            }
+            //use the shortest decimal representation so that 55.5f equals 55.5d
+            decimal = new BigDecimal(value.toString());
+        } else {
+            return value;
+        }
+        if (decimal.signum() == 0) {
+            return 0L;
+        }
+        decimal = decimal.stripTrailingZeros();
+        if (decimal.scale() <= 0) {
+            try {
+                return decimal.longValueExact();
+            } catch (ArithmeticException e) {
+                //integral but out of range of long
+            }
+        }
+        return decimal;
+    }
+
     public static String toString(Object value) {
         if (value == null) {
             return null;
@@ -0,0 +1,351 @@
+package com.github.cysong.dbassert.assertion;
+
+import com.github.cysong.dbassert.constant.Constants;
+import com.github.cysong.dbassert.exception.AssertionInterruptedException;
+import com.github.cysong.dbassert.utitls.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * run assertions asynchronously, threads are only occupied by polls running, not by waits between polls.
+ * <p>
+ * Polls ready to run are queued by dbKey(or by connection if created by connection) and taken from the queues
+ * in round robin, so that assertions of a busy database never starve the others. Polls of a dbKey running
+ * at the same time are limited, connections given by user are polled one at a time.
+ * <p>
+ * Change probes work as usual, but polls are only woken by timer, {@link Assertion#isWaitOnChange()} is ignored.
+ * The report step of an assertion is written when the assertion completes, by the thread running the last poll.
+ *
+ * @author cysong
+ * @date 2022/9/24 11:00
+ **/
+public class DbAssertExecutor implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(DbAssertExecutor.class);
+    private static final AtomicInteger POOL_ID = new AtomicInteger();
+    /**
+     * max polls running at the same time
+     **/
+    private final int parallelism;
+    /**
+     * max polls of a dbKey running at the same time if not set by {@link DbAssertExecutor#limit(String, int)}
+     **/
+    private final int concurrency;
+    private final Map<String, Integer> limits = new ConcurrentHashMap<>();
+    /**
+     * runs polls and timers of polls waiting
+     **/
+    private final ScheduledThreadPoolExecutor pool;
+    private final Set<Job> jobs = ConcurrentHashMap.newKeySet();
+    /**
+     * lanes by dbKey or connection, guarded by this
+     **/
+    private final Map<Object, Lane> lanes = new HashMap<>();
+    /**
+     * lanes having polls queued and free to run more, in round robin, guarded by this
+     **/
+    private final Deque<Lane> ready = new ArrayDeque<>();
+    private int running;
+    private volatile boolean closed;
+
+    public static DbAssertExecutor create() {
+        return create(Constants.ASYNC_PARALLELISM, Constants.ASYNC_CONCURRENCY);
+    }
+
+    /**
+     * @param parallelism max polls running at the same time
+     * @param concurrency default max polls of a dbKey running at the same time
+     * @return com.github.cysong.dbassert.assertion.DbAssertExecutor
+     * @author cysong
+     * @date 2022/9/24 11:05
+     **/
+    public static DbAssertExecutor create(int parallelism, int concurrency) {
+        assert parallelism > 0;
+        assert concurrency > 0;
+        return new DbAssertExecutor(parallelism, concurrency);
+    }
+
+    private DbAssertExecutor(int parallelism, int concurrency) {
+        this.parallelism = parallelism;
+        this.concurrency = concurrency;
+        int poolId = POOL_ID.incrementAndGet();
+        AtomicInteger threadId = new AtomicInteger();
+        this.pool = new ScheduledThreadPoolExecutor(parallelism, r -> {
+            Thread thread = new Thread(r, "dbassert-async-" + poolId + "-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pool.setRemoveOnCancelPolicy(true);
+        this.pool.setKeepAliveTime(60, TimeUnit.SECONDS);
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * limit polls of a dbKey running at the same time, it should not exceed the max pool size of the dbKey,
+     * otherwise polls beyond are blocked to borrow connections
+     *
+     * @param dbKey database key
+     * @param limit max polls running at the same time
+     * @return com.github.cysong.dbassert.assertion.DbAssertExecutor
+     * @author cysong
+     * @date 2022/9/24 11:10
+     **/
+    public DbAssertExecutor limit(String dbKey, int limit) {
+        assert Utils.isNotBlank(dbKey);
+        assert limit > 0;
+        limits.put(dbKey, limit);
+        synchronized (this) {
+            Lane lane = lanes.get(dbKey);
+            if (lane != null) {
+                lane.limit = limit;
+                updateReady(lane);
+            }
+        }
+        dispatch();
+        return this;
+    }
+
+    public int getLimit(String dbKey) {
+        return limits.getOrDefault(dbKey, concurrency);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * submit the assertion, the future completes with the result if passed,
+     * or exceptionally with the AssertionError or exception thrown if failed.
+     * Cancelling the future stops the assertion before the next poll
+     *
+     * @param executor executor of the assertion
+     * @return java.util.concurrent.CompletableFuture<com.github.cysong.dbassert.assertion.AssertResult>
+     * @author cysong
+     * @date 2022/9/24 11:15
+     **/
+    public CompletableFuture<AssertResult> submit(AssertionExecutor executor) {
+        if (closed) {
+            throw new IllegalStateException("Executor has been closed");
+        }
+        Assertion assertion = executor.getAssertion();
+        Job job = new Job(executor, assertion.getDbKey() != null ? assertion.getDbKey() : assertion.getConn());
+        executor.setAsync(true);
+        executor.begin();
+        jobs.add(job);
+        enqueue(job);
+        return job.future;
+    }
+
+    /**
+     * polls running now
+     *
+     * @return int
+     * @author cysong
+     * @date 2022/9/24 11:20
+     **/
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * assertions submitted and not completed yet
+     *
+     * @return int
+     * @author cysong
+     * @date 2022/9/24 11:20
+     **/
+    public int getPending() {
+        return jobs.size();
+    }
+
+    /**
+     * interrupt running polls and fail assertions not completed, assertions polling are failed
+     * by the thread running the poll after it returns, so an assertion is never failed during a poll
+     *
+     * @author cysong
+     * @date 2022/9/24 11:25
+     **/
+    @Override
+    public void close() {
+        List<Job> idle = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (Job job : jobs) {
+                if (!job.polling) {
+                    idle.add(job);
+                }
+            }
+        }
+        pool.shutdownNow();
+        for (Job job : idle) {
+            complete(job, new AssertionInterruptedException("Executor has been closed"));
+        }
+    }
+
+    private void enqueue(Job job) {
+        synchronized (this) {
+            Lane lane = lanes.computeIfAbsent(job.key, key -> new Lane(key, key instanceof String ? getLimit((String) key) : 1));
+            lane.queue.add(job);
+            updateReady(lane);
+        }
+        dispatch();
+    }
+
+    private void schedule(Job job, long delay) {
+        if (delay <= 0) {
+            enqueue(job);
+            return;
+        }
+        try {
+            pool.schedule(() -> enqueue(job), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            complete(job, new AssertionInterruptedException("Executor has been closed", e));
+        }
+    }
+
+    /**
+     * run polls queued in round robin of lanes, until parallelism reached or no lane ready
+     *
+     * @author cysong
+     * @date 2022/9/24 11:30
+     **/
+    private void dispatch() {
+        Map<Job, Lane> tasks = new LinkedHashMap<>();
+        synchronized (this) {
+            while (running < parallelism && !ready.isEmpty()) {
+                Lane lane = ready.poll();
+                lane.inReady = false;
+                Job job = lane.queue.poll();
+                job.polling = true;
+                lane.running++;
+                running++;
+                updateReady(lane);
+                tasks.put(job, lane);
+            }
+        }
+        tasks.forEach((job, lane) -> {
+            try {
+                pool.execute(() -> step(lane, job));
+            } catch (RejectedExecutionException e) {
+                //jobs taken to poll are skipped by close
+                complete(job, new AssertionInterruptedException("Executor has been closed", e));
+            }
+        });
+    }
+
+    /**
+     * a lane is ready if polls queued and running polls under the limit, it's put to the tail of the round robin
+     **/
+    private void updateReady(Lane lane) {
+        if (!lane.inReady && !lane.queue.isEmpty() && lane.running < lane.limit) {
+            lane.inReady = true;
+            ready.add(lane);
+        } else if (lane.running == 0 && lane.queue.isEmpty()) {
+            lanes.remove(lane.key);
+        }
+    }
+
+    private void step(Lane lane, Job job) {
+        long waitMills = -1;
+        Throwable failure = null;
+        AssertionExecutor executor = job.executor;
+        if (job.future.isDone()) {
+            failure = new AssertionInterruptedException("Assert cancelled");
+        } else {
+            try {
+                executor.acquireConnection();
+                try {
+                    if (job.prepared) {
+                        waitMills = executor.poll();
+                    } else {
+                        executor.prepare();
+                        job.prepared = true;
+                        waitMills = executor.getDelay();
+                    }
+                } finally {
+                    executor.releaseConnection();
+                }
+            } catch (Throwable throwable) {
+                failure = throwable;
+            }
+        }
+        boolean stopped;
+        synchronized (this) {
+            job.polling = false;
+            lane.running--;
+            running--;
+            updateReady(lane);
+            stopped = closed;
+        }
+        if (failure == null && waitMills >= 0 && stopped) {
+            failure = new AssertionInterruptedException("Executor has been closed");
+        }
+        if (failure != null) {
+            complete(job, failure);
+        } else if (waitMills < 0) {
+            complete(job, null);
+        } else {
+            schedule(job, waitMills);
+        }
+        dispatch();
+    }
+
+    private void complete(Job job, Throwable failure) {
+        if (!jobs.remove(job)) {
+            return;
+        }
+        try {
+            if (failure != null) {
+                job.executor.fail(failure);
+            }
+            job.executor.end();
+        } catch (RuntimeException e) {
+            log.warn("Complete assertion failed", e);
+        }
+        if (failure != null) {
+            job.future.completeExceptionally(failure);
+        } else {
+            job.future.complete(job.executor.getResult());
+        }
+    }
+
+    private static class Job {
+        private final AssertionExecutor executor;
+        /**
+         * dbKey, or connection if created by connection
+         **/
+        private final Object key;
+        private final CompletableFuture<AssertResult> future = new CompletableFuture<>();
+        private boolean prepared;
+        /**
+         * taken to poll and the poll not returned yet, guarded by the executor
+         **/
+        private boolean polling;
+
+        private Job(AssertionExecutor executor, Object key) {
+            this.executor = executor;
+            this.key = key;
+        }
+    }
+
+    private static class Lane {
+        private final Object key;
+        private final Queue<Job> queue = new ArrayDeque<>();
+        private int limit;
+        private int running;
+        private boolean inReady;
+
+        private Lane(Object key, int limit) {
+            this.key = key;
+            this.limit = limit;
+        }
+    }
+}
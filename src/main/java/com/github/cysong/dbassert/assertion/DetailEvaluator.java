@@ -0,0 +1,209 @@
+package com.github.cysong.dbassert.assertion;
+
+import com.github.cysong.dbassert.expression.Condition;
+import com.github.cysong.dbassert.expression.ListCondition;
+import com.github.cysong.dbassert.metrics.AssertionMetrics;
+import com.github.cysong.dbassert.sql.SqlResult;
+import com.github.cysong.dbassert.utitls.Utils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * evaluate detail rows while streaming through the result set
+ * <p>
+ * Column indexes are resolved and conditions are compiled once from {@link ResultSetMetaData} and reused by retries,
+ * only values of columns with {@link ListCondition} are buffered.
+ *
+ * @author cysong
+ * @date 2022/9/5 10:20
+ **/
+public class DetailEvaluator {
+    private final SqlResult sqlResult;
+    private final Set<Condition> skipped;
+    private int[] indexes;
+    private CompiledCondition[][] conditions;
+    private CompiledCondition[][] listConditions;
+    private AssertionMetrics metrics;
+
+    public static DetailEvaluator create(SqlResult sqlResult) {
+        return new DetailEvaluator(sqlResult, Collections.emptySet());
+    }
+
+    /**
+     * create evaluator without the given conditions, such as conditions already evaluated by database
+     *
+     * @param sqlResult sql build result
+     * @param skipped   conditions not evaluated
+     * @return com.github.cysong.dbassert.assertion.DetailEvaluator
+     * @author cysong
+     * @date 2022/9/9 15:10
+     **/
+    public static DetailEvaluator create(SqlResult sqlResult, Collection<Condition> skipped) {
+        Set<Condition> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(skipped);
+        return new DetailEvaluator(sqlResult, set);
+    }
+
+    private DetailEvaluator(SqlResult sqlResult, Set<Condition> skipped) {
+        this.sqlResult = sqlResult;
+        this.skipped = skipped;
+    }
+
+    /**
+     * whether any condition is evaluated by detail rows
+     *
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/9 15:10
+     **/
+    public boolean hasConditions() {
+        if (Utils.isNotEmpty(sqlResult.getListColumns())) {
+            return true;
+        }
+        if (Utils.isNotEmpty(sqlResult.getColumns())) {
+            return sqlResult.getColumns().values().stream().flatMap(List::stream).anyMatch(con -> !skipped.contains(con));
+        }
+        return false;
+    }
+
+    /**
+     * evaluate all rows of the result set and record every value tested to the assert result
+     *
+     * @param rs     result set return by query
+     * @param onRow  whether the cursor is already positioned on the first row
+     * @param result assert result to record details
+     * @return com.github.cysong.dbassert.assertion.DetailEvaluator.Violation the first condition failed, null if all pass
+     * @author cysong
+     * @date 2022/9/5 10:25
+     **/
+    public Violation evaluate(ResultSet rs, boolean onRow, AssertResult result) throws SQLException {
+        if (indexes == null) {
+            resolveColumns(rs.getMetaData());
+        }
+        List<Object>[] buffers = newBuffers();
+        int rows = 0;
+        for (; onRow; onRow = RowReader.next(rs, metrics)) {
+            rows++;
+            for (int i = 0; i < indexes.length; i++) {
+                Object value = RowReader.getObject(rs, indexes[i], metrics);
+                if (buffers[i] != null) {
+                    buffers[i].add(value);
+                }
+                for (CompiledCondition condition : conditions[i]) {
+                    boolean pass = condition.test(value);
+                    result.add(pass, condition.getCondition(), value, rows);
+                    if (!pass) {
+                        return new Violation(condition.getCondition(), value);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < indexes.length; i++) {
+            //list is null if no rows returned
+            List<Object> values = rows == 0 ? null : buffers[i];
+            for (CompiledCondition condition : listConditions[i]) {
+                boolean pass = condition.test(values);
+                result.add(pass, condition.getCondition(), values);
+                if (!pass) {
+                    return new Violation(condition.getCondition(), values);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * record rows and time of reading to the metrics, null to disable
+     *
+     * @param metrics metrics of the assertion
+     * @author cysong
+     * @date 2022/9/20 11:10
+     **/
+    public void setMetrics(AssertionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private void resolveColumns(ResultSetMetaData metaData) throws SQLException {
+        int size = sqlResult.getColumnSet().size();
+        int[] indexes = new int[size];
+        CompiledCondition[][] conditions = new CompiledCondition[size][];
+        CompiledCondition[][] listConditions = new CompiledCondition[size][];
+        int i = 0;
+        for (String col : sqlResult.getColumnSet()) {
+            indexes[i] = findColumn(metaData, col);
+            conditions[i] = compile(getOrEmpty(sqlResult.getColumns(), col));
+            listConditions[i] = compile(getOrEmpty(sqlResult.getListColumns(), col));
+            i++;
+        }
+        this.conditions = conditions;
+        this.listConditions = listConditions;
+        this.indexes = indexes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object>[] newBuffers() {
+        List<Object>[] buffers = (List<Object>[]) new List<?>[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            if (listConditions[i].length > 0) {
+                buffers[i] = new ArrayList<>();
+            }
+        }
+        return buffers;
+    }
+
+    static int findColumn(ResultSetMetaData metaData, String column) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        for (int i = 1; i <= columnCount; i++) {
+            if (column.equals(metaData.getColumnLabel(i))) {
+                return i;
+            }
+        }
+        for (int i = 1; i <= columnCount; i++) {
+            if (column.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                return i;
+            }
+        }
+        throw new SQLException(String.format("column %s not exists in result set", column));
+    }
+
+    private CompiledCondition[] compile(List<? extends Condition> conditions) {
+        return conditions.stream().filter(con -> !skipped.contains(con))
+                .map(CompiledCondition::compile).toArray(CompiledCondition[]::new);
+    }
+
+    static <T> List<T> getOrEmpty(Map<String, List<T>> map, String column) {
+        if (map == null) {
+            return Collections.emptyList();
+        }
+        return map.getOrDefault(column, Collections.emptyList());
+    }
+
+    /**
+     * the first condition failed and the actual value
+     **/
+    public static class Violation {
+        private final Condition condition;
+        private final Object actual;
+
+        Violation(Condition condition, Object actual) {
+            this.condition = condition;
+            this.actual = actual;
+        }
+
+        public Condition getCondition() {
+            return condition;
+        }
+
+        public Object getActual() {
+            return actual;
+        }
+
+        public String getAssertMessage() {
+            return condition.getAssertMessage(actual);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.github.cysong.dbassert.assertion;
+
+import com.github.cysong.dbassert.exception.ConfigurationException;
+import com.github.cysong.dbassert.expression.ListCondition;
+
+import java.util.*;
+
+/**
+ * streaming state of a {@link ListCondition}, values are accepted one by one without buffering the entire list,
+ * memory used only depends on the expected value
+ * <p>
+ * The result is the same as {@link ConditionTester#test(com.github.cysong.dbassert.constant.Comparator, Object, Object)}
+ * with the list of all values accepted, the list is null if no value accepted
+ *
+ * @author cysong
+ * @date 2022/9/13 10:30
+ **/
+public abstract class ListAccumulator {
+    protected final ListCondition condition;
+    protected long size;
+
+    /**
+     * create streaming state of list condition
+     *
+     * @param condition list condition
+     * @return com.github.cysong.dbassert.assertion.ListAccumulator
+     * @author cysong
+     * @date 2022/9/13 10:35
+     **/
+    public static ListAccumulator create(ListCondition condition) {
+        switch (condition.getComparator()) {
+            case LIST_IS_EMPTY:
+            case LIST_NOT_EMPTY:
+            case LIST_HAS_SIZE:
+                return new Size(condition);
+            case LIST_IS_ORDERED_ASC:
+                return new Ordered(condition, true);
+            case LIST_IS_ORDERED_DESC:
+                return new Ordered(condition, false);
+            case LIST_EQUALS:
+                return new Equals(condition, true);
+            case LIST_NOT_EQUAL:
+                return new Equals(condition, false);
+            case LIST_EQUALS_AT_ANY_ORDER:
+                return new EqualsAtAnyOrder(condition);
+            case LIST_CONTAINS:
+                return new ContainsAll(condition);
+            case LIST_CONTAINS_ANY:
+                return new ContainsAny(condition, true);
+            case LIST_NOT_CONTAIN:
+                return new ContainsAny(condition, false);
+            default:
+                throw new ConfigurationException("Not supported by streaming list:" + condition.getComparator().name());
+        }
+    }
+
+    protected ListAccumulator(ListCondition condition) {
+        this.condition = condition;
+    }
+
+    /**
+     * accept next value of the list
+     *
+     * @param value column value of next row
+     * @author cysong
+     * @date 2022/9/13 10:36
+     **/
+    public void accept(Object value) {
+        size++;
+        accept0(value);
+    }
+
+    protected abstract void accept0(Object value);
+
+    /**
+     * test the list of values accepted
+     *
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/13 10:36
+     **/
+    public abstract boolean test();
+
+    /**
+     * whether the condition already fails whatever values accepted later, so the scan can be stopped
+     *
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/13 10:36
+     **/
+    public boolean isViolated() {
+        return false;
+    }
+
+    /**
+     * describe the list of values accepted as the actual value of report
+     *
+     * @return java.lang.String
+     * @author cysong
+     * @date 2022/9/13 10:37
+     **/
+    public String describe() {
+        return "list of " + size + " values";
+    }
+
+    public ListCondition getCondition() {
+        return condition;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    static class Size extends ListAccumulator {
+
+        Size(ListCondition condition) {
+            super(condition);
+        }
+
+        @Override
+        protected void accept0(Object value) {
+        }
+
+        @Override
+        public boolean test() {
+            switch (condition.getComparator()) {
+                case LIST_IS_EMPTY:
+                    return size == 0;
+                case LIST_NOT_EMPTY:
+                    return size > 0;
+                default:
+                    return size > 0 && ConditionTester.compare(size, condition.getExpected()) == 0;
+            }
+        }
+    }
+
+    static class Ordered extends ListAccumulator {
+        private final boolean asc;
+        private Object previous;
+        private long violatedAt = -1;
+
+        Ordered(ListCondition condition, boolean asc) {
+            super(condition);
+            this.asc = asc;
+        }
+
+        @Override
+        protected void accept0(Object value) {
+            if (violatedAt < 0 && size > 1) {
+                int c = ConditionTester.compare(previous, value);
+                if (asc ? c > 0 : c < 0) {
+                    violatedAt = size - 1;
+                }
+            }
+            previous = value;
+        }
+
+        @Override
+        public boolean test() {
+            return violatedAt < 0;
+        }
+
+        @Override
+        public boolean isViolated() {
+            return violatedAt >= 0;
+        }
+
+        @Override
+        public String describe() {
+            return violatedAt < 0 ? super.describe() : super.describe() + ", unordered at index " + violatedAt;
+        }
+    }
+
+    static class Equals extends ListAccumulator {
+        private final Iterator<?> expected;
+        private final boolean equals;
+        private long mismatchAt = -1;
+
+        Equals(ListCondition condition, boolean equals) {
+            super(condition);
+            Iterable<?> expected = (Iterable<?>) condition.getExpected();
+            this.expected = expected == null ? Collections.emptyIterator() : expected.iterator();
+            this.equals = equals;
+        }
+
+        @Override
+        protected void accept0(Object value) {
+            if (mismatchAt < 0 && !(expected.hasNext() && ConditionTester.keyEquals(value, expected.next()))) {
+                mismatchAt = size - 1;
+            }
+        }
+
+        @Override
+        public boolean test() {
+            return (mismatchAt < 0 && !expected.hasNext()) == equals;
+        }
+
+        @Override
+        public boolean isViolated() {
+            return equals && mismatchAt >= 0;
+        }
+
+        @Override
+        public String describe() {
+            return mismatchAt < 0 ? super.describe() : super.describe() + ", mismatch at index " + mismatchAt;
+        }
+    }
+
+    static class EqualsAtAnyOrder extends ListAccumulator {
+        private final Map<Object, Integer> counts;
+        private Object unexpected;
+        private boolean mismatch;
+
+        EqualsAtAnyOrder(ListCondition condition) {
+            super(condition);
+            Iterable<?> expected = (Iterable<?>) condition.getExpected();
+            this.counts = expected == null ? new HashMap<>() : ConditionTester.toKeyCounts(expected);
+        }
+
+        @Override
+        protected void accept0(Object value) {
+            if (mismatch) {
+                return;
+            }
+            Object key = Converter.toKey(value);
+            Integer count = counts.get(key);
+            if (count == null) {
+                mismatch = true;
+                unexpected = value;
+            } else if (count == 1) {
+                counts.remove(key);
+            } else {
+                counts.put(key, count - 1);
+            }
+        }
+
+        @Override
+        public boolean test() {
+            return !mismatch && counts.isEmpty();
+        }
+
+        @Override
+        public boolean isViolated() {
+            return mismatch;
+        }
+
+        @Override
+        public String describe() {
+            if (mismatch) {
+                return super.describe() + ", unexpected value " + unexpected;
+            }
+            return counts.isEmpty() ? super.describe() : super.describe() + ", missing values " + counts.keySet();
+        }
+    }
+
+    static class ContainsAll extends ListAccumulator {
+        private final Set<Object> keys;
+        private final Set<Object> found = new HashSet<>();
+
+        ContainsAll(ListCondition condition) {
+            super(condition);
+            this.keys = ConditionTester.toKeySet(ConditionTester.asIterable(condition.getExpected()));
+        }
+
+        @Override
+        protected void accept0(Object value) {
+            if (found.size() < keys.size()) {
+                Object key = Converter.toKey(value);
+                if (keys.contains(key)) {
+                    found.add(key);
+                }
+            }
+        }
+
+        @Override
+        public boolean test() {
+            return size > 0 && found.size() == keys.size();
+        }
+    }
+
+    static class ContainsAny extends ListAccumulator {
+        private final Set<Object> keys;
+        private final boolean any;
+        private Object found;
+        private boolean contains;
+
+        ContainsAny(ListCondition condition, boolean any) {
+            super(condition);
+            this.keys = ConditionTester.toKeySet(ConditionTester.asIterable(condition.getExpected()));
+            this.any = any;
+        }
+
+        @Override
+        protected void accept0(Object value) {
+            if (!contains && keys.contains(Converter.toKey(value))) {
+                contains = true;
+                found = value;
+            }
+        }
+
+        @Override
+        public boolean test() {
+            return any ? contains : !contains;
+        }
+
+        @Override
+        public boolean isViolated() {
+            return !any && contains;
+        }
+
+        @Override
+        public String describe() {
+            return contains ? super.describe() + ", contains " + found : super.describe();
+        }
+    }
+}
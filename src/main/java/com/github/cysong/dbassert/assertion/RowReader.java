@@ -0,0 +1,94 @@
+package com.github.cysong.dbassert.assertion;
+
+import com.github.cysong.dbassert.metrics.AssertionMetrics;
+import com.github.cysong.dbassert.metrics.Phase;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * move cursors and read values of result sets, time spent, rows and estimated bytes read are recorded
+ * to the metrics if not null
+ *
+ * @author cysong
+ * @date 2022/9/20 11:00
+ **/
+final class RowReader {
+
+    private RowReader() {
+
+    }
+
+    static boolean next(ResultSet rs, AssertionMetrics metrics) throws SQLException {
+        if (metrics == null) {
+            return rs.next();
+        }
+        long start = System.nanoTime();
+        boolean hasRow = rs.next();
+        metrics.addPhaseNanos(Phase.ROW_FETCH, System.nanoTime() - start);
+        if (hasRow) {
+            metrics.addRowsScanned(1);
+        }
+        return hasRow;
+    }
+
+    static Object getObject(ResultSet rs, int index, AssertionMetrics metrics) throws SQLException {
+        if (metrics == null) {
+            return rs.getObject(index);
+        }
+        long start = System.nanoTime();
+        Object value = rs.getObject(index);
+        metrics.addPhaseNanos(Phase.ROW_FETCH, System.nanoTime() - start);
+        metrics.addBytesFetched(sizeOf(value));
+        return value;
+    }
+
+    static Object getObject(ResultSet rs, String label, AssertionMetrics metrics) throws SQLException {
+        if (metrics == null) {
+            return rs.getObject(label);
+        }
+        long start = System.nanoTime();
+        Object value = rs.getObject(label);
+        metrics.addPhaseNanos(Phase.ROW_FETCH, System.nanoTime() - start);
+        metrics.addBytesFetched(sizeOf(value));
+        return value;
+    }
+
+    /**
+     * estimated size of a value, chars of text and bytes of binary, fixed size of other types
+     *
+     * @param value value read from result set
+     * @return long
+     * @author cysong
+     * @date 2022/9/20 11:05
+     **/
+    static long sizeOf(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof Boolean || value instanceof Byte) {
+            return 1;
+        }
+        if (value instanceof Short) {
+            return 2;
+        }
+        if (value instanceof Integer || value instanceof Float) {
+            return 4;
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).unscaledValue().bitLength() / 8 + 1;
+        }
+        if (value instanceof BigInteger) {
+            return ((BigInteger) value).bitLength() / 8 + 1;
+        }
+        return 8;
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.cysong.dbassert.assertion;
+
+import java.math.BigDecimal;
+
+/**
+ * violation rate estimated from sampled rows, with the Wilson score interval at the confidence level
+ * <p>
+ * The sample passes if the upper bound of the interval does not exceed the tolerance,
+ * that is the violation rate of all rows is within the tolerance at the confidence level.
+ *
+ * @author cysong
+ * @date 2022/9/29 10:10
+ **/
+public class SampleEstimate {
+    private final long sampled;
+    private final long violated;
+    private final double confidence;
+    private final double tolerance;
+    private final double lower;
+    private final double upper;
+
+    /**
+     * @param sampled    rows sampled
+     * @param violated   rows sampled failed any condition
+     * @param confidence confidence level of the interval, such as 0.95
+     * @param tolerance  max violation rate allowed
+     * @return com.github.cysong.dbassert.assertion.SampleEstimate
+     * @author cysong
+     * @date 2022/9/29 10:15
+     **/
+    public static SampleEstimate create(long sampled, long violated, double confidence, double tolerance) {
+        assert sampled > 0 && violated >= 0 && violated <= sampled;
+        assert confidence > 0 && confidence < 1;
+        assert tolerance >= 0 && tolerance < 1;
+        return new SampleEstimate(sampled, violated, confidence, tolerance);
+    }
+
+    private SampleEstimate(long sampled, long violated, double confidence, double tolerance) {
+        this.sampled = sampled;
+        this.violated = violated;
+        this.confidence = confidence;
+        this.tolerance = tolerance;
+        double z = getZScore(confidence);
+        double rate = (double) violated / sampled;
+        double z2 = z * z / sampled;
+        double center = (rate + z2 / 2) / (1 + z2);
+        double margin = z * Math.sqrt(rate * (1 - rate) / sampled + z2 / (4 * sampled)) / (1 + z2);
+        this.lower = Math.max(0, center - margin);
+        this.upper = Math.min(1, center + margin);
+    }
+
+    /**
+     * min rows sampled to pass without any violation, the upper bound of the interval is z^2/(n+z^2) if none violated,
+     * so a sample of fewer rows can never pass
+     *
+     * @param confidence confidence level of the interval
+     * @param tolerance  max violation rate allowed
+     * @return long min rows sampled, -1 if no sample can pass such as tolerance is 0
+     * @author cysong
+     * @date 2022/9/29 10:25
+     **/
+    public static long getMinSampleSize(double confidence, double tolerance) {
+        if (tolerance <= 0) {
+            return -1;
+        }
+        double z = getZScore(confidence);
+        long size = Math.max(1, (long) Math.ceil(z * z * (1 - tolerance) / tolerance));
+        //keep consistent with the rounding of the interval
+        while (!new SampleEstimate(size, 0, confidence, tolerance).isPass()) {
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * two-sided critical value of the standard normal distribution,
+     * by the rational approximation of Abramowitz and Stegun 26.2.23 with error below 4.5e-4
+     *
+     * @param confidence confidence level
+     * @return double
+     * @author cysong
+     * @date 2022/9/29 10:20
+     **/
+    static double getZScore(double confidence) {
+        double tail = (1 - confidence) / 2;
+        double t = Math.sqrt(-2 * Math.log(tail));
+        return t - (2.515517 + 0.802853 * t + 0.010328 * t * t) / (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+    }
+
+    public boolean isPass() {
+        return upper <= tolerance;
+    }
+
+    public long getSampled() {
+        return sampled;
+    }
+
+    public long getViolated() {
+        return violated;
+    }
+
+    public double getRate() {
+        return (double) violated / sampled;
+    }
+
+    public double getLower() {
+        return lower;
+    }
+
+    public double getUpper() {
+        return upper;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("violation rate %.4f%% (%d/%d), %s%% confidence interval [%.4f%%, %.4f%%], tolerance %s%%",
+                getRate() * 100, violated, sampled, formatPercent(confidence), lower * 100, upper * 100, formatPercent(tolerance));
+    }
+
+    private static String formatPercent(double value) {
+        return BigDecimal.valueOf(value * 100).stripTrailingZeros().toPlainString();
+    }
+}
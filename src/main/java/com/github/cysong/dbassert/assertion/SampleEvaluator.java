@@ -0,0 +1,213 @@
+package com.github.cysong.dbassert.assertion;
+
+import com.github.cysong.dbassert.exception.ConfigurationException;
+import com.github.cysong.dbassert.expression.Condition;
+import com.github.cysong.dbassert.metrics.AssertionMetrics;
+import com.github.cysong.dbassert.sql.SqlResult;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * evaluate rows sampled by random keys, count rows violated instead of stopping at the first failed value
+ * <p>
+ * Each random key draws the first row at or after it, so every row sampled is an independent draw and a row
+ * is drawn in proportion to the gap of keys before it. The sample is only uniform over rows if keys are dense,
+ * such as auto increment ids without many rows deleted or filtered out.
+ * Like {@link ScanEvaluator} only a summary of each condition is added to the assert result,
+ * the violation rate of all rows is estimated by {@link SampleEstimate}.
+ *
+ * @author cysong
+ * @date 2022/9/29 10:30
+ **/
+public class SampleEvaluator {
+    private final SqlResult sqlResult;
+    private final List<Condition> conditionList = new ArrayList<>();
+    private int[] indexes;
+    private CompiledCondition[][] conditions;
+    private long rows;
+    private long violatedRows;
+    /**
+     * rows violated and the first violation of each condition
+     **/
+    private Map<Condition, Long> violations;
+    private Map<Condition, DetailEvaluator.Violation> firstViolations;
+    private AssertionMetrics metrics;
+
+    public static SampleEvaluator create(SqlResult sqlResult) {
+        return new SampleEvaluator(sqlResult);
+    }
+
+    private SampleEvaluator(SqlResult sqlResult) {
+        this.sqlResult = sqlResult;
+        for (String col : sqlResult.getColumnSet()) {
+            conditionList.addAll(DetailEvaluator.getOrEmpty(sqlResult.getColumns(), col));
+        }
+    }
+
+    /**
+     * whether any condition is evaluated by sampled rows
+     *
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/29 10:35
+     **/
+    public boolean hasConditions() {
+        return !conditionList.isEmpty();
+    }
+
+    /**
+     * reset state before a new sample
+     *
+     * @author cysong
+     * @date 2022/9/29 10:35
+     **/
+    public void begin() {
+        rows = 0;
+        violatedRows = 0;
+        violations = new IdentityHashMap<>();
+        firstViolations = new IdentityHashMap<>();
+    }
+
+    /**
+     * evaluate rows drawn by a random key
+     *
+     * @param rs result set of the draw
+     * @return int rows read
+     * @author cysong
+     * @date 2022/9/29 10:36
+     **/
+    public int evaluate(ResultSet rs) throws SQLException {
+        if (indexes == null) {
+            resolveColumns(rs.getMetaData());
+        }
+        int read = 0;
+        while (RowReader.next(rs, metrics)) {
+            read++;
+            rows++;
+            boolean violated = false;
+            for (int i = 0; i < indexes.length; i++) {
+                Object value = RowReader.getObject(rs, indexes[i], metrics);
+                for (CompiledCondition compiled : conditions[i]) {
+                    if (!compiled.test(value)) {
+                        Condition condition = compiled.getCondition();
+                        violated = true;
+                        violations.merge(condition, 1L, Long::sum);
+                        firstViolations.putIfAbsent(condition, new DetailEvaluator.Violation(condition, value));
+                    }
+                }
+            }
+            if (violated) {
+                violatedRows++;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * add summary of every condition to the assert result
+     *
+     * @param result   assert result to record summary
+     * @param estimate violation rate estimated from the sample
+     * @return com.github.cysong.dbassert.assertion.DetailEvaluator.Violation the first violation of the first condition failed, null if none
+     * @author cysong
+     * @date 2022/9/29 10:38
+     **/
+    public DetailEvaluator.Violation finish(AssertResult result, SampleEstimate estimate) {
+        DetailEvaluator.Violation first = null;
+        for (Condition con : conditionList) {
+            long violated = violations.getOrDefault(con, 0L);
+            result.add(violated == 0 || estimate.isPass(), con, violated + " of " + rows + " sampled rows violated");
+            if (first == null) {
+                first = firstViolations.get(con);
+            }
+        }
+        return first;
+    }
+
+    /**
+     * keys drawn uniformly between the min and max key, in ascending order so draws read the index in order.
+     * Integral keys are drawn from all integers between, other numeric keys from [min, max)
+     *
+     * @param min    min key of rows matched
+     * @param max    max key of rows matched
+     * @param count  keys to draw
+     * @param random random seeded for reproducible samples
+     * @return java.util.List<java.lang.Object>
+     * @author cysong
+     * @date 2022/9/29 10:40
+     **/
+    public static List<Object> randomKeys(Object min, Object max, int count, Random random) {
+        if (!(min instanceof Number) || !(max instanceof Number)) {
+            throw new ConfigurationException("Sample requires a numeric key column, but key is " + min.getClass().getName());
+        }
+        List<Object> keys = new ArrayList<>(count);
+        if (isIntegral(min) && isIntegral(max)) {
+            long low = ((Number) min).longValue();
+            double span = (double) ((Number) max).longValue() - low + 1;
+            long[] values = new long[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = low + (long) (random.nextDouble() * span);
+            }
+            Arrays.sort(values);
+            Arrays.stream(values).forEach(keys::add);
+        } else {
+            double low = ((Number) min).doubleValue();
+            double span = ((Number) max).doubleValue() - low;
+            double[] values = new double[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = low + random.nextDouble() * span;
+            }
+            Arrays.sort(values);
+            Arrays.stream(values).forEach(keys::add);
+        }
+        return keys;
+    }
+
+    /**
+     * record rows and time of reading to the metrics, null to disable
+     *
+     * @param metrics metrics of the assertion
+     * @author cysong
+     * @date 2022/9/29 10:45
+     **/
+    public void setMetrics(AssertionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getViolatedRows() {
+        return violatedRows;
+    }
+
+    private static boolean isIntegral(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+                || value instanceof BigInteger) {
+            return true;
+        }
+        return value instanceof BigDecimal && ((BigDecimal) value).stripTrailingZeros().scale() <= 0;
+    }
+
+    private void resolveColumns(ResultSetMetaData metaData) throws SQLException {
+        int size = sqlResult.getColumnSet().size();
+        int[] indexes = new int[size];
+        CompiledCondition[][] conditions = new CompiledCondition[size][];
+        int i = 0;
+        for (String col : sqlResult.getColumnSet()) {
+            indexes[i] = DetailEvaluator.findColumn(metaData, col);
+            conditions[i] = DetailEvaluator.getOrEmpty(sqlResult.getColumns(), col).stream()
+                    .map(CompiledCondition::compile)
+                    .toArray(CompiledCondition[]::new);
+            i++;
+        }
+        this.conditions = conditions;
+        this.indexes = indexes;
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.cysong.dbassert.assertion;
+
+import com.github.cysong.dbassert.expression.Condition;
+import com.github.cysong.dbassert.metrics.AssertionMetrics;
+import com.github.cysong.dbassert.sql.SqlResult;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * evaluate rows of a full scan chunk by chunk, list conditions are kept as {@link ListAccumulator}
+ * <p>
+ * Unlike {@link DetailEvaluator} values passed are not recorded one by one,
+ * only a summary of each condition and the failed value are added to the assert result,
+ * so memory used does not grow with the rows scanned.
+ *
+ * @author cysong
+ * @date 2022/9/13 11:00
+ **/
+public class ScanEvaluator {
+    private final SqlResult sqlResult;
+    private final Set<Condition> skipped;
+    private int keyIndex;
+    private int[] indexes;
+    private CompiledCondition[][] conditions;
+    private ListAccumulator[][] accumulators;
+    private long rows;
+    private Object lastKey;
+    private DetailEvaluator.Violation violation;
+    private long violationRow;
+    private AssertionMetrics metrics;
+
+    public static ScanEvaluator create(SqlResult sqlResult, Collection<Condition> skipped) {
+        Set<Condition> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(skipped);
+        return new ScanEvaluator(sqlResult, set);
+    }
+
+    private ScanEvaluator(SqlResult sqlResult, Set<Condition> skipped) {
+        this.sqlResult = sqlResult;
+        this.skipped = skipped;
+    }
+
+    /**
+     * whether any condition is evaluated by the scan
+     *
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/13 11:05
+     **/
+    public boolean hasConditions() {
+        return sqlResult.getColumnSet().stream()
+                .flatMap(col -> getConditions(col).stream())
+                .anyMatch(con -> !skipped.contains(con));
+    }
+
+    /**
+     * reset state before a new scan
+     *
+     * @author cysong
+     * @date 2022/9/13 11:05
+     **/
+    public void begin() {
+        rows = 0;
+        lastKey = null;
+        violation = null;
+        violationRow = -1;
+        accumulators = null;
+    }
+
+    /**
+     * evaluate rows of a chunk, stop at the first failed value
+     *
+     * @param rs result set of the chunk
+     * @return int rows read
+     * @author cysong
+     * @date 2022/9/13 11:06
+     **/
+    public int evaluate(ResultSet rs) throws SQLException {
+        if (indexes == null) {
+            resolveColumns(rs.getMetaData());
+        }
+        if (accumulators == null) {
+            accumulators = newAccumulators();
+        }
+        int read = 0;
+        while (violation == null && RowReader.next(rs, metrics)) {
+            read++;
+            rows++;
+            lastKey = RowReader.getObject(rs, keyIndex, metrics);
+            for (int i = 0; i < indexes.length && violation == null; i++) {
+                Object value = RowReader.getObject(rs, indexes[i], metrics);
+                for (CompiledCondition condition : conditions[i]) {
+                    if (!condition.test(value)) {
+                        violation = new DetailEvaluator.Violation(condition.getCondition(), value);
+                        violationRow = rows;
+                        break;
+                    }
+                }
+                for (ListAccumulator accumulator : accumulators[i]) {
+                    accumulator.accept(value);
+                    if (accumulator.isViolated()) {
+                        violation = new DetailEvaluator.Violation(accumulator.getCondition(), accumulator.describe());
+                        violationRow = rows;
+                        break;
+                    }
+                }
+            }
+        }
+        return read;
+    }
+
+    /**
+     * test list conditions after all chunks read and add summary of every condition to the assert result
+     *
+     * @param result assert result to record summary
+     * @return com.github.cysong.dbassert.assertion.DetailEvaluator.Violation the first condition failed, null if all pass
+     * @author cysong
+     * @date 2022/9/13 11:08
+     **/
+    public DetailEvaluator.Violation finish(AssertResult result) {
+        if (accumulators == null) {
+            accumulators = newAccumulators();
+        }
+        for (int i = 0; i < sqlResult.getColumnSet().size(); i++) {
+            for (ListAccumulator accumulator : accumulators[i]) {
+                if (violation == null && !accumulator.test()) {
+                    violation = new DetailEvaluator.Violation(accumulator.getCondition(), accumulator.describe());
+                }
+            }
+        }
+        for (String col : sqlResult.getColumnSet()) {
+            for (Condition con : getConditions(col)) {
+                if (skipped.contains(con)) {
+                    continue;
+                }
+                if (violation != null && violation.getCondition() == con) {
+                    result.add(false, con, violation.getActual(), violationRow);
+                } else if (violation == null) {
+                    result.add(true, con, rows + " rows scanned");
+                }
+            }
+        }
+        return violation;
+    }
+
+    /**
+     * record rows and time of reading to the metrics, null to disable
+     *
+     * @param metrics metrics of the assertion
+     * @author cysong
+     * @date 2022/9/20 11:10
+     **/
+    public void setMetrics(AssertionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public Object getLastKey() {
+        return lastKey;
+    }
+
+    public DetailEvaluator.Violation getViolation() {
+        return violation;
+    }
+
+    private void resolveColumns(ResultSetMetaData metaData) throws SQLException {
+        int size = sqlResult.getColumnSet().size();
+        int[] indexes = new int[size];
+        CompiledCondition[][] conditions = new CompiledCondition[size][];
+        int i = 0;
+        for (String col : sqlResult.getColumnSet()) {
+            indexes[i] = DetailEvaluator.findColumn(metaData, col);
+            conditions[i] = DetailEvaluator.getOrEmpty(sqlResult.getColumns(), col).stream()
+                    .filter(con -> !skipped.contains(con))
+                    .map(CompiledCondition::compile)
+                    .toArray(CompiledCondition[]::new);
+            i++;
+        }
+        this.keyIndex = DetailEvaluator.findColumn(metaData, sqlResult.getScanKey());
+        this.conditions = conditions;
+        this.indexes = indexes;
+    }
+
+    private ListAccumulator[][] newAccumulators() {
+        ListAccumulator[][] accumulators = new ListAccumulator[sqlResult.getColumnSet().size()][];
+        int i = 0;
+        for (String col : sqlResult.getColumnSet()) {
+            accumulators[i++] = DetailEvaluator.getOrEmpty(sqlResult.getListColumns(), col).stream()
+                    .map(ListAccumulator::create)
+                    .toArray(ListAccumulator[]::new);
+        }
+        return accumulators;
+    }
+
+    private List<Condition> getConditions(String col) {
+        List<Condition> conditions = new ArrayList<>(DetailEvaluator.getOrEmpty(sqlResult.getColumns(), col));
+        conditions.addAll(DetailEvaluator.getOrEmpty(sqlResult.getListColumns(), col));
+        return conditions;
+    }
+}
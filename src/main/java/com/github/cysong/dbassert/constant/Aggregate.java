@@ -12,36 +12,38 @@ public enum Aggregate {
     /**
      * aggregate function count
      */
-    COUNT("count", "cnt_", "count({2}{0}{3}) {1}{0}"),
+    COUNT("count", "cnt_", "count({2}{0}{3}) {1}{0}", "count({2}{0}{3}) over() {1}{0}"),
     /**
      * aggregate function count(distinct columnName)
      */
-    DISTINCT_COUNT("distinct count", "dc_", "count(distinct {2}{0}{3}) {1}{0}"),
+    DISTINCT_COUNT("distinct count", "dc_", "count(distinct {2}{0}{3}) {1}{0}", null),
     /**
      * aggregate function sum
      */
-    SUM("sum", "sum_", "sum({2}{0}{3}) {1}{0}"),
+    SUM("sum", "sum_", "sum({2}{0}{3}) {1}{0}", "sum({2}{0}{3}) over() {1}{0}"),
     /**
      * aggregate function avg
      */
-    AVG("avg", "avg_", "avg({2}{0}{3}) {1}{0}"),
+    AVG("avg", "avg_", "avg({2}{0}{3}) {1}{0}", "avg({2}{0}{3}) over() {1}{0}"),
     /**
      * aggregate function sum
      */
-    MIN("min", "min_", "min({2}{0}{3}) {1}{0}"),
+    MIN("min", "min_", "min({2}{0}{3}) {1}{0}", "min({2}{0}{3}) over() {1}{0}"),
     /**
      * aggregate function sum
      */
-    MAX("max", "max_", "max({2}{0}{3}) {1}{0}");
+    MAX("max", "max_", "max({2}{0}{3}) {1}{0}", "max({2}{0}{3}) over() {1}{0}");
 
     private String function;
     private String prefix;
     private String format;
+    private String windowFormat;
 
-    Aggregate(String function, String prefix, String format) {
+    Aggregate(String function, String prefix, String format, String windowFormat) {
         this.function = function;
         this.prefix = prefix;
         this.format = format;
+        this.windowFormat = windowFormat;
     }
 
     /**
@@ -58,6 +60,35 @@ public enum Aggregate {
         return MessageFormat.format(format, columnName, prefix, openQuote, closeQuote);
     }
 
+    /**
+     * the select statement of this aggregate column computed as a window function over all returned rows
+     *
+     * @param columnName column name
+     * @param openQuote  the open quote of database
+     * @param closeQuote the close quote of database
+     * @return java.lang.String such as count(`name`) over() cnt_name
+     * @author cysong
+     * @date 2022/9/1 10:12
+     **/
+    public String getWindowStatement(String columnName, String openQuote, String closeQuote) {
+        if (windowFormat == null) {
+            throw new UnsupportedOperationException("Aggregate " + name() + " can not be used as window function");
+        }
+        return MessageFormat.format(windowFormat, columnName, prefix, openQuote, closeQuote);
+    }
+
+    /**
+     * whether this aggregate can be computed as a window function,
+     * count(distinct ...) over() is not supported by most databases
+     *
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/1 10:12
+     **/
+    public boolean isWindowSupported() {
+        return windowFormat != null;
+    }
+
     /**
      * aggregate column label
      *
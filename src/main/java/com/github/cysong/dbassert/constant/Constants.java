@@ -12,17 +12,45 @@ public class Constants {
     public static final long RETRY_INTERVAL = 3000;
     public static final long MAX_RETRY_INTERVAL = 10000;
     public static final long DELAY = 0;
+    public static final long TIMEOUT = 0;
+    public static final boolean WAIT_ON_CHANGE = false;
     public static final long MAX_DELAY = 30000;
     public static final boolean FAIL_IF_NOT_FOUND = true;
     public static final int START_INDEX = 0;
     public static final int PAGE_SIZE = 100;
     public static final int MAX_PAGE_SIZE = 10000;
+    public static final int FETCH_SIZE = 100;
     public static final String DATABASE_FILE = "database.yml";
     public static final long LOGIN_TIMEOUT = 30000;
     public static final int TEST_CONNECTION_TIMEOUT = 10;
+    public static final int STATEMENT_CACHE_SIZE = 64;
+    public static final int SQL_TEMPLATE_CACHE_SIZE = 256;
+    public static final int MIN_POOL_SIZE = 0;
+    public static final int MAX_POOL_SIZE = 1;
+    public static final long VALIDATION_INTERVAL = 30000;
+    public static final long BORROW_TIMEOUT = 30000;
+    public static final boolean PUSHDOWN = false;
+    public static final long SCAN_LOG_INTERVAL = 5000;
+    public static final long CONSISTENCY_POLL_INTERVAL = 50;
+    public static final RecordPolicy RECORD_POLICY = RecordPolicy.ALL;
+    public static final int RECORD_LIMIT = 10;
+    public static final int REPORT_QUEUE_SIZE = 1024;
+    public static final int REPORT_MAX_ROWS = 10000;
+    public static final long REPORT_MAX_BYTES = 10 * 1024 * 1024;
+    public static final boolean REPORT_GZIP = false;
+    public static final int ASYNC_PARALLELISM = 8;
+    public static final int ASYNC_CONCURRENCY = 4;
+    public static final long COALESCE_WINDOW = 0;
+    public static final int RESULT_CACHE_SIZE = 0;
+    public static final long RESULT_CACHE_TTL = 0;
+    public static final int SCRIPT_BATCH_SIZE = 1000;
+    public static final int SCRIPT_COMMIT_INTERVAL = 10000;
+    public static final double SAMPLE_CONFIDENCE = 0.95;
+    public static final long SAMPLE_SEED = 0;
 
     public static final String COUNT_ROWS_COLUMN = "*";
     public static final String COUNT_ROWS_LABEL = "count";
+    public static final String PUSHDOWN_LABEL_PREFIX = "violations_";
 
     public static final String REPORT_STEP_NAME = "DbAssert";
 
@@ -0,0 +1,26 @@
+package com.github.cysong.dbassert.constant;
+
+/**
+ * which values tested are recorded to the assert result and rendered to the report
+ *
+ * @author cysong
+ * @date 2022/9/22 10:00
+ **/
+public enum RecordPolicy {
+    /**
+     * every value tested by every condition
+     */
+    ALL,
+    /**
+     * values failed only
+     */
+    FAILURES,
+    /**
+     * the first recordLimit values failed, the others are only counted
+     */
+    FIRST_FAILURES,
+    /**
+     * counters of each condition: evaluated, passed, failed and the first failed row
+     */
+    SUMMARY
+}
@@ -21,6 +21,43 @@ public interface ConnectionFactory {
      **/
     Connection getConnectionByDbKey(String dbKey);
 
+    /**
+     * borrow a connection by dbkey for an assertion, must be given back by {@link #returnConnection(String, Connection)}
+     * the default implementation shares the connection of {@link #getConnectionByDbKey(String)}
+     *
+     * @param dbKey database key in the database config file
+     * @return java.sql.Connection
+     * @author cysong
+     * @date 2022/9/19 10:30
+     **/
+    default Connection borrowConnection(String dbKey) {
+        return getConnectionByDbKey(dbKey);
+    }
+
+    /**
+     * give back a connection borrowed by {@link #borrowConnection(String)}
+     *
+     * @param dbKey database key in the database config file
+     * @param conn  connection borrowed
+     * @author cysong
+     * @date 2022/9/19 10:30
+     **/
+    default void returnConnection(String dbKey, Connection conn) {
+    }
+
+    /**
+     * take snapshot of the database to restore data between tests,
+     * the default implementation uses sqlite online backup or a savepoint, see {@link Snapshots}
+     *
+     * @param dbKey database key in the database config file
+     * @return com.github.cysong.dbassert.datasource.Snapshot
+     * @author cysong
+     * @date 2022/9/28 10:40
+     **/
+    default Snapshot snapshot(String dbKey) {
+        return Snapshots.take(this, dbKey);
+    }
+
     /**
      * close all connections and do clean work
      *
@@ -0,0 +1,407 @@
+package com.github.cysong.dbassert.datasource;
+
+import com.github.cysong.dbassert.exception.ConfigurationException;
+import com.github.cysong.dbassert.exception.ConnectionPoolException;
+import com.github.cysong.dbassert.option.DbAssertOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * bounded pool of connections of a dbKey
+ * <p>
+ * Connections are borrowed exclusively, borrowers wait up to borrowTimeout if maxPoolSize connections are all in use.
+ * If maxPoolSize is 1, or the database is in-memory and private to its connection, the pool is shared:
+ * the same connection is handed to every borrower.
+ * <p>
+ * Connections are validated only after idle longer than validationInterval, broken ones are evicted
+ * by {@link #validate()} in background and the pool is refilled to minPoolSize.
+ *
+ * @author cysong
+ * @date 2022/9/19 10:10
+ **/
+class ConnectionPool {
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+    private static final int VALIDATE_TIMEOUT_SECONDS = 10;
+    private final String dbKey;
+    private final DatabaseConfig config;
+    private final Supplier<Connection> connector;
+    private final boolean shared;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<Connection> borrowed = Collections.newSetFromMap(new IdentityHashMap<>());
+    /**
+     * idle, borrowed and connecting connections
+     **/
+    private int size;
+    private boolean closed;
+    /**
+     * connection returned by {@link #getConnection()}, not counted in pool size
+     **/
+    private volatile PooledConnection primary;
+
+    public static ConnectionPool create(String dbKey, DatabaseConfig config, Supplier<Connection> connector) {
+        if (config.getMaxPoolSize() < 1 || config.getMinPoolSize() < 0 || config.getMinPoolSize() > config.getMaxPoolSize()) {
+            throw new ConfigurationException(String.format("Invalid pool size of database[%s]: min=%d,max=%d",
+                    dbKey, config.getMinPoolSize(), config.getMaxPoolSize()));
+        }
+        return new ConnectionPool(dbKey, config, connector);
+    }
+
+    private ConnectionPool(String dbKey, DatabaseConfig config, Supplier<Connection> connector) {
+        this.dbKey = dbKey;
+        this.config = config;
+        this.connector = connector;
+        boolean memory = isPrivateMemoryDatabase(config.getUrl());
+        if (memory && config.getMaxPoolSize() > 1) {
+            log.info("Database[{}] is in-memory, share a single connection instead of pooling", dbKey);
+        }
+        this.shared = memory || config.getMaxPoolSize() == 1;
+    }
+
+    /**
+     * get the connection shared by all threads
+     *
+     * @return java.sql.Connection
+     * @author cysong
+     * @date 2022/9/19 10:15
+     **/
+    public Connection getConnection() {
+        PooledConnection conn = primary;
+        if (conn != null && (!conn.isIdleLongerThan(config.getValidationInterval()) || isValid(conn.connection))) {
+            conn.touch();
+            return conn.connection;
+        }
+        synchronized (this) {
+            if (conn != null && primary == conn) {
+                log.info("Database[{}] connection is not valid, reconnect...", dbKey);
+                close(conn.connection);
+                primary = null;
+            }
+            if (primary == null) {
+                primary = new PooledConnection(connector.get());
+            }
+            primary.touch();
+            return primary.connection;
+        }
+    }
+
+    /**
+     * borrow a connection, must be given back by {@link #release(Connection)}
+     *
+     * @return java.sql.Connection
+     * @author cysong
+     * @date 2022/9/19 10:16
+     **/
+    public Connection borrow() {
+        if (shared) {
+            return getConnection();
+        }
+        long deadline = System.currentTimeMillis() + config.getBorrowTimeout();
+        while (true) {
+            PooledConnection conn;
+            lock.lock();
+            try {
+                while (idle.isEmpty() && size >= config.getMaxPoolSize()) {
+                    checkClosed();
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) {
+                        throw new ConnectionPoolException(String.format("No connection of database[%s] available in %dms, max pool size is %d",
+                                dbKey, config.getBorrowTimeout(), config.getMaxPoolSize()));
+                    }
+                    available.await(left, TimeUnit.MILLISECONDS);
+                }
+                checkClosed();
+                conn = idle.pollFirst();
+                if (conn == null) {
+                    size++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectionPoolException("Interrupted while waiting connection of database " + dbKey, e);
+            } finally {
+                lock.unlock();
+            }
+            if (conn == null) {
+                conn = connect();
+            } else if (conn.isIdleLongerThan(config.getValidationInterval()) && !isValid(conn.connection)) {
+                log.info("Database[{}] idle connection is not valid, evicted", dbKey);
+                evict(conn.connection);
+                continue;
+            }
+            lock.lock();
+            try {
+                borrowed.add(conn.connection);
+            } finally {
+                lock.unlock();
+            }
+            return conn.connection;
+        }
+    }
+
+    /**
+     * give back a connection borrowed, closed connections are evicted
+     *
+     * @param connection connection borrowed
+     * @author cysong
+     * @date 2022/9/19 10:18
+     **/
+    public void release(Connection connection) {
+        if (shared || connection == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!borrowed.remove(connection)) {
+                log.warn("Connection not borrowed from database[{}] is ignored", dbKey);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (isClosed(connection)) {
+            evict(connection);
+        } else {
+            giveBack(new PooledConnection(connection), true);
+        }
+    }
+
+    /**
+     * validate connections idle longer than validationInterval, evict broken ones and refill to minPoolSize
+     *
+     * @author cysong
+     * @date 2022/9/19 10:20
+     **/
+    public void validate() {
+        long interval = config.getValidationInterval();
+        List<PooledConnection> toValidate = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<PooledConnection> it = idle.iterator();
+            while (it.hasNext()) {
+                PooledConnection conn = it.next();
+                if (conn.isIdleLongerThan(interval)) {
+                    toValidate.add(conn);
+                    it.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection conn : toValidate) {
+            if (isValid(conn.connection)) {
+                conn.touch();
+                giveBack(conn, false);
+            } else {
+                log.info("Database[{}] idle connection is not valid, evicted", dbKey);
+                evict(conn.connection);
+            }
+        }
+        PooledConnection conn = primary;
+        if (conn != null && conn.isIdleLongerThan(interval)) {
+            if (isValid(conn.connection)) {
+                conn.touch();
+            } else {
+                synchronized (this) {
+                    if (primary == conn) {
+                        log.info("Database[{}] connection is not valid, evicted", dbKey);
+                        primary = null;
+                        close(conn.connection);
+                    }
+                }
+            }
+        }
+        if (!shared) {
+            fill();
+        }
+    }
+
+    /**
+     * close all connections, connections borrowed are closed when given back
+     *
+     * @author cysong
+     * @date 2022/9/19 10:22
+     **/
+    public void close() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            size -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        toClose.forEach(conn -> close(conn.connection));
+        synchronized (this) {
+            if (primary != null) {
+                close(primary.connection);
+                primary = null;
+            }
+        }
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * total connections of the pool, the shared connection is not counted
+     *
+     * @return int
+     * @author cysong
+     * @date 2022/9/19 10:23
+     **/
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int idleSize() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fill() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || size >= config.getMinPoolSize()) {
+                    return;
+                }
+                size++;
+            } finally {
+                lock.unlock();
+            }
+            PooledConnection conn;
+            try {
+                conn = connect();
+            } catch (RuntimeException e) {
+                log.warn("Refill pool of database[{}] fail:{}", dbKey, e.getMessage());
+                return;
+            }
+            giveBack(conn, false);
+        }
+    }
+
+    /**
+     * connect with the slot already counted in size, the slot is released if fail
+     **/
+    private PooledConnection connect() {
+        try {
+            return new PooledConnection(connector.get());
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                size--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private void giveBack(PooledConnection conn, boolean first) {
+        lock.lock();
+        try {
+            if (!closed) {
+                if (first) {
+                    idle.offerFirst(conn);
+                } else {
+                    idle.offerLast(conn);
+                }
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        evict(conn.connection);
+    }
+
+    private void evict(Connection connection) {
+        lock.lock();
+        try {
+            size--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        close(connection);
+    }
+
+    private void checkClosed() {
+        if (closed) {
+            throw new ConnectionPoolException("Connection pool of database " + dbKey + " is closed");
+        }
+    }
+
+    private static boolean isValid(Connection conn) {
+        try {
+            return conn.isValid(VALIDATE_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static boolean isClosed(Connection conn) {
+        try {
+            return conn.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private void close(Connection conn) {
+        DbAssertOptions.getGlobal().getStatementCache().invalidate(conn);
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * each connection of an in-memory sqlite or h2 database opens its own database
+     **/
+    static boolean isPrivateMemoryDatabase(String url) {
+        return url.startsWith("jdbc:sqlite:") && (url.contains(":memory:") || url.contains("mode=memory"))
+                || url.startsWith("jdbc:h2:mem:");
+    }
+
+    static class PooledConnection {
+        private final Connection connection;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        void touch() {
+            lastUsed = System.currentTimeMillis();
+        }
+
+        boolean isIdleLongerThan(long mills) {
+            return System.currentTimeMillis() - lastUsed > mills;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.github.cysong.dbassert.datasource;
 
+import com.github.cysong.dbassert.constant.Constants;
+
 /**
  * basic info for connecting a database
  *
@@ -12,6 +14,22 @@ public class DatabaseConfig {
     private String url;
     private String username;
     private String password;
+    /**
+     * connections kept open in the pool
+     **/
+    private int minPoolSize = Constants.MIN_POOL_SIZE;
+    /**
+     * max connections borrowed at the same time, 1 to share a single connection by all threads
+     **/
+    private int maxPoolSize = Constants.MAX_POOL_SIZE;
+    /**
+     * milliseconds between validations of idle connections
+     **/
+    private long validationInterval = Constants.VALIDATION_INTERVAL;
+    /**
+     * max milliseconds to wait for an idle connection
+     **/
+    private long borrowTimeout = Constants.BORROW_TIMEOUT;
 
     public String getKey() {
         return key;
@@ -52,4 +70,36 @@ public class DatabaseConfig {
     public void setPassword(String password) {
         this.password = password;
     }
+
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    public void setMinPoolSize(int minPoolSize) {
+        this.minPoolSize = minPoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    public void setValidationInterval(long validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    public long getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    public void setBorrowTimeout(long borrowTimeout) {
+        this.borrowTimeout = borrowTimeout;
+    }
 }
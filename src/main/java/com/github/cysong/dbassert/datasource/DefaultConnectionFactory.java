@@ -17,6 +17,9 @@ import java.sql.SQLTimeoutException;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * default value if ConnectionFactory if not set
@@ -30,7 +33,8 @@ public class DefaultConnectionFactory implements ConnectionFactory {
     private String databaseFile;
     private volatile boolean inited = false;
     private Map<String, DatabaseConfig> configMap;
-    private Map<String, Connection> connMap;
+    private final Map<String, ConnectionPool> poolMap = new ConcurrentHashMap<>();
+    private ScheduledExecutorService validator;
 
     public DefaultConnectionFactory(String databaseFile) {
         this.databaseFile = databaseFile;
@@ -38,26 +42,64 @@ public class DefaultConnectionFactory implements ConnectionFactory {
 
     @Override
     public Connection getConnectionByDbKey(String dbKey) {
+        return getPool(dbKey).getConnection();
+    }
+
+    @Override
+    public Connection borrowConnection(String dbKey) {
+        return getPool(dbKey).borrow();
+    }
+
+    @Override
+    public void returnConnection(String dbKey, Connection conn) {
+        ConnectionPool pool = poolMap.get(dbKey);
+        if (pool != null) {
+            pool.release(conn);
+        }
+    }
+
+    private ConnectionPool getPool(String dbKey) {
         assert dbKey != null;
         if (!inited) {
             parseDatabaseConfig();
         }
-        if (!(connMap != null && connMap.containsKey(dbKey))) {
-            initConnectionByDbKey(dbKey);
+        ConnectionPool pool = poolMap.get(dbKey);
+        if (pool == null) {
+            pool = poolMap.computeIfAbsent(dbKey, this::createPool);
+        }
+        return pool;
+    }
+
+    private ConnectionPool createPool(String dbKey) {
+        DatabaseConfig dbConf = configMap.get(dbKey);
+        if (dbConf == null) {
+            throw new ConfigurationException(String.format("Database config of key=%s not found", dbKey));
         }
-        Connection conn = connMap.get(dbKey);
-        if (conn == null) {
-            throw new ConfigurationException("Database config not found：" + dbKey);
+        ConnectionPool pool = ConnectionPool.create(dbKey, dbConf, () -> connect(dbConf));
+        if (dbConf.getValidationInterval() > 0) {
+            //validate idle connections and refill to min pool size in background
+            getValidator().scheduleWithFixedDelay(() -> validate(pool), 0, dbConf.getValidationInterval(), TimeUnit.MILLISECONDS);
         }
-        if (isConnValid(conn)) {
-            return conn;
-        } else {
-            log.info("Database[{}] connection is not valid, reconnect...", dbKey);
-            connMap.remove(dbKey);
-            initConnectionByDbKey(dbKey);
-            conn = connMap.get(dbKey);
+        return pool;
+    }
+
+    private static void validate(ConnectionPool pool) {
+        try {
+            pool.validate();
+        } catch (Throwable e) {
+            log.error(e.getMessage(), e);
         }
-        return conn;
+    }
+
+    private synchronized ScheduledExecutorService getValidator() {
+        if (validator == null) {
+            validator = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "dbassert-pool-validator");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return validator;
     }
 
     private synchronized void parseDatabaseConfig() {
@@ -81,71 +123,51 @@ public class DefaultConnectionFactory implements ConnectionFactory {
         inited = true;
     }
 
-    private void initConnectionByDbKey(String dbKey) {
-        synchronized (dbKey) {
-            if (connMap != null && connMap.containsKey(dbKey)) {
-                return;
-            }
-            DatabaseConfig dbConf = configMap.get(dbKey);
-            if (dbConf == null) {
-                throw new ConfigurationException(String.format("Database config of key=%s not found", dbKey));
-            }
-
-            if (Utils.isNotBlank(dbConf.getDriver())) {
-                try {
-                    Class.forName(dbConf.getDriver());
-                } catch (ClassNotFoundException e) {
-                    throw new ConfigurationException("Database driver class not found:" + dbConf.getDriver(), e);
-                }
+    private Connection connect(DatabaseConfig dbConf) {
+        String dbKey = dbConf.getKey();
+        if (Utils.isNotBlank(dbConf.getDriver())) {
+            try {
+                Class.forName(dbConf.getDriver());
+            } catch (ClassNotFoundException e) {
+                throw new ConfigurationException("Database driver class not found:" + dbConf.getDriver(), e);
             }
-            Connection connection = null;
-            //retry 3 times if connect fail
-            int count = 3;
-            DriverManager.setLoginTimeout(30);
-            while (count-- > 0) {
-                try {
-                    connection = DriverManager.getConnection(dbConf.getUrl(), dbConf.getUsername(), dbConf.getPassword());
-                    break;
-                } catch (SQLTimeoutException e) {
-                    if (count == 0) {
-                        throw new ConfigurationException(String.format("Connect to database[%s] fail：%s,%s", dbKey, dbConf.getUrl(), dbConf.getUsername()), e);
-                    } else {
-                        log.info("The {} times connect to database[{}] fail, retry", (3 - count), dbKey);
-                    }
-                } catch (SQLException e) {
-                    throw new ConfigurationException(String.format("database [%s] connect fail：%s,%s", dbKey, dbConf.getUrl(), dbConf.getUsername()), e);
+        }
+        Connection connection = null;
+        //retry 3 times if connect fail
+        int count = 3;
+        DriverManager.setLoginTimeout(30);
+        while (count-- > 0) {
+            try {
+                connection = DriverManager.getConnection(dbConf.getUrl(), dbConf.getUsername(), dbConf.getPassword());
+                break;
+            } catch (SQLTimeoutException e) {
+                if (count == 0) {
+                    throw new ConfigurationException(String.format("Connect to database[%s] fail：%s,%s", dbKey, dbConf.getUrl(), dbConf.getUsername()), e);
+                } else {
+                    log.info("The {} times connect to database[{}] fail, retry", (3 - count), dbKey);
                 }
+            } catch (SQLException e) {
+                throw new ConfigurationException(String.format("database [%s] connect fail：%s,%s", dbKey, dbConf.getUrl(), dbConf.getUsername()), e);
             }
-            log.info("Database[{}] connect success：{},{}", dbKey, dbConf.getUrl(), dbConf.getUsername());
-            if (connMap == null) {
-                connMap = new ConcurrentHashMap<>(configMap.size());
-            }
-            connMap.put(dbKey, connection);
-        }
-    }
-
-    private static boolean isConnValid(Connection conn) {
-        try {
-            return conn.isValid(10);
-        } catch (SQLException e) {
-            return false;
         }
+        log.info("Database[{}] connect success：{},{}", dbKey, dbConf.getUrl(), dbConf.getUsername());
+        return connection;
     }
 
     @Override
     public void destroy() {
-        if (connMap != null && connMap.size() > 0) {
-            for (Map.Entry<String, Connection> entry : connMap.entrySet()) {
-                if (entry.getValue() != null) {
-                    log.info("Database {} is closing...", entry.getKey());
-                    try {
-                        entry.getValue().close();
-                    } catch (SQLException e) {
-                        log.error(e.getMessage(), e);
-                    }
-                }
+        synchronized (this) {
+            if (validator != null) {
+                validator.shutdownNow();
+                validator = null;
+            }
+        }
+        if (poolMap.size() > 0) {
+            for (Map.Entry<String, ConnectionPool> entry : poolMap.entrySet()) {
+                log.info("Database {} is closing...", entry.getKey());
+                entry.getValue().close();
             }
-            connMap.clear();
+            poolMap.clear();
         }
         if (configMap != null && configMap.size() > 0) {
             configMap.clear();
@@ -0,0 +1,270 @@
+package com.github.cysong.dbassert.datasource;
+
+import com.github.cysong.dbassert.exception.AssertionInterruptedException;
+import com.github.cysong.dbassert.exception.Exceptions;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * single-flight execution of queries keyed by (dbKey, sql, bind values)
+ * <p>
+ * The first caller of a query executes it and caches all rows in memory, callers of the same query
+ * while it's running or within the window after it completed share the rows instead of executing again.
+ * So polls of many assertions waiting for the same data hit the database once per window.
+ * Rows are at most one window older than the poll. Database failures(SQLException) are shared by callers waiting
+ * but never cached, failures of the executing caller itself(such as its own timeout or interruption) are not shared,
+ * one of the callers waiting executes the query instead.
+ *
+ * @author cysong
+ * @date 2022/9/25 10:10
+ **/
+public class QueryCoalescer {
+    private static final RowSetFactory ROW_SET_FACTORY = createRowSetFactory();
+    /**
+     * milliseconds to share the rows after a query completed
+     **/
+    private final long window;
+    private final Map<Key, Flight> flights = new ConcurrentHashMap<>();
+    private long executions;
+    private long hits;
+
+    public static QueryCoalescer create(long window) {
+        return new QueryCoalescer(window);
+    }
+
+    private QueryCoalescer(long window) {
+        assert window > 0;
+        this.window = window;
+    }
+
+    /**
+     * execute the query by loader or share the rows of the same query running or completed within the window
+     *
+     * @param source  dbKey, or connection if the assertion is created by connection
+     * @param sql     parameterized sql
+     * @param params  bind values
+     * @param timeout max milliseconds to wait for the query run by another caller, 0 for no limit
+     * @param loader  execute the query and cache rows by {@link QueryCoalescer#cache(ResultSet)}
+     * @return java.sql.ResultSet rows with a cursor of the caller, no need to close
+     * @author cysong
+     * @date 2022/9/25 10:15
+     **/
+    public ResultSet execute(Object source, String sql, List<Object> params, long timeout, Loader loader) throws SQLException {
+        Key key = new Key(source, sql, params);
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+        while (true) {
+            Flight created = new Flight();
+            Flight flight = flights.compute(key, (k, current) -> current == null || current.isExpired() ? created : current);
+            if (flight != created) {
+                long remaining = 0;
+                if (deadline > 0) {
+                    remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new SQLTimeoutException("Timeout waiting for the same query");
+                    }
+                }
+                CachedRowSet rows = await(flight, remaining);
+                if (rows == null) {
+                    //the caller executing failed by itself, take over the query
+                    continue;
+                }
+                return rows.createShared();
+            }
+            synchronized (this) {
+                executions++;
+            }
+            try {
+                CachedRowSet rows = loader.load();
+                created.complete(rows);
+                return rows.createShared();
+            } catch (SQLException e) {
+                flights.remove(key, created);
+                created.future.completeExceptionally(e);
+                throw e;
+            } catch (Throwable throwable) {
+                flights.remove(key, created);
+                created.future.completeExceptionally(new Abandoned());
+                throw throwable;
+            } finally {
+                purge();
+            }
+        }
+    }
+
+    /**
+     * cache all rows of the result set in memory
+     *
+     * @param rs result set
+     * @return javax.sql.rowset.CachedRowSet
+     * @author cysong
+     * @date 2022/9/25 10:20
+     **/
+    public static CachedRowSet cache(ResultSet rs) throws SQLException {
+        CachedRowSet rows = ROW_SET_FACTORY.createCachedRowSet();
+        rows.populate(rs);
+        return rows;
+    }
+
+    /**
+     * queries executed by the database
+     *
+     * @return long
+     * @author cysong
+     * @date 2022/9/25 10:25
+     **/
+    public synchronized long getExecutions() {
+        return executions;
+    }
+
+    /**
+     * queries shared with another caller instead of executed
+     *
+     * @return long
+     * @author cysong
+     * @date 2022/9/25 10:25
+     **/
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    /**
+     * forget all rows cached, queries running are still shared
+     *
+     * @author cysong
+     * @date 2022/9/25 10:30
+     **/
+    public void clear() {
+        flights.values().removeIf(Flight::isCompleted);
+    }
+
+    private void purge() {
+        flights.values().removeIf(Flight::isExpired);
+    }
+
+    /**
+     * wait for rows of the query executed by another caller
+     *
+     * @return javax.sql.rowset.CachedRowSet null if the caller executing failed by itself
+     **/
+    private CachedRowSet await(Flight flight, long timeout) throws SQLException {
+        try {
+            CachedRowSet rows = timeout > 0 ? flight.future.get(timeout, TimeUnit.MILLISECONDS) : flight.future.get();
+            synchronized (this) {
+                hits++;
+            }
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionInterruptedException("Assert interrupted", e);
+        } catch (TimeoutException e) {
+            throw new SQLTimeoutException("Timeout waiting for the same query", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Abandoned) {
+                return null;
+            }
+            synchronized (this) {
+                hits++;
+            }
+            if (cause instanceof SQLException) {
+                SQLException sqlException = (SQLException) cause;
+                throw new SQLException(cause.getMessage(), sqlException.getSQLState(), sqlException.getErrorCode(), cause);
+            }
+            Exceptions.check(cause);
+            return null;
+        }
+    }
+
+    private static RowSetFactory createRowSetFactory() {
+        try {
+            return RowSetProvider.newFactory();
+        } catch (SQLException e) {
+            throw new IllegalStateException("RowSetFactory not available", e);
+        }
+    }
+
+    /**
+     * the caller executing the query failed by itself, callers waiting should not share the failure
+     **/
+    private static final class Abandoned extends RuntimeException {
+        private Abandoned() {
+            super("Query abandoned by the caller executing it", null, false, false);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * execute the query and cache all rows
+         *
+         * @return javax.sql.rowset.CachedRowSet
+         * @author cysong
+         * @date 2022/9/25 10:35
+         **/
+        CachedRowSet load() throws SQLException;
+    }
+
+    private final class Flight {
+        private final CompletableFuture<CachedRowSet> future = new CompletableFuture<>();
+        private volatile long completedTime;
+
+        private void complete(CachedRowSet rows) {
+            completedTime = System.currentTimeMillis();
+            future.complete(rows);
+        }
+
+        private boolean isCompleted() {
+            return completedTime > 0;
+        }
+
+        private boolean isExpired() {
+            return completedTime > 0 && System.currentTimeMillis() - completedTime >= window;
+        }
+    }
+
+    private static final class Key {
+        private final Object source;
+        private final String sql;
+        private final List<Object> params;
+
+        private Key(Object source, String sql, List<Object> params) {
+            this.source = source;
+            this.sql = sql;
+            this.params = params;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return source.equals(key.source) && sql.equals(key.sql) && Objects.equals(params, key.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, sql, params);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.cysong.dbassert.datasource;
+
+import javax.sql.rowset.CachedRowSet;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * bounded LRU cache of query rows keyed by (dbKey, sql, bind values), for tables not changing during tests
+ * <p>
+ * Rows of a table are only cached if it has a TTL, set by {@link ResultCache#ttl(String, long)} or the default TTL.
+ * Entries are dropped when expired, evicted by size, or invalidated after the tables are changed,
+ * such as fixtures loaded by {@link com.github.cysong.dbassert.utitls.SqlUtils#loadSqlScript}.
+ *
+ * @author cysong
+ * @date 2022/9/26 10:10
+ **/
+public class ResultCache {
+    private final int maxSize;
+    /**
+     * TTL of tables without TTL set, 0 for not caching
+     **/
+    private final long defaultTtl;
+    /**
+     * TTL by lower case table name
+     **/
+    private final Map<String, Long> ttls = new ConcurrentHashMap<>();
+    private final LinkedHashMap<Key, CachedRows> cache;
+    private long hits;
+    private long misses;
+
+    public static ResultCache create(int maxSize, long defaultTtl) {
+        return new ResultCache(maxSize, defaultTtl);
+    }
+
+    private ResultCache(int maxSize, long defaultTtl) {
+        assert maxSize > 0;
+        assert defaultTtl >= 0;
+        this.maxSize = maxSize;
+        this.defaultTtl = defaultTtl;
+        this.cache = new LinkedHashMap<Key, CachedRows>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedRows> eldest) {
+                return size() > ResultCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * set TTL of a table, rows of the table cached are dropped, and no longer cached if 0
+     *
+     * @param table table name, case insensitive
+     * @param ttl   milliseconds to keep rows cached
+     * @return com.github.cysong.dbassert.datasource.ResultCache
+     * @author cysong
+     * @date 2022/9/26 10:15
+     **/
+    public ResultCache ttl(String table, long ttl) {
+        assert table != null;
+        assert ttl >= 0;
+        ttls.put(table.toLowerCase(), ttl);
+        invalidateTable(table);
+        return this;
+    }
+
+    public long getTtl(String table) {
+        return table == null ? 0 : ttls.getOrDefault(table.toLowerCase(), defaultTtl);
+    }
+
+    /**
+     * rows cached and not expired
+     *
+     * @param source dbKey, or connection if the assertion is created by connection
+     * @param sql    parameterized sql
+     * @param params bind values
+     * @return java.sql.ResultSet rows with a cursor of the caller, null if not cached
+     * @author cysong
+     * @date 2022/9/26 10:20
+     **/
+    public synchronized ResultSet get(Object source, String sql, List<Object> params) throws SQLException {
+        Key key = new Key(source, sql, params);
+        CachedRows entry = cache.get(key);
+        if (entry != null && entry.expireTime <= System.currentTimeMillis()) {
+            cache.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.rows.createShared();
+    }
+
+    /**
+     * cache rows of the query, the cursor of rows must not be moved after cached
+     *
+     * @param source dbKey, or connection if the assertion is created by connection
+     * @param sql    parameterized sql
+     * @param params bind values
+     * @param table  table queried
+     * @param rows   all rows of the query
+     * @author cysong
+     * @date 2022/9/26 10:25
+     **/
+    public void put(Object source, String sql, List<Object> params, String table, CachedRowSet rows) {
+        long ttl = getTtl(table);
+        if (ttl <= 0) {
+            return;
+        }
+        CachedRows entry = new CachedRows(table, rows, System.currentTimeMillis() + ttl);
+        synchronized (this) {
+            cache.put(new Key(source, sql, params), entry);
+        }
+    }
+
+    /**
+     * drop rows of all tables of the dbKey
+     *
+     * @param dbKey database key
+     * @author cysong
+     * @date 2022/9/26 10:30
+     **/
+    public synchronized void invalidate(String dbKey) {
+        cache.keySet().removeIf(key -> key.source.equals(dbKey));
+    }
+
+    /**
+     * drop rows of the table of the dbKey
+     *
+     * @param dbKey database key
+     * @param table table name, case insensitive
+     * @author cysong
+     * @date 2022/9/26 10:30
+     **/
+    public synchronized void invalidate(String dbKey, String table) {
+        cache.entrySet().removeIf(e -> e.getKey().source.equals(dbKey) && e.getValue().table.equalsIgnoreCase(table));
+    }
+
+    /**
+     * drop rows of the table of all databases
+     *
+     * @param table table name, case insensitive
+     * @author cysong
+     * @date 2022/9/26 10:30
+     **/
+    public synchronized void invalidateTable(String table) {
+        cache.values().removeIf(entry -> entry.table.equalsIgnoreCase(table));
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getDefaultTtl() {
+        return defaultTtl;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static final class CachedRows {
+        private final String table;
+        private final CachedRowSet rows;
+        private final long expireTime;
+
+        private CachedRows(String table, CachedRowSet rows, long expireTime) {
+            this.table = table;
+            this.rows = rows;
+            this.expireTime = expireTime;
+        }
+    }
+
+    private static final class Key {
+        private final Object source;
+        private final String sql;
+        private final List<Object> params;
+
+        private Key(Object source, String sql, List<Object> params) {
+            this.source = source;
+            this.sql = sql;
+            this.params = params;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return source.equals(key.source) && sql.equals(key.sql) && Objects.equals(params, key.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, sql, params);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.cysong.dbassert.datasource;
+
+import java.io.Closeable;
+
+/**
+ * snapshot of a database taken by {@link ConnectionFactory#snapshot(String)}, can be restored many times
+ *
+ * @author cysong
+ * @date 2022/9/28 10:10
+ **/
+public interface Snapshot extends Closeable {
+
+    /**
+     * restore the database to the snapshot, rows cached by the result cache of the dbKey are dropped
+     *
+     * @author cysong
+     * @date 2022/9/28 10:10
+     **/
+    void restore();
+
+    /**
+     * release resources of the snapshot, such as the backup file or the savepoint
+     *
+     * @author cysong
+     * @date 2022/9/28 10:10
+     **/
+    @Override
+    void close();
+}
@@ -0,0 +1,163 @@
+package com.github.cysong.dbassert.datasource;
+
+import com.github.cysong.dbassert.exception.SnapshotException;
+import com.github.cysong.dbassert.option.DbAssertOptions;
+import com.github.cysong.dbassert.utitls.SqlUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+
+/**
+ * built-in snapshots, sqlite online backup to a temporary file, or a savepoint for other transactional databases
+ *
+ * @author cysong
+ * @date 2022/9/28 10:20
+ **/
+public class Snapshots {
+    private static final Logger log = LoggerFactory.getLogger(Snapshots.class);
+
+    /**
+     * take snapshot of the database by sqlite backup if supported, otherwise by savepoint
+     *
+     * @param factory connection factory
+     * @param dbKey   database key
+     * @return com.github.cysong.dbassert.datasource.Snapshot
+     * @author cysong
+     * @date 2022/9/28 10:22
+     **/
+    public static Snapshot take(ConnectionFactory factory, String dbKey) {
+        Connection conn = factory.borrowConnection(dbKey);
+        boolean sqlite;
+        try {
+            sqlite = SqlUtils.isSqlite(conn);
+        } finally {
+            factory.returnConnection(dbKey, conn);
+        }
+        return sqlite ? sqliteBackup(factory, dbKey) : savepoint(factory, dbKey);
+    }
+
+    /**
+     * copy the database to a temporary file by the online backup api of sqlite, and copy it back when restored.
+     * Connections of the dbKey see the data restored, the database must not be written while restoring
+     *
+     * @param factory connection factory
+     * @param dbKey   database key
+     * @return com.github.cysong.dbassert.datasource.Snapshot
+     * @author cysong
+     * @date 2022/9/28 10:25
+     **/
+    public static Snapshot sqliteBackup(ConnectionFactory factory, String dbKey) {
+        Path file;
+        try {
+            file = Files.createTempFile("dbassert-" + dbKey + "-", ".db");
+        } catch (IOException e) {
+            throw new SnapshotException("Create snapshot file failed", e);
+        }
+        String path = file.toAbsolutePath().toString().replace("'", "''");
+        long start = System.currentTimeMillis();
+        try {
+            execute(factory, dbKey, "backup to '" + path + "'");
+        } catch (SnapshotException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+        log.info("Snapshot of {} taken in {}ms", dbKey, System.currentTimeMillis() - start);
+        return new Snapshot() {
+            @Override
+            public void restore() {
+                long start = System.currentTimeMillis();
+                execute(factory, dbKey, "restore from '" + path + "'");
+                invalidateCaches(dbKey);
+                log.info("Snapshot of {} restored in {}ms", dbKey, System.currentTimeMillis() - start);
+            }
+
+            @Override
+            public void close() {
+                deleteQuietly(file);
+            }
+        };
+    }
+
+    /**
+     * set a savepoint on the shared connection of the dbKey and roll back to it when restored.
+     * Auto commit of the connection is disabled until the snapshot closed, so only changes made
+     * by the shared connection and not committed can be restored, statements committing implicitly(like ddl of mysql)
+     * must not be executed after the snapshot taken
+     *
+     * @param factory connection factory
+     * @param dbKey   database key
+     * @return com.github.cysong.dbassert.datasource.Snapshot
+     * @author cysong
+     * @date 2022/9/28 10:30
+     **/
+    public static Snapshot savepoint(ConnectionFactory factory, String dbKey) {
+        Connection conn = factory.getConnectionByDbKey(dbKey);
+        boolean autoCommit;
+        Savepoint savepoint;
+        try {
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            savepoint = conn.setSavepoint("dbassert_snapshot");
+        } catch (SQLException e) {
+            throw new SnapshotException("Set savepoint failed", e);
+        }
+        return new Snapshot() {
+            @Override
+            public void restore() {
+                try {
+                    conn.rollback(savepoint);
+                } catch (SQLException e) {
+                    throw new SnapshotException("Rollback to savepoint failed", e);
+                }
+                invalidateCaches(dbKey);
+            }
+
+            @Override
+            public void close() {
+                try {
+                    conn.releaseSavepoint(savepoint);
+                    conn.setAutoCommit(autoCommit);
+                } catch (SQLException e) {
+                    log.warn("Release savepoint fail:{}", e.getMessage());
+                }
+            }
+        };
+    }
+
+    private static void execute(ConnectionFactory factory, String dbKey, String sql) {
+        Connection conn = factory.borrowConnection(dbKey);
+        try (Statement statement = conn.createStatement()) {
+            statement.executeUpdate(sql);
+        } catch (SQLException e) {
+            throw new SnapshotException(String.format("Snapshot of %s failed: %s", dbKey, sql), e);
+        } finally {
+            factory.returnConnection(dbKey, conn);
+        }
+    }
+
+    private static void invalidateCaches(String dbKey) {
+        ResultCache resultCache = DbAssertOptions.getGlobal().getResultCache();
+        if (resultCache != null) {
+            resultCache.invalidate(dbKey);
+        }
+        QueryCoalescer coalescer = DbAssertOptions.getGlobal().getQueryCoalescer();
+        if (coalescer != null) {
+            coalescer.clear();
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Delete snapshot file fail:{}", e.getMessage());
+        }
+    }
+}
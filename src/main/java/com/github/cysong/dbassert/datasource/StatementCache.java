@@ -0,0 +1,204 @@
+package com.github.cysong.dbassert.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * bounded LRU cache of {@link PreparedStatement} keyed by (connection, sql)
+ * <p>
+ * A statement is removed from the cache while it is borrowed, so it is never used by two threads at the same time.
+ * Statements evicted from the cache or released when the cache is full are closed.
+ *
+ * @author cysong
+ * @date 2022/9/2 15:10
+ **/
+public class StatementCache {
+    private static final Logger log = LoggerFactory.getLogger(StatementCache.class);
+    private final int maxSize;
+    private final LinkedHashMap<Key, PreparedStatement> cache;
+    private final List<PreparedStatement> evicted = new ArrayList<>();
+    private long hits;
+    private long misses;
+
+    public static StatementCache create(int maxSize) {
+        return new StatementCache(maxSize);
+    }
+
+    private StatementCache(int maxSize) {
+        assert maxSize >= 0;
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<Key, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    evicted.add(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * take a cached statement of the sql or prepare a new one,
+     * the statement must be given back by {@link StatementCache#release(Connection, String, PreparedStatement)}
+     *
+     * @param conn database connection
+     * @param sql  parameterized sql
+     * @return java.sql.PreparedStatement
+     * @author cysong
+     * @date 2022/9/2 15:12
+     **/
+    public PreparedStatement borrow(Connection conn, String sql) throws SQLException {
+        PreparedStatement ps;
+        synchronized (this) {
+            ps = cache.remove(new Key(conn, sql));
+            if (ps != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (ps != null && !ps.isClosed()) {
+            return ps;
+        }
+        return conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    }
+
+    /**
+     * give back the statement borrowed, the statement will be closed if it can not be cached
+     *
+     * @param conn database connection
+     * @param sql  parameterized sql
+     * @param ps   the statement borrowed
+     * @author cysong
+     * @date 2022/9/2 15:12
+     **/
+    public void release(Connection conn, String sql, PreparedStatement ps) {
+        if (ps == null) {
+            return;
+        }
+        try {
+            if (maxSize == 0 || ps.isClosed() || conn.isClosed()) {
+                close(ps);
+                return;
+            }
+            ps.clearParameters();
+        } catch (SQLException e) {
+            close(ps);
+            return;
+        }
+        List<PreparedStatement> toClose;
+        synchronized (this) {
+            PreparedStatement previous = cache.put(new Key(conn, sql), ps);
+            if (previous != null && previous != ps) {
+                evicted.add(previous);
+            }
+            toClose = drainEvicted();
+        }
+        toClose.forEach(StatementCache::close);
+    }
+
+    /**
+     * remove and close all cached statements of the connection, should be called before connection closed
+     *
+     * @param conn database connection
+     * @author cysong
+     * @date 2022/9/2 15:14
+     **/
+    public void invalidate(Connection conn) {
+        List<PreparedStatement> toClose = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<Key, PreparedStatement>> it = cache.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, PreparedStatement> entry = it.next();
+                if (entry.getKey().conn == conn) {
+                    toClose.add(entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+        toClose.forEach(StatementCache::close);
+    }
+
+    /**
+     * remove and close all cached statements
+     *
+     * @author cysong
+     * @date 2022/9/2 15:14
+     **/
+    public void clear() {
+        List<PreparedStatement> toClose;
+        synchronized (this) {
+            toClose = new ArrayList<>(cache.values());
+            cache.clear();
+        }
+        toClose.forEach(StatementCache::close);
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private List<PreparedStatement> drainEvicted() {
+        if (evicted.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<PreparedStatement> list = new ArrayList<>(evicted);
+        evicted.clear();
+        return list;
+    }
+
+    private static void close(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            log.warn("Close statement fail:{}", e.getMessage());
+        }
+    }
+
+    private static final class Key {
+        private final Connection conn;
+        private final String sql;
+
+        private Key(Connection conn, String sql) {
+            this.conn = conn;
+            this.sql = sql;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return conn == key.conn && sql.equals(key.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(conn) + sql.hashCode();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.cysong.dbassert.exception;
+
+/**
+ * thrown when the thread running assertion is interrupted, the interrupt status is kept
+ *
+ * @author cysong
+ * @date 2022/9/14 10:30
+ **/
+public class AssertionInterruptedException extends RuntimeException {
+
+    public AssertionInterruptedException(String message) {
+        super(message);
+    }
+
+    public AssertionInterruptedException(String message, Throwable throwable) {
+        super(message, throwable);
+    }
+}
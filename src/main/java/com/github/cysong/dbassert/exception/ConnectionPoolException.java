@@ -0,0 +1,18 @@
+package com.github.cysong.dbassert.exception;
+
+/**
+ * thrown when no connection available in the pool before timeout
+ *
+ * @author cysong
+ * @date 2022/9/19 10:00
+ **/
+public class ConnectionPoolException extends RuntimeException {
+
+    public ConnectionPoolException(String message) {
+        super(message);
+    }
+
+    public ConnectionPoolException(String message, Throwable throwable) {
+        super(message, throwable);
+    }
+}
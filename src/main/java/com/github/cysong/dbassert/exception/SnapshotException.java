@@ -0,0 +1,18 @@
+package com.github.cysong.dbassert.exception;
+
+/**
+ * thrown when snapshot of database fails to take or restore
+ *
+ * @author cysong
+ * @date 2022/9/28 10:00
+ **/
+public class SnapshotException extends RuntimeException {
+
+    public SnapshotException(String message) {
+        super(message);
+    }
+
+    public SnapshotException(String message, Throwable throwable) {
+        super(message, throwable);
+    }
+}
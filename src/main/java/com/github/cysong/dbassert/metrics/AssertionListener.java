@@ -0,0 +1,22 @@
+package com.github.cysong.dbassert.metrics;
+
+/**
+ * listener of assertions registered by {@link com.github.cysong.dbassert.option.DbAssertOptions#addListener(AssertionListener)},
+ * assertions are only timed if any listener registered
+ *
+ * @author cysong
+ * @date 2022/9/20 10:05
+ **/
+@FunctionalInterface
+public interface AssertionListener {
+
+    /**
+     * called by the thread running the assertion after it passed or failed,
+     * exceptions thrown are logged and do not change the result of the assertion
+     *
+     * @param metrics metrics of the assertion
+     * @author cysong
+     * @date 2022/9/20 10:06
+     **/
+    void onComplete(AssertionMetrics metrics);
+}
@@ -0,0 +1,141 @@
+package com.github.cysong.dbassert.metrics;
+
+/**
+ * metrics of a single assertion, filled by the thread running the assertion
+ *
+ * @author cysong
+ * @date 2022/9/20 10:10
+ **/
+public class AssertionMetrics {
+    private final String dbKey;
+    private final String tableName;
+    private String name;
+    private final long[] phaseNanos = new long[Phase.values().length];
+    /**
+     * rows read from all result sets, including aggregate rows and rows of retries
+     **/
+    private long rowsScanned;
+    /**
+     * estimated size of values read, jdbc does not expose bytes transferred
+     **/
+    private long bytesFetched;
+    private int retries;
+    private boolean passed;
+    /**
+     * milliseconds from start of the assertion to the successful verification, -1 if not passed
+     **/
+    private long timeToPass = -1;
+    /**
+     * total milliseconds of the assertion
+     **/
+    private long elapsed;
+    private boolean consistencyMeasured;
+    /**
+     * milliseconds from the reference timestamp to the first poll passed, -1 if not measured or not passed
+     **/
+    private long timeToConsistency = -1;
+
+    public static AssertionMetrics create(String dbKey, String tableName) {
+        return new AssertionMetrics(dbKey, tableName);
+    }
+
+    private AssertionMetrics(String dbKey, String tableName) {
+        this.dbKey = dbKey;
+        this.tableName = tableName;
+    }
+
+    public void addPhaseNanos(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public void addRowsScanned(long rows) {
+        this.rowsScanned += rows;
+    }
+
+    public void addBytesFetched(long bytes) {
+        this.bytesFetched += bytes;
+    }
+
+    /**
+     * dbKey of the assertion, null if asserted by a connection
+     *
+     * @return java.lang.String
+     * @author cysong
+     * @date 2022/9/20 10:12
+     **/
+    public String getDbKey() {
+        return dbKey;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    public long getBytesFetched() {
+        return bytesFetched;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    public boolean isPassed() {
+        return passed;
+    }
+
+    public void setPassed(boolean passed) {
+        this.passed = passed;
+    }
+
+    public long getTimeToPass() {
+        return timeToPass;
+    }
+
+    public void setTimeToPass(long timeToPass) {
+        this.timeToPass = timeToPass;
+    }
+
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    public void setElapsed(long elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    public boolean isConsistencyMeasured() {
+        return consistencyMeasured;
+    }
+
+    public void setConsistencyMeasured(boolean consistencyMeasured) {
+        this.consistencyMeasured = consistencyMeasured;
+    }
+
+    public long getTimeToConsistency() {
+        return timeToConsistency;
+    }
+
+    public void setTimeToConsistency(long timeToConsistency) {
+        this.timeToConsistency = timeToConsistency;
+    }
+}
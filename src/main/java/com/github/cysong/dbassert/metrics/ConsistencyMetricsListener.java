@@ -0,0 +1,103 @@
+package com.github.cysong.dbassert.metrics;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * keep time to consistency of assertions measured as histograms grouped by assertion name, or table name if not named
+ * <pre>
+ * ConsistencyMetricsListener consistency = ConsistencyMetricsListener.create();
+ * DbAssertOptions.getGlobal().addListener(consistency);
+ * DbAssert.create(dbKey).name("order-sync").measureConsistency()...run();
+ * ...
+ * log.info(consistency.dump());
+ * </pre>
+ *
+ * @author cysong
+ * @date 2022/9/21 10:30
+ **/
+public class ConsistencyMetricsListener implements AssertionListener {
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    /**
+     * assertions measured but not passed before the deadline
+     **/
+    private final Map<String, LongAdder> timeouts = new ConcurrentHashMap<>();
+
+    public static ConsistencyMetricsListener create() {
+        return new ConsistencyMetricsListener();
+    }
+
+    private ConsistencyMetricsListener() {
+
+    }
+
+    @Override
+    public void onComplete(AssertionMetrics metrics) {
+        if (!metrics.isConsistencyMeasured()) {
+            return;
+        }
+        String key = metrics.getName() != null ? metrics.getName() : metrics.getTableName();
+        if (metrics.isPassed()) {
+            histograms.computeIfAbsent(key, k -> Histogram.create()).record(metrics.getTimeToConsistency());
+        } else {
+            timeouts.computeIfAbsent(key, k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * names of assertions measured, or table names if not named
+     *
+     * @return java.util.Set<java.lang.String>
+     * @author cysong
+     * @date 2022/9/21 10:32
+     **/
+    public Set<String> getKeys() {
+        Set<String> keys = new TreeSet<>(histograms.keySet());
+        keys.addAll(timeouts.keySet());
+        return keys;
+    }
+
+    /**
+     * histogram of milliseconds to consistency
+     *
+     * @param key assertion name or table name
+     * @return com.github.cysong.dbassert.metrics.Histogram null if nothing passed
+     * @author cysong
+     * @date 2022/9/21 10:33
+     **/
+    public Histogram getHistogram(String key) {
+        return histograms.get(key);
+    }
+
+    public long getTimeouts(String key) {
+        LongAdder adder = timeouts.get(key);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * format percentiles of every key as a text table, times are in milliseconds
+     *
+     * @return java.lang.String
+     * @author cysong
+     * @date 2022/9/21 10:35
+     **/
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-30s %8s %8s %10s %10s %10s %10s%n",
+                "time to consistency(ms)", "passed", "timeout", "p50", "p95", "p99", "max"));
+        for (String key : getKeys()) {
+            Histogram histogram = histograms.getOrDefault(key, Histogram.create());
+            sb.append(String.format("%-30s %8d %8d %10d %10d %10d %10d%n", key, histogram.getCount(), getTimeouts(key),
+                    histogram.getPercentile(50), histogram.getPercentile(95), histogram.getPercentile(99), histogram.getMax()));
+        }
+        return sb.toString();
+    }
+
+    public void reset() {
+        histograms.clear();
+        timeouts.clear();
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.cysong.dbassert.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * keep metrics of all assertions in memory as histograms, usually dumped at the end of a suite
+ * <pre>
+ * HistogramMetricsListener metrics = HistogramMetricsListener.create();
+ * DbAssertOptions.getGlobal().addListener(metrics);
+ * ...
+ * log.info(metrics.dump());
+ * </pre>
+ *
+ * @author cysong
+ * @date 2022/9/20 10:30
+ **/
+public class HistogramMetricsListener implements AssertionListener {
+    private static final double NANOS_PER_MILLI = 1000_000d;
+    private final Map<Phase, Histogram> phases = new EnumMap<>(Phase.class);
+    private final Histogram rowsScanned = Histogram.create();
+    private final Histogram bytesFetched = Histogram.create();
+    private final Histogram retries = Histogram.create();
+    /**
+     * milliseconds to pass of assertions passed
+     **/
+    private final Histogram timeToPass = Histogram.create();
+    private final LongAdder passed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public static HistogramMetricsListener create() {
+        return new HistogramMetricsListener();
+    }
+
+    private HistogramMetricsListener() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, Histogram.create());
+        }
+    }
+
+    @Override
+    public void onComplete(AssertionMetrics metrics) {
+        for (Phase phase : Phase.values()) {
+            phases.get(phase).record(metrics.getPhaseNanos(phase));
+        }
+        rowsScanned.record(metrics.getRowsScanned());
+        bytesFetched.record(metrics.getBytesFetched());
+        retries.record(metrics.getRetries());
+        if (metrics.isPassed()) {
+            passed.increment();
+            timeToPass.record(metrics.getTimeToPass());
+        } else {
+            failed.increment();
+        }
+    }
+
+    /**
+     * histogram of nanoseconds spent in the phase per assertion
+     *
+     * @param phase phase of assertion
+     * @return com.github.cysong.dbassert.metrics.Histogram
+     * @author cysong
+     * @date 2022/9/20 10:32
+     **/
+    public Histogram getPhase(Phase phase) {
+        return phases.get(phase);
+    }
+
+    public Histogram getRowsScanned() {
+        return rowsScanned;
+    }
+
+    public Histogram getBytesFetched() {
+        return bytesFetched;
+    }
+
+    public Histogram getRetries() {
+        return retries;
+    }
+
+    public Histogram getTimeToPass() {
+        return timeToPass;
+    }
+
+    public long getPassed() {
+        return passed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * format all histograms as a text table, times are in milliseconds
+     *
+     * @return java.lang.String
+     * @author cysong
+     * @date 2022/9/20 10:35
+     **/
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("assertions: %d passed, %d failed%n", getPassed(), getFailed()));
+        sb.append(String.format("%-22s %8s %12s %12s %12s %12s %12s %12s%n",
+                "metric", "count", "min", "mean", "p50", "p95", "p99", "max"));
+        for (Phase phase : Phase.values()) {
+            appendRow(sb, phase.getLabel() + "(ms)", phases.get(phase), NANOS_PER_MILLI);
+        }
+        appendRow(sb, "time_to_pass(ms)", timeToPass, 1);
+        appendRow(sb, "rows_scanned", rowsScanned, 1);
+        appendRow(sb, "bytes_fetched", bytesFetched, 1);
+        appendRow(sb, "retries", retries, 1);
+        return sb.toString();
+    }
+
+    /**
+     * clear all histograms and counters
+     *
+     * @author cysong
+     * @date 2022/9/20 10:36
+     **/
+    public void reset() {
+        phases.values().forEach(Histogram::reset);
+        rowsScanned.reset();
+        bytesFetched.reset();
+        retries.reset();
+        timeToPass.reset();
+        passed.reset();
+        failed.reset();
+    }
+
+    private void appendRow(StringBuilder sb, String name, Histogram histogram, double scale) {
+        sb.append(String.format("%-22s %8d %12.3f %12.3f %12.3f %12.3f %12.3f %12.3f%n", name, histogram.getCount(),
+                histogram.getMin() / scale, histogram.getMean() / scale, histogram.getPercentile(50) / scale,
+                histogram.getPercentile(95) / scale, histogram.getPercentile(99) / scale, histogram.getMax() / scale));
+    }
+}
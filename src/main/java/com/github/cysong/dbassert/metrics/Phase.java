@@ -0,0 +1,45 @@
+package com.github.cysong.dbassert.metrics;
+
+/**
+ * phases of an assertion timed by {@link AssertionMetrics}
+ *
+ * @author cysong
+ * @date 2022/9/20 10:00
+ **/
+public enum Phase {
+    /**
+     * build sql or bind a cached template, and compile conditions
+     **/
+    SQL_BUILD,
+    /**
+     * borrow connection of the dbKey from the pool
+     **/
+    CONNECTION_ACQUIRE,
+    /**
+     * execute queries until the first result returned
+     **/
+    QUERY_EXECUTE,
+    /**
+     * move cursors and read values of result sets
+     **/
+    ROW_FETCH,
+    /**
+     * test conditions on values read
+     **/
+    CONDITION_EVALUATE,
+    /**
+     * print sql and add attachments to the reporter
+     **/
+    REPORT_RENDER;
+
+    /**
+     * lower case name used by dumps
+     *
+     * @return java.lang.String
+     * @author cysong
+     * @date 2022/9/20 10:02
+     **/
+    public String getLabel() {
+        return name().toLowerCase();
+    }
+}
@@ -1,11 +1,24 @@
 package com.github.cysong.dbassert.option;
 
+import com.github.cysong.dbassert.assertion.DbAssertExecutor;
 import com.github.cysong.dbassert.constant.Constants;
+import com.github.cysong.dbassert.constant.RecordPolicy;
 import com.github.cysong.dbassert.datasource.ConnectionFactory;
 import com.github.cysong.dbassert.datasource.DefaultConnectionFactory;
+import com.github.cysong.dbassert.datasource.QueryCoalescer;
+import com.github.cysong.dbassert.datasource.ResultCache;
+import com.github.cysong.dbassert.datasource.StatementCache;
+import com.github.cysong.dbassert.metrics.AssertionListener;
+import com.github.cysong.dbassert.probe.ChangeProbe;
+import com.github.cysong.dbassert.report.ReportFormat;
 import com.github.cysong.dbassert.report.Reporter;
+import com.github.cysong.dbassert.retry.BackoffStrategy;
+import com.github.cysong.dbassert.sql.SqlTemplateCache;
 import com.github.cysong.dbassert.utitls.Utils;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * Global options for DbAssert
  *
@@ -26,6 +39,23 @@ public class DbAssertOptions {
      * wait milliseconds before every retry, only work when {@link DbAssertOptions#retry} is true
      **/
     private long retryInterval = Constants.RETRY_INTERVAL;
+    /**
+     * strategy to decide milliseconds to wait before every retry, fixed {@link DbAssertOptions#retryInterval} if not set
+     **/
+    private BackoffStrategy backoff;
+    /**
+     * overall deadline(milliseconds) of assertion, polls until deadline instead of retry times if set, 0 for no deadline
+     **/
+    private long timeout = Constants.TIMEOUT;
+    /**
+     * probe changes of the table before every retry and skip verification if data not changed, disabled if not set
+     **/
+    private ChangeProbe changeProbe;
+    /**
+     * wake up retries on writes to the table if supported by the connection(sqlite only),
+     * retry interval is kept as the max wait
+     **/
+    private boolean waitOnChange = Constants.WAIT_ON_CHANGE;
     /**
      * wait milliseconds before first assert
      **/
@@ -38,6 +68,23 @@ public class DbAssertOptions {
      * max return rows bu single query, avoid return too many rows for performance reason
      **/
     private int maxPageSize = Constants.PAGE_SIZE;
+    /**
+     * rows fetched from database per round-trip when reading details, 0 to use the driver default
+     **/
+    private int fetchSize = Constants.FETCH_SIZE;
+    /**
+     * whether simple column conditions are evaluated by database as violation counts,
+     * detail rows are only fetched for conditions can not be pushed down or to report failures
+     **/
+    private boolean pushdown = Constants.PUSHDOWN;
+    /**
+     * which values tested are recorded and rendered to the report
+     **/
+    private RecordPolicy recordPolicy = Constants.RECORD_POLICY;
+    /**
+     * max failures recorded by {@link RecordPolicy#FIRST_FAILURES}
+     **/
+    private int recordLimit = Constants.RECORD_LIMIT;
     /**
      * database config file for DefaultConnectionFactory to create connection by dbKey
      **/
@@ -54,11 +101,75 @@ public class DbAssertOptions {
      * test database connection timeout(seconds) when valid
      **/
     private int testConnectionTimeout = Constants.TEST_CONNECTION_TIMEOUT;
+    /**
+     * max prepared statements cached for reusing by retries and repeated assertions, 0 to disable caching
+     **/
+    private int statementCacheSize = Constants.STATEMENT_CACHE_SIZE;
+    private volatile StatementCache statementCache;
+    /**
+     * max sql templates cached for assertions of the same shape, 0 to disable caching
+     **/
+    private int sqlTemplateCacheSize = Constants.SQL_TEMPLATE_CACHE_SIZE;
+    private volatile SqlTemplateCache sqlTemplateCache;
+    /**
+     * milliseconds to share rows of the same query between assertions, 0 to disable coalescing
+     **/
+    private long coalesceWindow = Constants.COALESCE_WINDOW;
+    private volatile QueryCoalescer queryCoalescer;
+    /**
+     * max queries of which rows are cached, 0 to disable result cache
+     **/
+    private int resultCacheSize = Constants.RESULT_CACHE_SIZE;
+    /**
+     * milliseconds to cache rows of tables without TTL set by {@link ResultCache#ttl(String, long)}, 0 for not caching
+     **/
+    private long resultCacheTtl = Constants.RESULT_CACHE_TTL;
+    private volatile ResultCache resultCache;
+    /**
+     * max inserts executed in a jdbc batch by {@link com.github.cysong.dbassert.utitls.SqlUtils#loadSqlScript}
+     **/
+    private int scriptBatchSize = Constants.SCRIPT_BATCH_SIZE;
+    /**
+     * rows changed before commit by {@link com.github.cysong.dbassert.utitls.SqlUtils#loadSqlScript},
+     * 0 to commit once at the end of script
+     **/
+    private int scriptCommitInterval = Constants.SCRIPT_COMMIT_INTERVAL;
+    /**
+     * listeners notified with metrics of every assertion, phases are only timed if any listener registered
+     **/
+    private final List<AssertionListener> listeners = new CopyOnWriteArrayList<>();
 
     private Reporter reporter;
+    /**
+     * format of details and summary attachments
+     **/
+    private ReportFormat reportFormat = ReportFormat.HTML;
+    /**
+     * max rows written to an attachment, rows beyond are skipped with a truncation marker, 0 for no limit
+     **/
+    private int reportMaxRows = Constants.REPORT_MAX_ROWS;
+    /**
+     * max uncompressed bytes of rows written to an attachment, 0 for no limit
+     **/
+    private long reportMaxBytes = Constants.REPORT_MAX_BYTES;
+    /**
+     * compress attachments by gzip, only for reporters supporting binary attachments({@link Reporter#isBinaryAttachmentSupported()}),
+     * attachments of other reporters are not compressed
+     **/
+    private boolean reportGzip = Constants.REPORT_GZIP;
+    /**
+     * max polls of asynchronous assertions running at the same time
+     **/
+    private int asyncParallelism = Constants.ASYNC_PARALLELISM;
+    /**
+     * max polls of asynchronous assertions of a dbKey running at the same time,
+     * limits of specific dbKey are set by {@link DbAssertExecutor#limit(String, int)}
+     **/
+    private int asyncConcurrency = Constants.ASYNC_CONCURRENCY;
+    private volatile DbAssertExecutor executor;
 
 
-    public static synchronized DbAssertOptions getGlobal() {
+    public static DbAssertOptions getGlobal() {
         return DbAssertOptions.global;
     }
 
@@ -97,6 +208,43 @@ public class DbAssertOptions {
         return this;
     }
 
+    public BackoffStrategy getBackoff() {
+        return backoff;
+    }
+
+    public DbAssertOptions backoff(BackoffStrategy backoff) {
+        this.backoff = backoff;
+        return this;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public DbAssertOptions timeout(long timeout) {
+        assert timeout >= 0;
+        this.timeout = timeout;
+        return this;
+    }
+
+    public ChangeProbe getChangeProbe() {
+        return changeProbe;
+    }
+
+    public DbAssertOptions changeProbe(ChangeProbe changeProbe) {
+        this.changeProbe = changeProbe;
+        return this;
+    }
+
+    public boolean isWaitOnChange() {
+        return waitOnChange;
+    }
+
+    public DbAssertOptions waitOnChange(boolean waitOnChange) {
+        this.waitOnChange = waitOnChange;
+        return this;
+    }
+
     public long getDelay() {
         return delay;
     }
@@ -123,6 +271,45 @@ public class DbAssertOptions {
         this.maxPageSize = maxPageSize;
     }
 
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public DbAssertOptions fetchSize(int fetchSize) {
+        assert fetchSize >= 0;
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public boolean isPushdown() {
+        return pushdown;
+    }
+
+    public DbAssertOptions pushdown(boolean pushdown) {
+        this.pushdown = pushdown;
+        return this;
+    }
+
+    public RecordPolicy getRecordPolicy() {
+        return recordPolicy;
+    }
+
+    public DbAssertOptions recordPolicy(RecordPolicy recordPolicy) {
+        assert recordPolicy != null;
+        this.recordPolicy = recordPolicy;
+        return this;
+    }
+
+    public int getRecordLimit() {
+        return recordLimit;
+    }
+
+    public DbAssertOptions recordLimit(int recordLimit) {
+        assert recordLimit >= 0;
+        this.recordLimit = recordLimit;
+        return this;
+    }
+
     public ConnectionFactory getFactory() {
         if (factory == null) {
             this.buildDefaultConnectionFactory();
@@ -163,6 +350,141 @@ public class DbAssertOptions {
         return this;
     }
 
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public synchronized DbAssertOptions statementCacheSize(int statementCacheSize) {
+        assert statementCacheSize >= 0;
+        this.statementCacheSize = statementCacheSize;
+        if (this.statementCache != null) {
+            this.statementCache.clear();
+            this.statementCache = null;
+        }
+        return this;
+    }
+
+    public StatementCache getStatementCache() {
+        if (statementCache == null) {
+            this.buildStatementCache();
+        }
+        return this.statementCache;
+    }
+
+    public int getSqlTemplateCacheSize() {
+        return sqlTemplateCacheSize;
+    }
+
+    public synchronized DbAssertOptions sqlTemplateCacheSize(int sqlTemplateCacheSize) {
+        assert sqlTemplateCacheSize >= 0;
+        this.sqlTemplateCacheSize = sqlTemplateCacheSize;
+        this.sqlTemplateCache = null;
+        return this;
+    }
+
+    public SqlTemplateCache getSqlTemplateCache() {
+        if (sqlTemplateCache == null) {
+            this.buildSqlTemplateCache();
+        }
+        return this.sqlTemplateCache;
+    }
+
+    public long getCoalesceWindow() {
+        return coalesceWindow;
+    }
+
+    public synchronized DbAssertOptions coalesceWindow(long coalesceWindow) {
+        assert coalesceWindow >= 0;
+        this.coalesceWindow = coalesceWindow;
+        this.queryCoalescer = null;
+        return this;
+    }
+
+    /**
+     * coalescer of queries, null if disabled
+     *
+     * @return com.github.cysong.dbassert.datasource.QueryCoalescer
+     * @author cysong
+     * @date 2022/9/25 10:45
+     **/
+    public QueryCoalescer getQueryCoalescer() {
+        if (queryCoalescer == null && coalesceWindow > 0) {
+            this.buildQueryCoalescer();
+        }
+        return this.queryCoalescer;
+    }
+
+    public int getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    public synchronized DbAssertOptions resultCacheSize(int resultCacheSize) {
+        assert resultCacheSize >= 0;
+        this.resultCacheSize = resultCacheSize;
+        this.resultCache = null;
+        return this;
+    }
+
+    public long getResultCacheTtl() {
+        return resultCacheTtl;
+    }
+
+    public synchronized DbAssertOptions resultCacheTtl(long resultCacheTtl) {
+        assert resultCacheTtl >= 0;
+        this.resultCacheTtl = resultCacheTtl;
+        this.resultCache = null;
+        return this;
+    }
+
+    /**
+     * cache of query rows, null if disabled
+     *
+     * @return com.github.cysong.dbassert.datasource.ResultCache
+     * @author cysong
+     * @date 2022/9/26 10:40
+     **/
+    public ResultCache getResultCache() {
+        if (resultCache == null && resultCacheSize > 0) {
+            this.buildResultCache();
+        }
+        return this.resultCache;
+    }
+
+    public int getScriptBatchSize() {
+        return scriptBatchSize;
+    }
+
+    public DbAssertOptions scriptBatchSize(int scriptBatchSize) {
+        assert scriptBatchSize > 0;
+        this.scriptBatchSize = scriptBatchSize;
+        return this;
+    }
+
+    public int getScriptCommitInterval() {
+        return scriptCommitInterval;
+    }
+
+    public DbAssertOptions scriptCommitInterval(int scriptCommitInterval) {
+        assert scriptCommitInterval >= 0;
+        this.scriptCommitInterval = scriptCommitInterval;
+        return this;
+    }
+
+    public List<AssertionListener> getListeners() {
+        return listeners;
+    }
+
+    public DbAssertOptions addListener(AssertionListener listener) {
+        assert listener != null;
+        this.listeners.add(listener);
+        return this;
+    }
+
+    public DbAssertOptions removeListener(AssertionListener listener) {
+        this.listeners.remove(listener);
+        return this;
+    }
+
     public Reporter getReporter() {
         return reporter;
     }
@@ -171,6 +493,122 @@ public class DbAssertOptions {
         this.reporter = reporter;
     }
 
+    public ReportFormat getReportFormat() {
+        return reportFormat;
+    }
+
+    public DbAssertOptions reportFormat(ReportFormat reportFormat) {
+        assert reportFormat != null;
+        this.reportFormat = reportFormat;
+        return this;
+    }
+
+    public int getReportMaxRows() {
+        return reportMaxRows;
+    }
+
+    public DbAssertOptions reportMaxRows(int reportMaxRows) {
+        assert reportMaxRows >= 0;
+        this.reportMaxRows = reportMaxRows;
+        return this;
+    }
+
+    public long getReportMaxBytes() {
+        return reportMaxBytes;
+    }
+
+    public DbAssertOptions reportMaxBytes(long reportMaxBytes) {
+        assert reportMaxBytes >= 0;
+        this.reportMaxBytes = reportMaxBytes;
+        return this;
+    }
+
+    public boolean isReportGzip() {
+        return reportGzip;
+    }
+
+    public DbAssertOptions reportGzip(boolean reportGzip) {
+        this.reportGzip = reportGzip;
+        return this;
+    }
+
+    public int getAsyncParallelism() {
+        return asyncParallelism;
+    }
+
+    public synchronized DbAssertOptions asyncParallelism(int asyncParallelism) {
+        assert asyncParallelism > 0;
+        this.asyncParallelism = asyncParallelism;
+        this.executor = null;
+        return this;
+    }
+
+    public int getAsyncConcurrency() {
+        return asyncConcurrency;
+    }
+
+    public synchronized DbAssertOptions asyncConcurrency(int asyncConcurrency) {
+        assert asyncConcurrency > 0;
+        this.asyncConcurrency = asyncConcurrency;
+        this.executor = null;
+        return this;
+    }
+
+    public DbAssertExecutor getExecutor() {
+        if (executor == null) {
+            this.buildExecutor();
+        }
+        return this.executor;
+    }
+
+    /**
+     * executor of asynchronous assertions, the executor replaced is not closed
+     *
+     * @param executor executor of asynchronous assertions
+     * @return com.github.cysong.dbassert.option.DbAssertOptions
+     * @author cysong
+     * @date 2022/9/24 11:40
+     **/
+    public synchronized DbAssertOptions executor(DbAssertExecutor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    private synchronized void buildStatementCache() {
+        if (this.statementCache != null) {
+            return;
+        }
+        this.statementCache = StatementCache.create(this.statementCacheSize);
+    }
+
+    private synchronized void buildSqlTemplateCache() {
+        if (this.sqlTemplateCache != null) {
+            return;
+        }
+        this.sqlTemplateCache = SqlTemplateCache.create(this.sqlTemplateCacheSize);
+    }
+
+    private synchronized void buildQueryCoalescer() {
+        if (this.queryCoalescer != null || this.coalesceWindow == 0) {
+            return;
+        }
+        this.queryCoalescer = QueryCoalescer.create(this.coalesceWindow);
+    }
+
+    private synchronized void buildResultCache() {
+        if (this.resultCache != null || this.resultCacheSize == 0) {
+            return;
+        }
+        this.resultCache = ResultCache.create(this.resultCacheSize, this.resultCacheTtl);
+    }
+
+    private synchronized void buildExecutor() {
+        if (this.executor != null) {
+            return;
+        }
+        this.executor = DbAssertExecutor.create(this.asyncParallelism, this.asyncConcurrency);
+    }
+
     private synchronized void buildDefaultConnectionFactory() {
         if (this.factory != null) {
             return;
@@ -0,0 +1,27 @@
+package com.github.cysong.dbassert.probe;
+
+import com.github.cysong.dbassert.assertion.Assertion;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * cheap fingerprint query of the table asserted, verification is skipped by retries if the fingerprint not moves
+ *
+ * @author cysong
+ * @date 2022/9/15 10:00
+ **/
+@FunctionalInterface
+public interface ChangeProbe {
+
+    /**
+     * query the fingerprint of data asserted, compared by equals with the fingerprint of previous poll
+     *
+     * @param conn      database connection
+     * @param assertion assertion to be verified
+     * @return java.lang.Object fingerprint, null if unknown and verification should not be skipped
+     * @author cysong
+     * @date 2022/9/15 10:02
+     **/
+    Object fingerprint(Connection conn, Assertion assertion) throws SQLException;
+}
@@ -0,0 +1,162 @@
+package com.github.cysong.dbassert.probe;
+
+import com.github.cysong.dbassert.assertion.Assertion;
+import com.github.cysong.dbassert.assertion.ConditionTester;
+import com.github.cysong.dbassert.datasource.StatementCache;
+import com.github.cysong.dbassert.exception.ConfigurationException;
+import com.github.cysong.dbassert.option.DbAssertOptions;
+import com.github.cysong.dbassert.sql.Dialect;
+import com.github.cysong.dbassert.sql.DialectRegistry;
+import com.github.cysong.dbassert.utitls.SqlUtils;
+import com.github.cysong.dbassert.utitls.Utils;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * built-in change probes
+ *
+ * @author cysong
+ * @date 2022/9/15 10:10
+ **/
+public class ChangeProbes {
+
+    /**
+     * choose probe by database product, data version for sqlite and update time for mysql
+     *
+     * @return com.github.cysong.dbassert.probe.ChangeProbe
+     * @author cysong
+     * @date 2022/9/15 10:12
+     **/
+    public static ChangeProbe auto() {
+        return (conn, assertion) -> {
+            Dialect dialect = DialectRegistry.getDialect(assertion);
+            if (dialect.isSqlite()) {
+                return sqliteDataVersion().fingerprint(conn, assertion);
+            }
+            if (dialect.isMysql()) {
+                return mysqlUpdateTime().fingerprint(conn, assertion);
+            }
+            return null;
+        };
+    }
+
+    /**
+     * choose probe never misses a change by database product, data version for sqlite and none for others.
+     * Unlike {@link #auto()} the update time of mysql is not used, which is in seconds and may be stale
+     *
+     * @return com.github.cysong.dbassert.probe.ChangeProbe
+     * @author cysong
+     * @date 2022/9/21 10:05
+     **/
+    public static ChangeProbe exact() {
+        return (conn, assertion) -> {
+            if (DialectRegistry.getDialect(assertion).isSqlite()) {
+                return sqliteDataVersion().fingerprint(conn, assertion);
+            }
+            return null;
+        };
+    }
+
+    /**
+     * data version moves when other connections commit changes to the database file,
+     * total changes counts rows changed by current connection
+     *
+     * @return com.github.cysong.dbassert.probe.ChangeProbe
+     * @author cysong
+     * @date 2022/9/15 10:15
+     **/
+    public static ChangeProbe sqliteDataVersion() {
+        return (conn, assertion) -> queryRow(conn,
+                "select (select data_version from pragma_data_version()),total_changes()");
+    }
+
+    /**
+     * checksum of table content, the table is read entirely by InnoDB, only cheap for MyISAM with live checksum
+     *
+     * @return com.github.cysong.dbassert.probe.ChangeProbe
+     * @author cysong
+     * @date 2022/9/15 10:16
+     **/
+    public static ChangeProbe mysqlChecksum() {
+        return (conn, assertion) -> {
+            List<Object> row = queryRow(conn, "checksum table " + quotedTableName(assertion));
+            return row == null ? null : row.get(1);
+        };
+    }
+
+    /**
+     * update time of table in information_schema, which is in seconds,
+     * so the fingerprint is unknown in the same second of last update
+     * <p>
+     * MySQL 8 caches table statistics of information_schema for information_schema_stats_expiry seconds (86400 by default),
+     * so the probe sets it to 0 for the session of the connection before probing, otherwise a cached update time
+     * hides changes. The variable is left as 0 after probing, which only makes later information_schema queries
+     * of the session read the latest statistics.
+     *
+     * @return com.github.cysong.dbassert.probe.ChangeProbe
+     * @author cysong
+     * @date 2022/9/15 10:18
+     **/
+    public static ChangeProbe mysqlUpdateTime() {
+        return (conn, assertion) -> {
+            Dialect dialect = DialectRegistry.getDialect(assertion);
+            if (dialect.isMysql() && dialect.getMajorVersion() >= 8) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("set session information_schema_stats_expiry=0");
+                }
+            }
+            List<Object> row = queryRow(conn, "select update_time,update_time>=now()-interval 1 second " +
+                            "from information_schema.tables where table_schema=coalesce(?,database()) and table_name=?",
+                    assertion.getDatabase(), assertion.getTableName());
+            if (row == null || row.get(0) == null || ConditionTester.isTrue(row.get(1))) {
+                return null;
+            }
+            return row.get(0);
+        };
+    }
+
+    /**
+     * max value of a version column updated by every insert and update, such as an auto increment id or update time,
+     * together with count of rows to detect deletes
+     *
+     * @param column version column
+     * @return com.github.cysong.dbassert.probe.ChangeProbe
+     * @author cysong
+     * @date 2022/9/15 10:20
+     **/
+    public static ChangeProbe maxColumn(String column) {
+        if (Utils.isBlank(column)) {
+            throw new ConfigurationException("Version column can not be blank");
+        }
+        return (conn, assertion) -> queryRow(conn,
+                "select max(`" + column + "`),count(*) from " + quotedTableName(assertion));
+    }
+
+    private static String quotedTableName(Assertion assertion) {
+        String table = "`" + assertion.getTableName() + "`";
+        return assertion.getDatabase() == null ? table : "`" + assertion.getDatabase() + "`." + table;
+    }
+
+    private static List<Object> queryRow(Connection conn, String sql, Object... params) throws SQLException {
+        StatementCache cache = DbAssertOptions.getGlobal().getStatementCache();
+        PreparedStatement ps = cache.borrow(conn, sql);
+        try {
+            SqlUtils.setParameters(ps, Arrays.asList(params));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                int count = rs.getMetaData().getColumnCount();
+                Object[] row = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                return Arrays.asList(row);
+            }
+        } finally {
+            cache.release(conn, sql, ps);
+        }
+    }
+}
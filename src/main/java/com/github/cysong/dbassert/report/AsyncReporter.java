@@ -0,0 +1,259 @@
+package com.github.cysong.dbassert.report;
+
+import com.github.cysong.dbassert.constant.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * call the delegate reporter and render lazy or streamed attachments on a background worker
+ * <p>
+ * Reports are queued in a bounded queue and handled one by one in the order submitted,
+ * so steps and attachments of every test thread keep their order. Threads submitting reports
+ * wait if the queue is full. The delegate is called by the worker thread, reporters depending on
+ * thread local state should implement {@link Reporter#captureContext()} and {@link Reporter#restoreContext(Object)}:
+ * a report submitted out of any step runs in the context captured on the test thread, while a report
+ * inside a step runs in the context left on the worker by the previous report of the same test thread.
+ * <pre>
+ * DbAssertSetup.setup().reporter(AsyncReporter.create(new MyReporter()));
+ * ...
+ * //at the end of suite
+ * DbAssertOptions.getGlobal().getReporter().flush();
+ * </pre>
+ *
+ * @author cysong
+ * @date 2022/9/23 10:10
+ **/
+public class AsyncReporter implements Reporter {
+    private static final Logger log = LoggerFactory.getLogger(AsyncReporter.class);
+    private static final Report STOP = new Report(null, false, null, 0, () -> {
+    });
+    private final Reporter delegate;
+    private final BlockingQueue<Report> queue;
+    private final Thread worker;
+    /**
+     * steps started and not ended by each test thread
+     **/
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+    /**
+     * context left on the worker by test threads inside a step, only accessed by the worker
+     **/
+    private final Map<Thread, Object> contexts = new HashMap<>();
+    /**
+     * reports submitted after closed are handled by the calling thread
+     **/
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    public static AsyncReporter create(Reporter delegate) {
+        return create(delegate, Constants.REPORT_QUEUE_SIZE);
+    }
+
+    /**
+     * create reporter with a queue of capacity
+     *
+     * @param delegate reporter called by the worker
+     * @param capacity max reports waiting in queue
+     * @return com.github.cysong.dbassert.report.AsyncReporter
+     * @author cysong
+     * @date 2022/9/23 10:12
+     **/
+    public static AsyncReporter create(Reporter delegate, int capacity) {
+        assert delegate != null && capacity > 0;
+        return new AsyncReporter(delegate, capacity);
+    }
+
+    private AsyncReporter(Reporter delegate, int capacity) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.worker = new Thread(this::work, "dbassert-reporter");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public void startStep(String name) {
+        submit(1, () -> delegate.startStep(name));
+    }
+
+    @Override
+    public void endStep(Status status) {
+        submit(-1, () -> delegate.endStep(status));
+    }
+
+    @Override
+    public void endStep(Throwable throwable) {
+        submit(-1, () -> delegate.endStep(throwable));
+    }
+
+    @Override
+    public void addAttachment(String name, String content) {
+        submit(0, () -> delegate.addAttachment(name, content));
+    }
+
+    @Override
+    public void addAttachment(String name, String type, String content, String extension) {
+        submit(0, () -> delegate.addAttachment(name, type, content, extension));
+    }
+
+    @Override
+    public void addAttachment(String name, Supplier<String> content) {
+        submit(0, () -> delegate.addAttachment(name, content.get()));
+    }
+
+    @Override
+    public void addAttachment(String name, String type, Supplier<String> content, String extension) {
+        submit(0, () -> delegate.addAttachment(name, type, content.get(), extension));
+    }
+
+    @Override
+    public boolean isBinaryAttachmentSupported() {
+        return delegate.isBinaryAttachmentSupported();
+    }
+
+    @Override
+    public void addAttachment(String name, String type, String extension, AttachmentWriter writer) {
+        submit(0, () -> delegate.addAttachment(name, type, extension, writer));
+    }
+
+    /**
+     * wait until reports submitted before are handled, then flush the delegate
+     *
+     * @author cysong
+     * @date 2022/9/23 10:15
+     **/
+    @Override
+    public void flush() {
+        CountDownLatch latch = new CountDownLatch(1);
+        submit(0, latch::countDown);
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        delegate.flush();
+    }
+
+    /**
+     * handle reports in queue and stop the worker
+     *
+     * @author cysong
+     * @date 2022/9/23 10:16
+     **/
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            queue.put(STOP);
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.flush();
+    }
+
+    /**
+     * reports waiting in queue
+     *
+     * @return int
+     * @author cysong
+     * @date 2022/9/23 10:17
+     **/
+    public int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * @param step 1 if the report starts a step, -1 if ends a step, 0 otherwise
+     * @param task call to the delegate
+     **/
+    private void submit(int step, Runnable task) {
+        int[] open = depth.get();
+        boolean inherit = open[0] > 0;
+        Object context = inherit ? null : delegate.captureContext();
+        open[0] = Math.max(0, open[0] + step);
+        lock.readLock().lock();
+        try {
+            if (!closed) {
+                queue.put(new Report(Thread.currentThread(), inherit, context, open[0], task));
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting report queue, report is dropped");
+            return;
+        } finally {
+            lock.readLock().unlock();
+        }
+        run(task);
+    }
+
+    private void work() {
+        while (true) {
+            Report report;
+            try {
+                report = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (report == STOP) {
+                return;
+            }
+            handle(report);
+        }
+    }
+
+    private void handle(Report report) {
+        Object context = report.inherit ? contexts.get(report.thread) : report.context;
+        run(() -> delegate.restoreContext(context));
+        run(report.task);
+        if (report.depth == 0) {
+            contexts.remove(report.thread);
+        } else {
+            run(() -> contexts.put(report.thread, delegate.captureContext()));
+        }
+    }
+
+    private static void run(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("Report failed", e);
+        }
+    }
+
+    /**
+     * report queued with the test thread submitted it
+     **/
+    private static class Report {
+        private final Thread thread;
+        private final boolean inherit;
+        private final Object context;
+        private final int depth;
+        private final Runnable task;
+
+        Report(Thread thread, boolean inherit, Object context, int depth, Runnable task) {
+            this.thread = thread;
+            this.inherit = inherit;
+            this.context = context;
+            this.depth = depth;
+            this.task = task;
+        }
+    }
+}
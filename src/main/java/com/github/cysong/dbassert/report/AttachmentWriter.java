@@ -0,0 +1,23 @@
+package com.github.cysong.dbassert.report;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * write content of an attachment to the stream given by the reporter
+ *
+ * @author cysong
+ * @date 2022/9/24 10:05
+ **/
+@FunctionalInterface
+public interface AttachmentWriter {
+
+    /**
+     * write the attachment, the stream is owned and closed by the reporter
+     *
+     * @param out stream of the attachment
+     * @author cysong
+     * @date 2022/9/24 10:06
+     **/
+    void write(OutputStream out) throws IOException;
+}
@@ -0,0 +1,42 @@
+package com.github.cysong.dbassert.report;
+
+/**
+ * format of reports written by {@link ReportWriter}
+ *
+ * @author cysong
+ * @date 2022/9/24 10:00
+ **/
+public enum ReportFormat {
+    /**
+     * html table
+     */
+    HTML("text/html", "html"),
+    /**
+     * a json object per line, keys are table headers
+     */
+    JSONL("application/x-ndjson", "jsonl");
+
+    private final String type;
+    private final String extension;
+
+    ReportFormat(String type, String extension) {
+        this.type = type;
+        this.extension = extension;
+    }
+
+    /**
+     * http content type of the attachment
+     *
+     * @param gzip whether content is compressed
+     * @return java.lang.String
+     * @author cysong
+     * @date 2022/9/24 10:02
+     **/
+    public String getType(boolean gzip) {
+        return gzip ? "application/gzip" : type;
+    }
+
+    public String getExtension(boolean gzip) {
+        return gzip ? extension + ".gz" : extension;
+    }
+}
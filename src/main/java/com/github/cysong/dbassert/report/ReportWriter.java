@@ -0,0 +1,298 @@
+package com.github.cysong.dbassert.report;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * write a table to a stream row by row in html or json lines, so the report never has to fit in memory
+ * <p>
+ * Once a row exceeds maxRows or maxBytes of uncompressed content, it and all rows after are skipped
+ * and a truncation marker with the rows skipped is written when closed.
+ * <pre>
+ * try (ReportWriter writer = ReportWriter.create(out, ReportFormat.HTML, 1000, 1 &lt;&lt; 20, false)) {
+ *     writer.writeHeader("title", "column", "value");
+ *     writer.writeRow(true, "name", "alice");
+ * }
+ * </pre>
+ *
+ * @author cysong
+ * @date 2022/9/24 10:10
+ **/
+public class ReportWriter implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+    private final OutputStream out;
+    private final ReportFormat format;
+    private final long maxRows;
+    private final long maxBytes;
+    private String[] columns;
+    private long rows;
+    private long skippedRows;
+    /**
+     * uncompressed bytes written
+     **/
+    private long bytes;
+    private boolean closed;
+
+    /**
+     * create writer of the stream
+     *
+     * @param out      stream to write, not closed by the writer
+     * @param format   report format
+     * @param maxRows  max rows written, 0 for no limit
+     * @param maxBytes max uncompressed bytes of rows written, 0 for no limit
+     * @param gzip     whether compress content by gzip
+     * @return com.github.cysong.dbassert.report.ReportWriter
+     * @author cysong
+     * @date 2022/9/24 10:12
+     **/
+    public static ReportWriter create(OutputStream out, ReportFormat format, long maxRows, long maxBytes, boolean gzip) throws IOException {
+        assert out != null && format != null && maxRows >= 0 && maxBytes >= 0;
+        return new ReportWriter(out, format, maxRows, maxBytes, gzip);
+    }
+
+    private ReportWriter(OutputStream out, ReportFormat format, long maxRows, long maxBytes, boolean gzip) throws IOException {
+        this.format = format;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        OutputStream stream = new NonClosingOutputStream(out);
+        if (gzip) {
+            stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+        }
+        this.out = new BufferedOutputStream(stream, BUFFER_SIZE);
+    }
+
+    /**
+     * write title and table header, must be called before rows
+     *
+     * @param title   title of the table, null if not shown
+     * @param columns column names
+     * @author cysong
+     * @date 2022/9/24 10:14
+     **/
+    public void writeHeader(String title, String... columns) throws IOException {
+        assert this.columns == null && columns.length > 0;
+        this.columns = columns;
+        if (format == ReportFormat.JSONL) {
+            if (title != null) {
+                write("{\"title\":" + quote(title) + "}\n");
+            }
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(HtmlTableBuilder.HTML_START).append("\n").append(HtmlTableBuilder.HEAD).append("<body>\n");
+        if (title != null) {
+            sb.append("<div><b>").append(escape(title)).append("</b></div>\n");
+        }
+        sb.append(HtmlTableBuilder.TABLE_START).append("\n").append(HtmlTableBuilder.ROW_START);
+        for (String column : columns) {
+            sb.append(HtmlTableBuilder.HEADER_START).append(escape(column)).append(HtmlTableBuilder.HEADER_END);
+        }
+        sb.append(HtmlTableBuilder.ROW_END).append("\n");
+        write(sb.toString());
+    }
+
+    /**
+     * write a row unless the row or byte limit reached
+     *
+     * @param pass   whether the row passed, failed rows are highlighted in html
+     * @param values values of columns
+     * @return boolean false if the row is skipped
+     * @author cysong
+     * @date 2022/9/24 10:16
+     **/
+    public boolean writeRow(boolean pass, String... values) throws IOException {
+        if (columns == null || values.length != columns.length) {
+            throw new IllegalArgumentException("Error column length,expected:" + (columns == null ? 0 : columns.length));
+        }
+        if (isTruncated() || maxRows > 0 && rows >= maxRows) {
+            skippedRows++;
+            return false;
+        }
+        byte[] row = (format == ReportFormat.JSONL ? jsonRow(pass, values) : htmlRow(pass, values))
+                .getBytes(StandardCharsets.UTF_8);
+        if (maxBytes > 0 && bytes + row.length > maxBytes) {
+            skippedRows++;
+            return false;
+        }
+        out.write(row);
+        bytes += row.length;
+        rows++;
+        return true;
+    }
+
+    /**
+     * count rows skipped without rendering, such as rows left after the writer truncated
+     *
+     * @param rows rows skipped
+     * @author cysong
+     * @date 2022/9/24 10:17
+     **/
+    public void skipRows(long rows) {
+        assert rows >= 0;
+        skippedRows += rows;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getSkippedRows() {
+        return skippedRows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public boolean isTruncated() {
+        return skippedRows > 0;
+    }
+
+    /**
+     * write the truncation marker and footer, finish compression and flush, the stream given is not closed
+     *
+     * @author cysong
+     * @date 2022/9/24 10:18
+     **/
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (format == ReportFormat.JSONL) {
+            if (isTruncated()) {
+                write("{\"truncated\":true,\"skippedRows\":" + skippedRows + "}\n");
+            }
+        } else {
+            StringBuilder sb = new StringBuilder();
+            if (columns == null) {
+                sb.append(HtmlTableBuilder.HTML_START).append("\n<body>\n").append(HtmlTableBuilder.TABLE_START).append("\n");
+            }
+            if (isTruncated()) {
+                sb.append(String.format("<tr bgcolor=\"yellow\"><td colspan=\"%d\">truncated, %d more rows not written</td></tr>\n",
+                        columns == null ? 1 : columns.length, skippedRows));
+            }
+            sb.append(HtmlTableBuilder.TABLE_END).append("\n</body>\n").append(HtmlTableBuilder.HTML_END);
+            write(sb.toString());
+        }
+        //compression is finished by close
+        out.close();
+    }
+
+    private void write(String content) throws IOException {
+        out.write(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String htmlRow(boolean pass, String[] values) {
+        StringBuilder sb = new StringBuilder(String.format("<tr bgcolor=\"%s\">", pass ? "white" : "red"));
+        for (String value : values) {
+            sb.append(HtmlTableBuilder.COLUMN_START).append(escape(value)).append(HtmlTableBuilder.COLUMN_END);
+        }
+        return sb.append(HtmlTableBuilder.ROW_END).append("\n").toString();
+    }
+
+    private String jsonRow(boolean pass, String[] values) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < columns.length; i++) {
+            sb.append(quote(columns[i])).append(":").append(quote(values[i])).append(",");
+        }
+        return sb.append("\"pass\":").append(pass).append("}\n").toString();
+    }
+
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * the stream given is owned by the caller
+     **/
+    private static class NonClosingOutputStream extends OutputStream {
+        private final OutputStream out;
+
+        NonClosingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -1,5 +1,11 @@
 package com.github.cysong.dbassert.report;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
 /**
  * report interface
  *
@@ -56,4 +62,97 @@ public interface Reporter {
      * @date 2022/8/26 10:49
      **/
     void addAttachment(String name, String type, String content, String extension);
+
+    /**
+     * add a attachment rendered lazily, asynchronous reporters render it off the assertion thread
+     *
+     * @param name    attachment name
+     * @param content supplier of attachment content
+     * @author cysong
+     * @date 2022/9/23 10:00
+     **/
+    default void addAttachment(String name, Supplier<String> content) {
+        addAttachment(name, content.get());
+    }
+
+    /**
+     * add a attachment rendered lazily, asynchronous reporters render it off the assertion thread
+     *
+     * @param name      attachment name
+     * @param type      attachment type(http content type)
+     * @param content   supplier of attachment content
+     * @param extension file extension
+     * @author cysong
+     * @date 2022/9/23 10:00
+     **/
+    default void addAttachment(String name, String type, Supplier<String> content, String extension) {
+        addAttachment(name, type, content.get(), extension);
+    }
+
+    /**
+     * whether {@link Reporter#addAttachment(String, String, String, AttachmentWriter)} keeps the bytes written as is,
+     * attachments are only compressed for reporters returning true
+     *
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/24 10:25
+     **/
+    default boolean isBinaryAttachmentSupported() {
+        return false;
+    }
+
+    /**
+     * add a attachment written to a stream, reporters should override it to stream content to the destination
+     * so large attachments never have to fit in memory. The default buffers content in memory as utf-8 text,
+     * reporters overriding it to keep bytes should also override {@link Reporter#isBinaryAttachmentSupported()}.
+     *
+     * @param name      attachment name
+     * @param type      attachment type(http content type)
+     * @param extension file extension
+     * @param writer    writer of attachment content
+     * @author cysong
+     * @date 2022/9/24 10:30
+     **/
+    default void addAttachment(String name, String type, String extension, AttachmentWriter writer) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        addAttachment(name, type, new String(out.toByteArray(), StandardCharsets.UTF_8), extension);
+    }
+
+    /**
+     * snapshot thread local state of the current thread the reporter depends on, such as the stack of steps started.
+     * Asynchronous reporters call it on the test thread when a report is submitted and on the worker after a report
+     * handled, then restore it on the worker by {@link Reporter#restoreContext(Object)} before the next report
+     * of the same test thread, so the snapshot must not change with the state afterwards.
+     *
+     * @return java.lang.Object snapshot of the state, null by default
+     * @author cysong
+     * @date 2022/9/23 10:03
+     **/
+    default Object captureContext() {
+        return null;
+    }
+
+    /**
+     * restore state captured by {@link Reporter#captureContext()} on the current thread
+     *
+     * @param context snapshot of the state
+     * @author cysong
+     * @date 2022/9/23 10:03
+     **/
+    default void restoreContext(Object context) {
+    }
+
+    /**
+     * wait until all reports submitted are written, called at the end of a suite
+     *
+     * @author cysong
+     * @date 2022/9/23 10:02
+     **/
+    default void flush() {
+    }
 }
@@ -0,0 +1,59 @@
+package com.github.cysong.dbassert.retry;
+
+/**
+ * strategy to decide milliseconds to wait before every retry
+ *
+ * @author cysong
+ * @date 2022/9/14 10:00
+ **/
+@FunctionalInterface
+public interface BackoffStrategy {
+
+    /**
+     * milliseconds to wait before the retry, measured from the start of previous poll
+     *
+     * @param retry retry times, start from 1
+     * @return long
+     * @author cysong
+     * @date 2022/9/14 10:02
+     **/
+    long nextInterval(int retry);
+
+    /**
+     * wait the same interval before every retry
+     *
+     * @param interval milliseconds to wait
+     * @return com.github.cysong.dbassert.retry.BackoffStrategy
+     * @author cysong
+     * @date 2022/9/14 10:05
+     **/
+    static BackoffStrategy fixed(long interval) {
+        return FixedBackoff.create(interval);
+    }
+
+    /**
+     * wait initial interval before the first retry and multiply the interval by multiplier every retry
+     *
+     * @param initialInterval milliseconds to wait before the first retry
+     * @param multiplier      multiplier of interval, at least 1
+     * @return com.github.cysong.dbassert.retry.BackoffStrategy
+     * @author cysong
+     * @date 2022/9/14 10:05
+     **/
+    static BackoffStrategy exponential(long initialInterval, double multiplier) {
+        return ExponentialBackoff.create(initialInterval, multiplier);
+    }
+
+    /**
+     * randomize the interval of strategy, so that assertions started together do not poll at the same time
+     *
+     * @param strategy strategy to be randomized
+     * @param ratio    max ratio of interval to be reduced randomly, between 0 and 1
+     * @return com.github.cysong.dbassert.retry.BackoffStrategy
+     * @author cysong
+     * @date 2022/9/14 10:05
+     **/
+    static BackoffStrategy jittered(BackoffStrategy strategy, double ratio) {
+        return JitteredBackoff.create(strategy, ratio);
+    }
+}
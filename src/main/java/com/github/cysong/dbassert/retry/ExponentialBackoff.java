@@ -0,0 +1,37 @@
+package com.github.cysong.dbassert.retry;
+
+import com.github.cysong.dbassert.constant.Constants;
+
+/**
+ * multiply the interval every retry, capped at {@link Constants#MAX_RETRY_INTERVAL}
+ *
+ * @author cysong
+ * @date 2022/9/14 10:15
+ **/
+public class ExponentialBackoff implements BackoffStrategy {
+    private final long initialInterval;
+    private final double multiplier;
+    private final long maxInterval;
+
+    public static ExponentialBackoff create(long initialInterval, double multiplier) {
+        return new ExponentialBackoff(initialInterval, multiplier, Constants.MAX_RETRY_INTERVAL);
+    }
+
+    public static ExponentialBackoff create(long initialInterval, double multiplier, long maxInterval) {
+        return new ExponentialBackoff(initialInterval, multiplier, maxInterval);
+    }
+
+    private ExponentialBackoff(long initialInterval, double multiplier, long maxInterval) {
+        assert initialInterval >= 0 && multiplier >= 1 && maxInterval >= 0;
+        this.initialInterval = initialInterval;
+        this.multiplier = multiplier;
+        this.maxInterval = Math.min(maxInterval, Constants.MAX_RETRY_INTERVAL);
+    }
+
+    @Override
+    public long nextInterval(int retry) {
+        assert retry > 0;
+        double interval = initialInterval * Math.pow(multiplier, retry - 1);
+        return interval >= maxInterval ? maxInterval : (long) interval;
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.cysong.dbassert.retry;
+
+import com.github.cysong.dbassert.constant.Constants;
+
+/**
+ * wait the same interval before every retry
+ *
+ * @author cysong
+ * @date 2022/9/14 10:10
+ **/
+public class FixedBackoff implements BackoffStrategy {
+    private final long interval;
+
+    public static FixedBackoff create(long interval) {
+        return new FixedBackoff(interval);
+    }
+
+    private FixedBackoff(long interval) {
+        assert interval >= 0;
+        this.interval = Math.min(interval, Constants.MAX_RETRY_INTERVAL);
+    }
+
+    @Override
+    public long nextInterval(int retry) {
+        return interval;
+    }
+}
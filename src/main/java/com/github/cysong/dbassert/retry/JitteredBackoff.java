@@ -0,0 +1,30 @@
+package com.github.cysong.dbassert.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * reduce the interval of another strategy by a random ratio
+ *
+ * @author cysong
+ * @date 2022/9/14 10:20
+ **/
+public class JitteredBackoff implements BackoffStrategy {
+    private final BackoffStrategy strategy;
+    private final double ratio;
+
+    public static JitteredBackoff create(BackoffStrategy strategy, double ratio) {
+        return new JitteredBackoff(strategy, ratio);
+    }
+
+    private JitteredBackoff(BackoffStrategy strategy, double ratio) {
+        assert strategy != null && ratio >= 0 && ratio <= 1;
+        this.strategy = strategy;
+        this.ratio = ratio;
+    }
+
+    @Override
+    public long nextInterval(int retry) {
+        long interval = strategy.nextInterval(retry);
+        return interval - (long) (interval * ratio * ThreadLocalRandom.current().nextDouble());
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.cysong.dbassert.retry;
+
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteUpdateListener;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * wake up on writes to the table observed by the update hook of sqlite-jdbc connection
+ * <p>
+ * The update hook only observes writes by the same connection,
+ * so the timeout of {@link #await(long)} is kept as a fallback for writes by other connections or processes.
+ *
+ * @author cysong
+ * @date 2022/9/16 10:10
+ **/
+public class SqliteUpdateWaitStrategy implements WaitStrategy, SQLiteUpdateListener {
+    private final SQLiteConnection conn;
+    private final String database;
+    private final String tableName;
+    private final Object lock = new Object();
+    private boolean changed;
+
+    /**
+     * whether the connection is a sqlite-jdbc connection
+     *
+     * @param conn database connection
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/16 10:12
+     **/
+    public static boolean supports(Connection conn) {
+        try {
+            return conn.isWrapperFor(SQLiteConnection.class);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    public static SqliteUpdateWaitStrategy create(Connection conn, String database, String tableName) throws SQLException {
+        return new SqliteUpdateWaitStrategy(conn.unwrap(SQLiteConnection.class), database, tableName);
+    }
+
+    private SqliteUpdateWaitStrategy(SQLiteConnection conn, String database, String tableName) {
+        this.conn = conn;
+        this.database = database == null ? "main" : database;
+        this.tableName = tableName;
+        conn.addUpdateListener(this);
+    }
+
+    @Override
+    public void onUpdate(Type type, String database, String table, long rowId) {
+        if (tableName.equalsIgnoreCase(table) && this.database.equalsIgnoreCase(database)) {
+            synchronized (lock) {
+                changed = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void await(long mills) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + mills;
+        synchronized (lock) {
+            long remaining = mills;
+            while (!changed && remaining > 0) {
+                lock.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            //writes during the next verification wake up the wait after it
+            changed = false;
+        }
+    }
+
+    @Override
+    public void close() {
+        conn.removeUpdateListener(this);
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.cysong.dbassert.retry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * wait on a timer, used by databases without change notifications
+ *
+ * @author cysong
+ * @date 2022/9/16 10:05
+ **/
+public class TimerWaitStrategy implements WaitStrategy {
+    private static final TimerWaitStrategy INSTANCE = new TimerWaitStrategy();
+
+    public static TimerWaitStrategy create() {
+        return INSTANCE;
+    }
+
+    private TimerWaitStrategy() {
+    }
+
+    @Override
+    public void await(long mills) throws InterruptedException {
+        if (mills > 0) {
+            TimeUnit.MILLISECONDS.sleep(mills);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.cysong.dbassert.retry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * choose wait strategy by the connection, fall back to timer if change notifications not supported
+ *
+ * @author cysong
+ * @date 2022/9/16 10:20
+ **/
+public class WaitStrategies {
+    private static final Logger log = LoggerFactory.getLogger(WaitStrategies.class);
+    /**
+     * sqlite-jdbc is an optional dependency, classes referencing it are only loaded if present
+     **/
+    private static final boolean SQLITE_PRESENT = isPresent("org.sqlite.SQLiteConnection");
+
+    /**
+     * create wait strategy woken up by writes to the table
+     *
+     * @param conn      database connection
+     * @param database  database name, null for the default
+     * @param tableName table asserted
+     * @return com.github.cysong.dbassert.retry.WaitStrategy
+     * @author cysong
+     * @date 2022/9/16 10:22
+     **/
+    public static WaitStrategy onChange(Connection conn, String database, String tableName) {
+        if (SQLITE_PRESENT && SqliteUpdateWaitStrategy.supports(conn)) {
+            try {
+                return SqliteUpdateWaitStrategy.create(conn, database, tableName);
+            } catch (SQLException e) {
+                log.warn("Register sqlite update listener failed, wait on timer: {}", e.getMessage());
+            }
+        }
+        return TimerWaitStrategy.create();
+    }
+
+    private static boolean isPresent(String className) {
+        try {
+            Class.forName(className, false, WaitStrategies.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
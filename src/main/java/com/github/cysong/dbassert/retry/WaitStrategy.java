@@ -0,0 +1,29 @@
+package com.github.cysong.dbassert.retry;
+
+/**
+ * strategy to wait between polls, may return early if a change of the table asserted is observed
+ *
+ * @author cysong
+ * @date 2022/9/16 10:00
+ **/
+public interface WaitStrategy extends AutoCloseable {
+
+    /**
+     * wait until a change observed or timeout
+     *
+     * @param mills max milliseconds to wait
+     * @author cysong
+     * @date 2022/9/16 10:02
+     **/
+    void await(long mills) throws InterruptedException;
+
+    /**
+     * release resources such as listeners registered
+     *
+     * @author cysong
+     * @date 2022/9/16 10:02
+     **/
+    @Override
+    default void close() {
+    }
+}
@@ -1,27 +1,57 @@
 package com.github.cysong.dbassert.sql;
 
 import com.github.cysong.dbassert.assertion.Assertion;
+import com.github.cysong.dbassert.constant.Comparator;
+import com.github.cysong.dbassert.constant.Constants;
+import com.github.cysong.dbassert.exception.ConfigurationException;
 import com.github.cysong.dbassert.expression.AggregateCondition;
+import com.github.cysong.dbassert.expression.Boundary;
 import com.github.cysong.dbassert.expression.Condition;
 import com.github.cysong.dbassert.expression.ListCondition;
+import com.github.cysong.dbassert.option.DbAssertOptions;
+import com.github.cysong.dbassert.utitls.Utils;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 public abstract class AbstractSqlBuilder implements SqlBuilder {
     protected Assertion assertion;
+    protected Dialect dialect;
     protected SqlResult result;
 
     AbstractSqlBuilder(Assertion assertion) {
         this.assertion = assertion;
+        this.dialect = DialectRegistry.getDialect(assertion);
         this.result = SqlResult.create();
-        parseSelectColumns();
     }
 
+    /**
+     * build sql or bind the template cached for assertions of the same shape
+     *
+     * @return com.github.cysong.dbassert.sql.SqlResult
+     * @author cysong
+     * @date 2022/9/20 14:40
+     **/
     @Override
     public SqlResult build() {
-        buildSql();
+        SqlTemplateCache cache = DbAssertOptions.getGlobal().getSqlTemplateCache();
+        if (cache.getMaxSize() == 0) {
+            parseSelectColumns();
+            buildSql();
+        } else {
+            String shape = SqlTemplate.getShape(dialect, assertion);
+            SqlTemplate template = cache.get(shape);
+            if (template != null) {
+                result = template.bind(assertion);
+            } else {
+                parseSelectColumns();
+                buildSql();
+                cache.put(shape, SqlTemplate.create(assertion, result));
+            }
+        }
+        bindParams();
         return result;
     }
 
@@ -65,10 +95,212 @@ public abstract class AbstractSqlBuilder implements SqlBuilder {
      **/
     protected abstract void buildSql();
 
+    /**
+     * set bind values of all sql from the values of assertion, sql must be built before
+     *
+     * @author cysong
+     * @date 2022/9/20 14:42
+     **/
+    protected abstract void bindParams();
+
     protected String getAggregateStatement(AggregateCondition con) {
         return con.getAggregate().getWrappedStatement(con.getColumnName(), getOpenQuote(), getCloseQuote());
     }
 
+    protected String getWindowAggregateStatement(AggregateCondition con) {
+        return con.getAggregate().getWindowStatement(con.getColumnName(), getOpenQuote(), getCloseQuote());
+    }
+
+    /**
+     * whether detail rows and aggregate values can be returned by a single query with window functions,
+     * otherwise a detail query and an aggregate query will be executed separately
+     *
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/1 10:30
+     **/
+    protected boolean isCombinable() {
+        if (!supportsWindowFunction() || Utils.isEmpty(result.getColumnSet())) {
+            return false;
+        }
+        if (result.hasPushdown() || result.getColumnSet().contains(Constants.COUNT_ROWS_LABEL)) {
+            return false;
+        }
+        if (Utils.isNotEmpty(result.getAggColumns())) {
+            for (List<AggregateCondition> conditions : result.getAggColumns().values()) {
+                for (AggregateCondition con : conditions) {
+                    if (!con.getAggregate().isWindowSupported()
+                            || result.getColumnSet().contains(con.getWrappedColumnLabel())) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * whether current database supports window functions such as count(*) over()
+     *
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/1 10:30
+     **/
+    protected boolean supportsWindowFunction() {
+        return dialect.isWindowFunctionSupported();
+    }
+
+    /**
+     * append violation count columns of conditions pushed down to the aggregate statement,
+     * conditions can not be pushed down are still evaluated by detail rows
+     *
+     * @param aggStatement select statement of aggregate sql
+     * @author cysong
+     * @date 2022/9/9 14:30
+     **/
+    protected void buildPushdownStatement(StringBuilder aggStatement) {
+        //sampled rows are evaluated one by one to count violations, nothing pushed down
+        if (!assertion.isPushdown() || assertion.isSampled() || Utils.isEmpty(result.getColumns())) {
+            return;
+        }
+        for (List<Condition> conditions : result.getColumns().values()) {
+            for (Condition con : conditions) {
+                String statement = getPushdownStatement(con, new ArrayList<>());
+                if (statement == null) {
+                    continue;
+                }
+                String label = Constants.PUSHDOWN_LABEL_PREFIX + (result.getPushdownColumns().size() + 1);
+                aggStatement.append(",sum(case when ").append(statement).append(" then 0 else 1 end) ").append(label);
+                result.addPushdownColumn(label, con);
+            }
+        }
+    }
+
+    /**
+     * ordered bind values of the violation count columns
+     *
+     * @return java.util.List<java.lang.Object>
+     * @author cysong
+     * @date 2022/9/20 14:45
+     **/
+    protected List<Object> bindPushdownParams() {
+        List<Object> params = new ArrayList<>();
+        for (Condition con : result.getPushdownColumns().values()) {
+            getPushdownStatement(con, params);
+        }
+        return params;
+    }
+
+    /**
+     * build sql expression which is true if the condition passes,
+     * null values are handled the same as {@link com.github.cysong.dbassert.assertion.ConditionTester}
+     *
+     * @param con    column condition
+     * @param params ordered bind values of the expression
+     * @return java.lang.String null if the condition can not be pushed down
+     * @author cysong
+     * @date 2022/9/9 14:30
+     **/
+    protected String getPushdownStatement(Condition con, List<Object> params) {
+        //conditions of sub types such as json property are evaluated by detail rows
+        if (con.getClass() != Condition.class) {
+            return null;
+        }
+        String column = quotedIdentifier(con.getColumnName());
+        Object expected = con.getExpected();
+        switch (con.getComparator()) {
+            case NULL:
+                return column + " is null";
+            case NOT_NULL:
+                return column + " is not null";
+            case EQUAL:
+                return isBindable(expected) ? column + "=" + bindFilterValue(expected, params) : null;
+            case NOT_EQUAL:
+                return isBindable(expected) ? "(" + column + " is null or " + column + "<>" + bindFilterValue(expected, params) + ")" : null;
+            case LESS_THAN:
+                return isBindable(expected) ? "(" + column + " is null or " + column + "<" + bindFilterValue(expected, params) + ")" : null;
+            case LESS_THAN_OR_EQUAL:
+                return isBindable(expected) ? "(" + column + " is null or " + column + "<=" + bindFilterValue(expected, params) + ")" : null;
+            case GREATER_THAN:
+                return isBindable(expected) ? column + ">" + bindFilterValue(expected, params) : null;
+            case GREATER_THAN_OR_EQUAL:
+                return isBindable(expected) ? column + ">=" + bindFilterValue(expected, params) : null;
+            case BETWEEN:
+                Boundary<?> boundary = (Boundary<?>) expected;
+                if (!isBindable(boundary.getMin()) || !isBindable(boundary.getMax())) {
+                    return null;
+                }
+                return column + (boundary.isExcludeMin() ? ">" : ">=") + bindFilterValue(boundary.getMin(), params)
+                        + " and " + column + (boundary.isExcludeMax() ? "<" : "<=") + bindFilterValue(boundary.getMax(), params);
+            case IN:
+            case NOT_IN:
+                if (!(expected instanceof Iterable)) {
+                    return null;
+                }
+                for (Object value : (Iterable<?>) expected) {
+                    if (!isBindable(value)) {
+                        return null;
+                    }
+                }
+                boolean in = con.getComparator() == Comparator.IN;
+                String values = bindFilterValue(expected, params);
+                if (values == null) {
+                    //nothing can be in an empty list
+                    return in ? "1=0" : "1=1";
+                }
+                return in ? column + " in " + values : "(" + column + " is null or " + column + " not in " + values + ")";
+            case CONTAINS:
+                return expected instanceof String ? getContainsStatement(column, bindFilterValue(expected, params)) + ">0" : null;
+            case NOT_CONTAIN:
+                return expected instanceof String ? getContainsStatement(column, bindFilterValue(expected, params)) + "=0" : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * position of substring in column value, 0 if not found and null if column value is null
+     *
+     * @param column      quoted column name
+     * @param placeholder placeholder of substring
+     * @return java.lang.String
+     * @author cysong
+     * @date 2022/9/9 14:30
+     **/
+    protected String getContainsStatement(String column, String placeholder) {
+        return "instr(" + column + "," + placeholder + ")";
+    }
+
+    private boolean isBindable(Object value) {
+        return value instanceof Number || value instanceof CharSequence || value instanceof Boolean;
+    }
+
+    /**
+     * key column to order and paginate rows of full scan, the primary key is used if not set
+     *
+     * @return java.lang.String
+     * @author cysong
+     * @date 2022/9/13 14:00
+     **/
+    protected String resolveScanKey() {
+        if (Utils.isNotBlank(assertion.getScanKey())) {
+            return assertion.getScanKey();
+        }
+        List<String> keys = new ArrayList<>();
+        try (ResultSet rs = assertion.getConn().getMetaData().getPrimaryKeys(assertion.getDatabase(), null, assertion.getTableName())) {
+            while (rs.next()) {
+                keys.add(rs.getString("COLUMN_NAME"));
+            }
+        } catch (SQLException e) {
+            throw new ConfigurationException("Failed to get primary key of table " + getFullTableName(), e);
+        }
+        if (keys.size() != 1) {
+            throw new ConfigurationException(String.format("Full scan requires a single column primary key of table %s, " +
+                    "or set a unique key column by fullScan(scanKey)", getFullTableName()));
+        }
+        return keys.get(0);
+    }
+
     protected String getFullTableName() {
         return assertion.getDatabase() == null ? assertion.getTableName() : assertion.getDatabase() + "." + assertion.getTableName();
     }
@@ -82,38 +314,35 @@ public abstract class AbstractSqlBuilder implements SqlBuilder {
     }
 
     protected String getOpenQuote() {
-        return "";
+        return dialect.getIdentifierQuote();
     }
 
     protected String getCloseQuote() {
-        return "";
+        return dialect.getIdentifierQuote();
     }
 
-    protected String wrapFilterValue(Object value) {
+    /**
+     * append placeholders of filter value to params, the values will be bound to the prepared statement
+     *
+     * @param value  filter value, values of a {@link Iterable} will be bound one by one
+     * @param params ordered bind values
+     * @return java.lang.String placeholder such as ? or (?,?,?), null if value is null or empty
+     * @author cysong
+     * @date 2022/9/2 14:20
+     **/
+    protected String bindFilterValue(Object value, List<Object> params) {
         if (value == null) {
             return null;
         }
-        if (value instanceof CharSequence) {
-            return wrapFilterStringValue((CharSequence) value);
-        }
         if (value instanceof Iterable) {
-            Iterator<?> it = ((Iterable<?>) value).iterator();
-            if (it.hasNext()) {
-                boolean isString = it.next() instanceof CharSequence;
-
-                return StreamSupport.stream(((Iterable<?>) value).spliterator(), false)
-                        .map(item -> isString ? wrapFilterStringValue((CharSequence) item) : String.valueOf(item))
-                        .collect(Collectors.joining(",", "(", ")"));
+            StringJoiner placeholders = new StringJoiner(",", "(", ")");
+            for (Object item : (Iterable<?>) value) {
+                placeholders.add("?");
+                params.add(item);
             }
-            return null;
-        }
-        return String.valueOf(value);
-    }
-
-    private String wrapFilterStringValue(CharSequence value) {
-        if (value == null) {
-            return null;
+            return placeholders.length() > 2 ? placeholders.toString() : null;
         }
-        return "'" + value + "'";
+        params.add(value instanceof CharSequence ? value.toString() : value);
+        return "?";
     }
 }
@@ -0,0 +1,149 @@
+package com.github.cysong.dbassert.sql;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+/**
+ * capabilities of a database resolved once from {@link DatabaseMetaData} and cached by {@link DialectRegistry}
+ *
+ * @author cysong
+ * @date 2022/9/20 10:00
+ **/
+public class Dialect {
+    private final String productName;
+    private final int majorVersion;
+    private final int minorVersion;
+    private final String identifierQuote;
+    private final boolean windowFunctionSupported;
+    private final LimitSyntax limitSyntax;
+    private final SqlBuilderFactory factory;
+
+    /**
+     * resolve dialect from database metadata
+     *
+     * @param metaData database metadata
+     * @param factory  sql builder factory matches the database product
+     * @return com.github.cysong.dbassert.sql.Dialect
+     * @author cysong
+     * @date 2022/9/20 10:05
+     **/
+    public static Dialect create(DatabaseMetaData metaData, SqlBuilderFactory factory) throws SQLException {
+        String productName = metaData.getDatabaseProductName();
+        int major = metaData.getDatabaseMajorVersion();
+        int minor = metaData.getDatabaseMinorVersion();
+        String quote = metaData.getIdentifierQuoteString();
+        //a space means quoting identifiers is not supported
+        if (quote == null || quote.trim().isEmpty()) {
+            quote = "";
+        }
+        return new Dialect(productName, major, minor, quote, isWindowFunctionSupported(productName, major, minor),
+                getLimitSyntax(productName), factory);
+    }
+
+    private Dialect(String productName, int majorVersion, int minorVersion, String identifierQuote,
+                    boolean windowFunctionSupported, LimitSyntax limitSyntax, SqlBuilderFactory factory) {
+        this.productName = productName;
+        this.majorVersion = majorVersion;
+        this.minorVersion = minorVersion;
+        this.identifierQuote = identifierQuote;
+        this.windowFunctionSupported = windowFunctionSupported;
+        this.limitSyntax = limitSyntax;
+        this.factory = factory;
+    }
+
+    private static boolean isWindowFunctionSupported(String productName, int major, int minor) {
+        switch (productName.toLowerCase()) {
+            case "sqlite":
+                //window functions are available since sqlite 3.25
+                return major > 3 || (major == 3 && minor >= 25);
+            case "mysql":
+                return major >= 8;
+            case "mariadb":
+                return major > 10 || (major == 10 && minor >= 2);
+            case "postgresql":
+            case "oracle":
+            case "microsoft sql server":
+            case "h2":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static LimitSyntax getLimitSyntax(String productName) {
+        switch (productName.toLowerCase()) {
+            case "oracle":
+            case "microsoft sql server":
+            case "apache derby":
+                return LimitSyntax.OFFSET_FETCH;
+            default:
+                return LimitSyntax.LIMIT_OFFSET;
+        }
+    }
+
+    public boolean isSqlite() {
+        return "Sqlite".equalsIgnoreCase(productName);
+    }
+
+    public boolean isMysql() {
+        return "MySQL".equalsIgnoreCase(productName);
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public int getMajorVersion() {
+        return majorVersion;
+    }
+
+    public int getMinorVersion() {
+        return minorVersion;
+    }
+
+    public String getIdentifierQuote() {
+        return identifierQuote;
+    }
+
+    public boolean isWindowFunctionSupported() {
+        return windowFunctionSupported;
+    }
+
+    public LimitSyntax getLimitSyntax() {
+        return limitSyntax;
+    }
+
+    public SqlBuilderFactory getFactory() {
+        return factory;
+    }
+
+    /**
+     * syntax to limit rows returned by a query
+     **/
+    public enum LimitSyntax {
+        /**
+         * limit 10 offset 20
+         **/
+        LIMIT_OFFSET,
+        /**
+         * offset 20 rows fetch next 10 rows only
+         **/
+        OFFSET_FETCH;
+
+        /**
+         * build limit statement appended to the end of query
+         *
+         * @param offset rows skipped
+         * @param size   max rows returned
+         * @return java.lang.String
+         * @author cysong
+         * @date 2022/9/20 10:10
+         **/
+        public String getStatement(long offset, long size) {
+            if (this == OFFSET_FETCH) {
+                return " offset " + offset + " rows fetch next " + size + " rows only";
+            }
+            return offset > 0 ? " limit " + size + " offset " + offset : " limit " + size;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.cysong.dbassert.sql;
+
+import com.github.cysong.dbassert.assertion.Assertion;
+import com.github.cysong.dbassert.exception.SqlBuilderNotFoundException;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * thread safe cache of {@link Dialect} by dbKey and by connection,
+ * database metadata is read only the first time a dbKey or a connection is seen
+ *
+ * @author cysong
+ * @date 2022/9/20 10:20
+ **/
+public class DialectRegistry {
+    private static final ServiceLoader<SqlBuilderFactory> loader = ServiceLoader.load(SqlBuilderFactory.class);
+    private static final Map<String, SqlBuilderFactory> FACTORY_MAP = new ConcurrentHashMap<>();
+    private static final Map<String, Dialect> DB_KEY_MAP = new ConcurrentHashMap<>();
+    /**
+     * connections not created by dbKey, entries are removed after connections are garbage collected
+     **/
+    private static final Map<Connection, Dialect> CONNECTION_MAP = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * get dialect of the database of assertion, cached by dbKey if assertion created by dbKey
+     *
+     * @param assertion assertion with connection
+     * @return com.github.cysong.dbassert.sql.Dialect
+     * @author cysong
+     * @date 2022/9/20 10:25
+     **/
+    public static Dialect getDialect(Assertion assertion) {
+        if (assertion.getDbKey() == null) {
+            return getDialect(assertion.getConn());
+        }
+        Dialect dialect = DB_KEY_MAP.get(assertion.getDbKey());
+        if (dialect == null) {
+            dialect = DB_KEY_MAP.computeIfAbsent(assertion.getDbKey(), key -> resolve(assertion.getConn()));
+        }
+        return dialect;
+    }
+
+    /**
+     * get dialect of the database of connection
+     *
+     * @param conn database connection
+     * @return com.github.cysong.dbassert.sql.Dialect
+     * @author cysong
+     * @date 2022/9/20 10:26
+     **/
+    public static Dialect getDialect(Connection conn) {
+        assert conn != null;
+        Dialect dialect = CONNECTION_MAP.get(conn);
+        if (dialect == null) {
+            dialect = resolve(conn);
+            CONNECTION_MAP.put(conn, dialect);
+        }
+        return dialect;
+    }
+
+    /**
+     * remove all cached dialects
+     *
+     * @author cysong
+     * @date 2022/9/20 10:27
+     **/
+    public static void clear() {
+        DB_KEY_MAP.clear();
+        CONNECTION_MAP.clear();
+    }
+
+    private static Dialect resolve(Connection conn) {
+        try {
+            DatabaseMetaData metaData = conn.getMetaData();
+            String dbProductName = metaData.getDatabaseProductName();
+            SqlBuilderFactory factory = FACTORY_MAP.get(dbProductName);
+            if (factory == null) {
+                factory = getSqlBuilderFactory(dbProductName);
+            }
+            return Dialect.create(metaData, factory);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private static synchronized SqlBuilderFactory getSqlBuilderFactory(String dbProductName) {
+        if (FACTORY_MAP.containsKey(dbProductName)) {
+            return FACTORY_MAP.get(dbProductName);
+        }
+        Iterator<SqlBuilderFactory> it = loader.iterator();
+        while (it.hasNext()) {
+            SqlBuilderFactory factory = it.next();
+            if (factory.matches(dbProductName)) {
+                FACTORY_MAP.put(dbProductName, factory);
+                return factory;
+            }
+        }
+        throw new SqlBuilderNotFoundException(String.format("SqlBuilderFactory for database %s not found", dbProductName));
+    }
+}
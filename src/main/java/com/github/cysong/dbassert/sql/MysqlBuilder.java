@@ -9,6 +9,10 @@ import com.github.cysong.dbassert.expression.Order;
 import com.github.cysong.dbassert.expression.TextFilter;
 import com.github.cysong.dbassert.utitls.Utils;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -25,43 +29,35 @@ public class MysqlBuilder extends AbstractSqlBuilder {
 
     @Override
     protected void buildSql() {
-        //select and where statements
+        if (assertion.isFullScan() || assertion.isSampled()) {
+            buildScanSql();
+            return;
+        }
+
+        //select and where statements, bind values are set by bindParams()
+        List<Object> params = new ArrayList<>();
         StringBuilder sb = new StringBuilder("select %s from ");
         sb.append(getQuotedFullTableName());
         if (Utils.isNotEmpty(assertion.getFilters())) {
             sb.append(" where 1");
             for (AbstractFilter filter : assertion.getFilters()) {
                 sb.append(" and ");
-                buildFilterStatement(filter, sb);
+                buildFilterStatement(filter, sb, params);
             }
         }
 
         //order statements
-        if (Utils.isNotEmpty(assertion.getSorts())) {
-            sb.append(" order by ");
-            assertion.getSorts().forEach(sort -> {
-                sb.append(sort.getOrderBy());
-                if (Order.DESC == sort.getOrder()) {
-                    sb.append(" desc");
-                }
-                sb.append(",");
-            });
-            sb.deleteCharAt(sb.length() - 1);
-        }
+        buildOrderStatement(sb);
 
         //limit statements
-        sb.append(" limit ");
-        if (assertion.getStartIndex() > 0) {
-            sb.append(assertion.getStartIndex()).append(",");
-        }
-        sb.append(assertion.getPageSize());
+        sb.append(dialect.getLimitSyntax().getStatement(assertion.getStartIndex(), assertion.getPageSize()));
 
         //build detail sql
+        String selectColumns = null;
         if (Utils.isNotEmpty(result.getColumnSet())) {
-            result.setDetailSql(String.format(sb.toString(),
-                    result.getColumnSet().stream().map(this::quotedIdentifier)
-                            .collect(Collectors.joining(","))
-            ));
+            selectColumns = result.getColumnSet().stream().map(this::quotedIdentifier)
+                    .collect(Collectors.joining(","));
+            result.setDetailSql(String.format(sb.toString(), selectColumns));
         }
 
         //build aggregate sql
@@ -70,8 +66,112 @@ public class MysqlBuilder extends AbstractSqlBuilder {
         if (Utils.isNotEmpty(result.getWrapAggColumns())) {
             aggStatement.append(",").append(String.join(",", result.getWrapAggColumns()));
         }
+        buildPushdownStatement(aggStatement);
         String aggSql = "select " + aggStatement + " from (" + (String.format(sb.toString(), "*")) + ") a";
         result.setAggregateSql(aggSql);
+
+        //build single round-trip sql, aggregate values are repeated on every detail row
+        if (isCombinable()) {
+            StringBuilder combined = new StringBuilder("select ");
+            combined.append(selectColumns);
+            combined.append(",count(*) over() ").append(Constants.COUNT_ROWS_LABEL);
+            if (Utils.isNotEmpty(result.getAggColumns())) {
+                result.getAggColumns().values().stream()
+                        .flatMap(List::stream)
+                        .map(this::getWindowAggregateStatement)
+                        .distinct()
+                        .forEach(statement -> combined.append(",").append(statement));
+            }
+            combined.append(" from (").append(String.format(sb.toString(), "*")).append(") a");
+            buildOrderStatement(combined);
+            result.setCombinedSql(combined.toString());
+        }
+    }
+
+    /**
+     * build keyset paginated sql to read all rows in chunks of page size ordered by the scan key,
+     * or the first row at or after random keys between the min and max key if sampled,
+     * aggregate values are calculated on all rows matched
+     *
+     * @author cysong
+     * @date 2022/9/13 14:10
+     **/
+    private void buildScanSql() {
+        String key = resolveScanKey();
+        //bind values are set by bindParams()
+        List<Object> params = new ArrayList<>();
+        StringBuilder where = new StringBuilder(" where 1");
+        if (Utils.isNotEmpty(assertion.getFilters())) {
+            for (AbstractFilter filter : assertion.getFilters()) {
+                where.append(" and ");
+                buildFilterStatement(filter, where, params);
+            }
+        }
+        String from = " from " + getQuotedFullTableName();
+
+        //build scan sql, the key column is always selected to locate the next chunk
+        if (Utils.isNotEmpty(result.getColumnSet())) {
+            Set<String> columns = new LinkedHashSet<>();
+            columns.add(key);
+            columns.addAll(result.getColumnSet());
+            String select = "select " + columns.stream().map(this::quotedIdentifier).collect(Collectors.joining(","));
+            String order = " order by " + quotedIdentifier(key) + dialect.getLimitSyntax().getStatement(0, assertion.getPageSize());
+            result.setScanKey(key);
+            result.setScanSql(select + from + where + order);
+            result.setNextScanSql(select + from + where + " and " + quotedIdentifier(key) + ">?" + order);
+            if (assertion.isSampled()) {
+                result.setSampleRangeSql("select min(" + quotedIdentifier(key) + "),max(" + quotedIdentifier(key) + ")" + from + where);
+                result.setSampleSql(select + from + where + " and " + quotedIdentifier(key) + ">=? order by " + quotedIdentifier(key)
+                        + dialect.getLimitSyntax().getStatement(0, 1));
+            }
+        }
+
+        //build aggregate sql without limit
+        StringBuilder aggStatement = new StringBuilder("count(*) ");
+        aggStatement.append(Constants.COUNT_ROWS_LABEL);
+        if (Utils.isNotEmpty(result.getWrapAggColumns())) {
+            aggStatement.append(",").append(String.join(",", result.getWrapAggColumns()));
+        }
+        buildPushdownStatement(aggStatement);
+        result.setAggregateSql("select " + aggStatement + from + where);
+    }
+
+    @Override
+    protected void bindParams() {
+        List<Object> params = new ArrayList<>();
+        if (Utils.isNotEmpty(assertion.getFilters())) {
+            StringBuilder where = new StringBuilder();
+            for (AbstractFilter filter : assertion.getFilters()) {
+                buildFilterStatement(filter, where, params);
+            }
+        }
+        if (result.getDetailSql() != null) {
+            result.setDetailParams(params);
+        }
+        if (result.getCombinedSql() != null) {
+            result.setCombinedParams(params);
+        }
+        if (result.getScanSql() != null) {
+            result.setScanParams(params);
+        }
+        //violation counts are selected before the where statements, so the bind values come first
+        List<Object> aggParams = bindPushdownParams();
+        aggParams.addAll(params);
+        result.setAggregateParams(aggParams);
+    }
+
+    private void buildOrderStatement(StringBuilder sb) {
+        if (Utils.isNotEmpty(assertion.getSorts())) {
+            sb.append(" order by ");
+            assertion.getSorts().forEach(sort -> {
+                sb.append(sort.getOrderBy());
+                if (Order.DESC == sort.getOrder()) {
+                    sb.append(" desc");
+                }
+                sb.append(",");
+            });
+            sb.deleteCharAt(sb.length() - 1);
+        }
     }
 
     @Override
@@ -89,58 +189,57 @@ public class MysqlBuilder extends AbstractSqlBuilder {
         return "`";
     }
 
-    private void buildFilterStatement(AbstractFilter filter, StringBuilder sb) {
+    private void buildFilterStatement(AbstractFilter filter, StringBuilder sb, List<Object> params) {
         if (filter instanceof TextFilter) {
             sb.append(((TextFilter) filter).getExpression());
         } else if (filter instanceof Filter) {
             Filter f = (Filter) filter;
-            sb.append(f.getColumnName());
-            String value = wrapFilterValue(f.getValue());
+            String value;
             switch (f.getComparator()) {
                 case EQUAL:
-                    sb.append("=").append(value);
+                    sb.append(f.getColumnName()).append("=").append(bindFilterValue(f.getValue(), params));
                     break;
                 case NOT_EQUAL:
-                    sb.append("!=").append(value);
+                    sb.append(f.getColumnName()).append("!=").append(bindFilterValue(f.getValue(), params));
                     break;
                 case NULL:
-                    sb.append(" is null");
+                    sb.append(f.getColumnName()).append(" is null");
                     break;
                 case NOT_NULL:
-                    sb.append(" is not null");
+                    sb.append(f.getColumnName()).append(" is not null");
                     break;
                 case IS_TRUE:
-                    sb.append("=").append("true");
+                    sb.append(f.getColumnName()).append("=").append("true");
                     break;
                 case IS_FALSE:
-                    sb.append("=").append("false");
+                    sb.append(f.getColumnName()).append("=").append("false");
                     break;
                 case IN:
-                    assert value != null;
-                    sb.append(" in ").append(value);
+                    value = bindFilterValue(f.getValue(), params);
+                    //nothing can be in an empty list
+                    sb.append(value == null ? "1=0" : f.getColumnName() + " in " + value);
                     break;
                 case NOT_IN:
-                    assert value != null;
-                    sb.append("not in ").append(value);
+                    value = bindFilterValue(f.getValue(), params);
+                    sb.append(value == null ? "1=1" : f.getColumnName() + " not in " + value);
+                    break;
                 case GREATER_THAN:
-                    sb.append(">").append(value);
+                    sb.append(f.getColumnName()).append(">").append(bindFilterValue(f.getValue(), params));
                     break;
                 case GREATER_THAN_OR_EQUAL:
-                    sb.append(">=").append(value);
+                    sb.append(f.getColumnName()).append(">=").append(bindFilterValue(f.getValue(), params));
                     break;
                 case LESS_THAN:
-                    sb.append("<").append(value);
+                    sb.append(f.getColumnName()).append("<").append(bindFilterValue(f.getValue(), params));
                     break;
                 case LESS_THAN_OR_EQUAL:
-                    sb.append("<=").append(value);
+                    sb.append(f.getColumnName()).append("<=").append(bindFilterValue(f.getValue(), params));
                     break;
                 case CONTAINS:
-                    value = "'%" + Utils.trim(value, '\'') + "%'";
-                    sb.append(" like ").append(value);
+                    sb.append(f.getColumnName()).append(" like ").append(bindFilterValue("%" + f.getValue() + "%", params));
                     break;
                 case NOT_CONTAIN:
-                    value = "'%" + Utils.trim(value, '\'') + "%'";
-                    sb.append(" not like ").append(value);
+                    sb.append(f.getColumnName()).append(" not like ").append(bindFilterValue("%" + f.getValue() + "%", params));
                     break;
                 default:
                     throw new ConfigurationException("Unsupported comparator:" + f.getComparator().name());
@@ -5,6 +5,8 @@ import com.github.cysong.dbassert.expression.Condition;
 import com.github.cysong.dbassert.expression.ListCondition;
 import com.github.cysong.dbassert.utitls.Utils;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -24,6 +26,36 @@ public class SqlResult {
     private List<String> wrapAggColumns;
     private String detailSql;
     private String aggregateSql;
+    /**
+     * detail rows and aggregate values in a single query, null if not supported by the database
+     **/
+    private String combinedSql;
+    /**
+     * ordered bind values of the placeholders in each sql
+     **/
+    private List<Object> detailParams = new ArrayList<>(0);
+    private List<Object> aggregateParams = new ArrayList<>(0);
+    private List<Object> combinedParams = new ArrayList<>(0);
+    /**
+     * conditions evaluated by database, map from label of violation count column in aggregate sql to condition
+     **/
+    private Map<String, Condition> pushdownColumns = new LinkedHashMap<>();
+    /**
+     * full scan sql of the first chunk and the next chunks after the last key read,
+     * bind values of the next chunks are scanParams followed by the last key
+     **/
+    private String scanKey;
+    private String scanSql;
+    private String nextScanSql;
+    private List<Object> scanParams = new ArrayList<>(0);
+    /**
+     * min and max scan key of rows matched to draw sample ranges, bind values are scanParams
+     **/
+    private String sampleRangeSql;
+    /**
+     * the first row at or after a random key, bind values are scanParams followed by the key
+     **/
+    private String sampleSql;
 
 
     public static SqlResult create() {
@@ -91,6 +123,117 @@ public class SqlResult {
         this.aggregateSql = aggregateSql;
     }
 
+    public String getCombinedSql() {
+        return combinedSql;
+    }
+
+    public void setCombinedSql(String combinedSql) {
+        assert Utils.isNotBlank(combinedSql);
+        this.combinedSql = combinedSql;
+    }
+
+    public List<Object> getDetailParams() {
+        return detailParams;
+    }
+
+    public void setDetailParams(List<Object> detailParams) {
+        assert detailParams != null;
+        this.detailParams = detailParams;
+    }
+
+    public List<Object> getAggregateParams() {
+        return aggregateParams;
+    }
+
+    public void setAggregateParams(List<Object> aggregateParams) {
+        assert aggregateParams != null;
+        this.aggregateParams = aggregateParams;
+    }
+
+    public List<Object> getCombinedParams() {
+        return combinedParams;
+    }
+
+    public void setCombinedParams(List<Object> combinedParams) {
+        assert combinedParams != null;
+        this.combinedParams = combinedParams;
+    }
+
+    public Map<String, Condition> getPushdownColumns() {
+        return pushdownColumns;
+    }
+
+    public void addPushdownColumn(String label, Condition condition) {
+        assert Utils.isNotBlank(label) && condition != null;
+        this.pushdownColumns.put(label, condition);
+    }
+
+    public boolean hasPushdown() {
+        return !this.pushdownColumns.isEmpty();
+    }
+
+    public String getScanKey() {
+        return scanKey;
+    }
+
+    public void setScanKey(String scanKey) {
+        assert Utils.isNotBlank(scanKey);
+        this.scanKey = scanKey;
+    }
+
+    public String getScanSql() {
+        return scanSql;
+    }
+
+    public void setScanSql(String scanSql) {
+        assert Utils.isNotBlank(scanSql);
+        this.scanSql = scanSql;
+    }
+
+    public String getNextScanSql() {
+        return nextScanSql;
+    }
+
+    public void setNextScanSql(String nextScanSql) {
+        assert Utils.isNotBlank(nextScanSql);
+        this.nextScanSql = nextScanSql;
+    }
+
+    public List<Object> getScanParams() {
+        return scanParams;
+    }
+
+    public void setScanParams(List<Object> scanParams) {
+        assert scanParams != null;
+        this.scanParams = scanParams;
+    }
+
+    public boolean hasScanSql() {
+        return this.scanSql != null;
+    }
+
+    public String getSampleRangeSql() {
+        return sampleRangeSql;
+    }
+
+    public void setSampleRangeSql(String sampleRangeSql) {
+        assert Utils.isNotBlank(sampleRangeSql);
+        this.sampleRangeSql = sampleRangeSql;
+    }
+
+    public String getSampleSql() {
+        return sampleSql;
+    }
+
+    public void setSampleSql(String sampleSql) {
+        assert Utils.isNotBlank(sampleSql);
+        this.sampleSql = sampleSql;
+    }
+
+    public boolean hasSampleSql() {
+        return this.sampleRangeSql != null;
+    }
+
     public boolean hasNormalSql() {
         return this.detailSql != null;
     }
@@ -98,4 +241,8 @@ public class SqlResult {
     public boolean hasCountSql() {
         return this.aggregateSql != null;
     }
+
+    public boolean hasCombinedSql() {
+        return this.combinedSql != null;
+    }
 }
@@ -0,0 +1,225 @@
+package com.github.cysong.dbassert.sql;
+
+import com.github.cysong.dbassert.assertion.Assertion;
+import com.github.cysong.dbassert.constant.Sort;
+import com.github.cysong.dbassert.expression.*;
+import com.github.cysong.dbassert.utitls.Utils;
+
+import java.util.*;
+
+/**
+ * sql and column groupings built for an assertion shape, conditions are kept as indexes of the assertion verifies,
+ * so the template can be bound to any assertion of the same shape without building sql again
+ *
+ * @author cysong
+ * @date 2022/9/20 14:00
+ **/
+public class SqlTemplate {
+    private final Map<String, int[]> columns;
+    private final Map<String, int[]> listColumns;
+    private final Set<String> columnSet;
+    private final Map<String, int[]> aggColumns;
+    private final List<String> wrapAggColumns;
+    private final Map<String, Integer> pushdownColumns;
+    private final String detailSql;
+    private final String aggregateSql;
+    private final String combinedSql;
+    private final String scanKey;
+    private final String scanSql;
+    private final String nextScanSql;
+    private final String sampleRangeSql;
+    private final String sampleSql;
+
+    /**
+     * create template from the sql result built for the assertion
+     *
+     * @param assertion assertion the sql result built for
+     * @param result    sql result without bind values
+     * @return com.github.cysong.dbassert.sql.SqlTemplate
+     * @author cysong
+     * @date 2022/9/20 14:05
+     **/
+    public static SqlTemplate create(Assertion assertion, SqlResult result) {
+        return new SqlTemplate(assertion, result);
+    }
+
+    private SqlTemplate(Assertion assertion, SqlResult result) {
+        Map<Condition, Integer> indexes = new IdentityHashMap<>();
+        if (assertion.getVerifies() != null) {
+            for (int i = 0; i < assertion.getVerifies().size(); i++) {
+                indexes.put(assertion.getVerifies().get(i), i);
+            }
+        }
+        this.columns = toIndexes(result.getColumns(), indexes);
+        this.listColumns = toIndexes(result.getListColumns(), indexes);
+        this.aggColumns = toIndexes(result.getAggColumns(), indexes);
+        this.columnSet = result.getColumnSet() == null ? null : Collections.unmodifiableSet(new HashSet<>(result.getColumnSet()));
+        this.wrapAggColumns = result.getWrapAggColumns() == null ? null : Collections.unmodifiableList(new ArrayList<>(result.getWrapAggColumns()));
+        this.pushdownColumns = new LinkedHashMap<>();
+        result.getPushdownColumns().forEach((label, con) -> pushdownColumns.put(label, indexes.get(con)));
+        this.detailSql = result.getDetailSql();
+        this.aggregateSql = result.getAggregateSql();
+        this.combinedSql = result.getCombinedSql();
+        this.scanKey = result.getScanKey();
+        this.scanSql = result.getScanSql();
+        this.nextScanSql = result.getNextScanSql();
+        this.sampleRangeSql = result.getSampleRangeSql();
+        this.sampleSql = result.getSampleSql();
+    }
+
+    /**
+     * create sql result of the assertion from template, the bind values are not set
+     *
+     * @param assertion assertion of the same shape
+     * @return com.github.cysong.dbassert.sql.SqlResult
+     * @author cysong
+     * @date 2022/9/20 14:06
+     **/
+    public SqlResult bind(Assertion assertion) {
+        List<Condition> verifies = assertion.getVerifies();
+        SqlResult result = SqlResult.create();
+        result.setColumns(toConditions(columns, verifies));
+        result.setListColumns(toConditions(listColumns, verifies));
+        result.setAggColumns(toConditions(aggColumns, verifies));
+        result.setColumnSet(columnSet);
+        result.setWrapAggColumns(wrapAggColumns);
+        pushdownColumns.forEach((label, index) -> result.addPushdownColumn(label, verifies.get(index)));
+        if (detailSql != null) {
+            result.setDetailSql(detailSql);
+        }
+        if (aggregateSql != null) {
+            result.setAggregateSql(aggregateSql);
+        }
+        if (combinedSql != null) {
+            result.setCombinedSql(combinedSql);
+        }
+        if (scanSql != null) {
+            result.setScanKey(scanKey);
+            result.setScanSql(scanSql);
+            result.setNextScanSql(nextScanSql);
+        }
+        if (sampleRangeSql != null) {
+            result.setSampleRangeSql(sampleRangeSql);
+            result.setSampleSql(sampleSql);
+        }
+        return result;
+    }
+
+    /**
+     * normalized shape of assertion, assertions of the same shape get the same sql with different bind values
+     *
+     * @param dialect   dialect of database
+     * @param assertion assertion
+     * @return java.lang.String
+     * @author cysong
+     * @date 2022/9/20 14:10
+     **/
+    public static String getShape(Dialect dialect, Assertion assertion) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(dialect.getFactory().getClass().getName()).append('|')
+                .append(dialect.getProductName()).append(dialect.getMajorVersion()).append('.').append(dialect.getMinorVersion());
+        appendName(sb.append("|t:"), assertion.getDatabase());
+        appendName(sb.append('.'), assertion.getTableName());
+        sb.append('|').append(assertion.getStartIndex()).append(',').append(assertion.getPageSize())
+                .append(',').append(assertion.isPushdown()).append(',').append(assertion.isFullScan())
+                .append(',').append(assertion.isSampled());
+        appendName(sb.append(','), assertion.getScanKey());
+        if (Utils.isNotEmpty(assertion.getFilters())) {
+            for (AbstractFilter filter : assertion.getFilters()) {
+                if (filter instanceof TextFilter) {
+                    appendName(sb.append("|w:"), ((TextFilter) filter).getExpression());
+                } else if (filter instanceof Filter) {
+                    Filter f = (Filter) filter;
+                    appendName(sb.append("|f:"), f.getColumnName());
+                    sb.append(f.getComparator().name());
+                    appendValueShape(sb, f.getValue());
+                } else {
+                    sb.append("|").append(filter.getClass().getName());
+                }
+            }
+        }
+        if (Utils.isNotEmpty(assertion.getSorts())) {
+            for (Sort sort : assertion.getSorts()) {
+                appendName(sb.append("|s:"), sort.getOrderBy());
+                sb.append(sort.getOrder());
+            }
+        }
+        if (Utils.isNotEmpty(assertion.getVerifies())) {
+            for (Condition con : assertion.getVerifies()) {
+                sb.append("|v:").append(con.getClass().getSimpleName());
+                appendName(sb.append(':'), con.getColumnName());
+                sb.append(con.getComparator().name());
+                if (con instanceof AggregateCondition) {
+                    sb.append(':').append(((AggregateCondition) con).getAggregate().name());
+                }
+                //only the expected values pushed down are part of sql
+                if (assertion.isPushdown() && con.getClass() == Condition.class) {
+                    appendValueShape(sb, con.getExpected());
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendName(StringBuilder sb, String name) {
+        if (name == null) {
+            sb.append('-');
+        } else {
+            sb.append(name.length()).append(':').append(name);
+        }
+    }
+
+    /**
+     * values affect sql by null, bindable type, size of list and exclusive flags of boundary
+     **/
+    private static void appendValueShape(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append('n');
+        } else if (value instanceof Boundary) {
+            Boundary<?> boundary = (Boundary<?>) value;
+            sb.append('r');
+            appendValueShape(sb, boundary.getMin());
+            appendValueShape(sb, boundary.getMax());
+            sb.append(boundary.isExcludeMin() ? 'x' : 'i').append(boundary.isExcludeMax() ? 'x' : 'i');
+        } else if (value instanceof Iterable) {
+            int size = 0;
+            boolean bindable = true;
+            for (Object item : (Iterable<?>) value) {
+                size++;
+                bindable &= isBindable(item);
+            }
+            sb.append('l').append(size).append(bindable ? 'b' : 'o');
+        } else {
+            sb.append(isBindable(value) ? 'b' : 'o');
+        }
+    }
+
+    private static boolean isBindable(Object value) {
+        return value instanceof Number || value instanceof CharSequence || value instanceof Boolean;
+    }
+
+    private static <T extends Condition> Map<String, int[]> toIndexes(Map<String, List<T>> map, Map<Condition, Integer> indexes) {
+        if (map == null) {
+            return null;
+        }
+        Map<String, int[]> result = new LinkedHashMap<>(map.size());
+        map.forEach((col, conditions) -> result.put(col, conditions.stream().mapToInt(indexes::get).toArray()));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Condition> Map<String, List<T>> toConditions(Map<String, int[]> map, List<Condition> verifies) {
+        if (map == null) {
+            return null;
+        }
+        Map<String, List<T>> result = new LinkedHashMap<>(map.size());
+        map.forEach((col, indexes) -> {
+            List<T> conditions = new ArrayList<>(indexes.length);
+            for (int index : indexes) {
+                conditions.add((T) verifies.get(index));
+            }
+            result.put(col, conditions);
+        });
+        return result;
+    }
+}
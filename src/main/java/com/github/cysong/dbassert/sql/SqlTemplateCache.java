@@ -0,0 +1,77 @@
+package com.github.cysong.dbassert.sql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * bounded LRU cache of {@link SqlTemplate} keyed by the normalized assertion shape
+ * {@link SqlTemplate#getShape(Dialect, com.github.cysong.dbassert.assertion.Assertion)}
+ *
+ * @author cysong
+ * @date 2022/9/20 14:30
+ **/
+public class SqlTemplateCache {
+    private final int maxSize;
+    private final LinkedHashMap<String, SqlTemplate> cache;
+    private long hits;
+    private long misses;
+
+    public static SqlTemplateCache create(int maxSize) {
+        return new SqlTemplateCache(maxSize);
+    }
+
+    private SqlTemplateCache(int maxSize) {
+        assert maxSize >= 0;
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<String, SqlTemplate>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SqlTemplate> eldest) {
+                return size() > SqlTemplateCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * get template of the shape
+     *
+     * @param shape normalized assertion shape
+     * @return com.github.cysong.dbassert.sql.SqlTemplate null if not cached
+     * @author cysong
+     * @date 2022/9/20 14:32
+     **/
+    public synchronized SqlTemplate get(String shape) {
+        SqlTemplate template = cache.get(shape);
+        if (template != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return template;
+    }
+
+    public synchronized void put(String shape, SqlTemplate template) {
+        if (maxSize > 0) {
+            cache.put(shape, template);
+        }
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
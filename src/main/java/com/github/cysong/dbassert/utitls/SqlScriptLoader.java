@@ -0,0 +1,301 @@
+package com.github.cysong.dbassert.utitls;
+
+import com.github.cysong.dbassert.constant.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * load sql script by statements streamed from {@link SqlScriptReader}
+ * <p>
+ * Runs of inserts into the same table and columns are executed in jdbc batches. Rows are committed every
+ * commit interval, except between explicit transaction statements(begin/start transaction and commit/rollback)
+ * of the script, which are committed or rolled back as written.
+ * <p>
+ * If auto commit of the connection is disabled by the caller, the script joins the transaction of the caller:
+ * nothing is committed, and a failed script or a rollback of the script only rolls back to a savepoint
+ * set before, so changes of the caller and savepoints set by the caller are kept.
+ *
+ * @author cysong
+ * @date 2022/9/27 11:00
+ **/
+public class SqlScriptLoader {
+    private static final Logger log = LoggerFactory.getLogger(SqlScriptLoader.class);
+    private static final Pattern INSERT_SHAPE = Pattern.compile("^(insert\\s+(or\\s+\\w+\\s+|ignore\\s+)?into\\s+.+?)\\s*values\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    /**
+     * some drivers report rows changed by the last dml as the update count of ddl, so rows are only counted for dml
+     **/
+    private static final Pattern DML = Pattern.compile("^(insert|update|delete|replace|merge)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BEGIN = Pattern.compile("^(begin|start)(\\s+(deferred|immediate|exclusive))?(\\s+(transaction|work))?$",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern COMMIT = Pattern.compile("^(commit|end)(\\s+(transaction|work))?$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ROLLBACK = Pattern.compile("^rollback(\\s+(transaction|work))?$", Pattern.CASE_INSENSITIVE);
+    private final Connection conn;
+    private int batchSize = Constants.SCRIPT_BATCH_SIZE;
+    private int commitInterval = Constants.SCRIPT_COMMIT_INTERVAL;
+
+    private Statement statement;
+    private String shape;
+    private int batched;
+    private long uncommitted;
+    private boolean inTransaction;
+    /**
+     * savepoints set before the script and before the explicit transaction of the script,
+     * only if the script joins the transaction of the caller
+     **/
+    private Savepoint savepoint;
+    private Savepoint transactionStart;
+    private Stats stats;
+
+    public static SqlScriptLoader create(Connection conn) {
+        assert conn != null;
+        return new SqlScriptLoader(conn);
+    }
+
+    private SqlScriptLoader(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * max inserts executed in a jdbc batch
+     *
+     * @param batchSize batch size, 1 to disable batching
+     * @return com.github.cysong.dbassert.utitls.SqlScriptLoader
+     * @author cysong
+     * @date 2022/9/27 11:05
+     **/
+    public SqlScriptLoader batchSize(int batchSize) {
+        assert batchSize > 0;
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * rows changed before commit outside of explicit transactions
+     *
+     * @param commitInterval rows changed, 0 to commit once at the end of script
+     * @return com.github.cysong.dbassert.utitls.SqlScriptLoader
+     * @author cysong
+     * @date 2022/9/27 11:05
+     **/
+    public SqlScriptLoader commitInterval(int commitInterval) {
+        assert commitInterval >= 0;
+        this.commitInterval = commitInterval;
+        return this;
+    }
+
+    /**
+     * load the script, statements not committed are rolled back if fails, the input stream is closed when done.
+     * Nothing is committed if auto commit is disabled by the caller
+     *
+     * @param is input stream of script in utf-8
+     * @return com.github.cysong.dbassert.utitls.SqlScriptLoader.Stats
+     * @author cysong
+     * @date 2022/9/27 11:10
+     **/
+    public Stats load(InputStream is) {
+        stats = new Stats();
+        long start = System.currentTimeMillis();
+        boolean autoCommit;
+        try {
+            autoCommit = conn.getAutoCommit();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        try (SqlScriptReader reader = SqlScriptReader.create(new InputStreamReader(is, StandardCharsets.UTF_8),
+                SqlUtils.isMysql(conn));
+             Statement statement = conn.createStatement()) {
+            this.statement = statement;
+            if (autoCommit) {
+                conn.setAutoCommit(false);
+            } else {
+                savepoint = conn.setSavepoint("dbassert_script");
+            }
+            String sql;
+            while ((sql = reader.next()) != null) {
+                stats.statements++;
+                execute(sql);
+            }
+            flush();
+            commit();
+            releaseSavepoint();
+        } catch (SQLException | IOException e) {
+            rollback();
+            throw new RuntimeException(e);
+        } finally {
+            this.statement = null;
+            this.savepoint = null;
+            this.transactionStart = null;
+            if (autoCommit) {
+                restoreAutoCommit();
+            }
+            stats.elapsed = System.currentTimeMillis() - start;
+        }
+        log.info("Script loaded: {}", stats);
+        return stats;
+    }
+
+    private void execute(String sql) throws SQLException {
+        if (BEGIN.matcher(sql).matches()) {
+            flush();
+            commit();
+            inTransaction = true;
+            if (savepoint != null) {
+                transactionStart = conn.setSavepoint("dbassert_script_transaction");
+            }
+            return;
+        }
+        if (COMMIT.matcher(sql).matches()) {
+            flush();
+            commit();
+            inTransaction = false;
+            transactionStart = null;
+            return;
+        }
+        if (ROLLBACK.matcher(sql).matches()) {
+            statement.clearBatch();
+            batched = 0;
+            shape = null;
+            if (savepoint == null) {
+                conn.rollback();
+            } else {
+                conn.rollback(transactionStart != null ? transactionStart : savepoint);
+            }
+            uncommitted = 0;
+            inTransaction = false;
+            transactionStart = null;
+            return;
+        }
+        Matcher matcher = INSERT_SHAPE.matcher(sql);
+        if (batchSize > 1 && matcher.lookingAt()) {
+            String insertShape = matcher.group(1).replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+            if (!insertShape.equals(shape)) {
+                flush();
+                shape = insertShape;
+            }
+            statement.addBatch(sql);
+            if (++batched >= batchSize) {
+                flush();
+            }
+        } else {
+            flush();
+            statement.execute(sql);
+            if (DML.matcher(sql).lookingAt()) {
+                addRows(Math.max(0, statement.getUpdateCount()));
+            }
+        }
+        if (!inTransaction && commitInterval > 0 && uncommitted >= commitInterval) {
+            flush();
+            commit();
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (batched == 0) {
+            return;
+        }
+        int[] counts = statement.executeBatch();
+        statement.clearBatch();
+        stats.batches++;
+        for (int count : counts) {
+            //rows are unknown if the driver rewrites the batch
+            addRows(count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, count));
+        }
+        batched = 0;
+        shape = null;
+    }
+
+    private void addRows(long rows) {
+        stats.rows += rows;
+        uncommitted += rows;
+    }
+
+    /**
+     * changes are left to the caller if the script joins the transaction of the caller
+     **/
+    private void commit() throws SQLException {
+        if (savepoint == null) {
+            conn.commit();
+        }
+        uncommitted = 0;
+    }
+
+    private void rollback() {
+        try {
+            if (savepoint == null) {
+                conn.rollback();
+            } else {
+                conn.rollback(savepoint);
+            }
+        } catch (SQLException e) {
+            log.warn("Rollback script fail:{}", e.getMessage());
+        }
+    }
+
+    private void releaseSavepoint() {
+        if (savepoint == null) {
+            return;
+        }
+        try {
+            conn.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            log.warn("Release savepoint fail:{}", e.getMessage());
+        }
+    }
+
+    private void restoreAutoCommit() {
+        try {
+            conn.setAutoCommit(true);
+        } catch (SQLException e) {
+            log.warn("Restore auto commit fail:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * statistics of script loaded
+     **/
+    public static class Stats {
+        private long statements;
+        private long rows;
+        private long batches;
+        private long elapsed;
+
+        public long getStatements() {
+            return statements;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        public long getRowsPerSecond() {
+            return rows * 1000 / Math.max(1, elapsed);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d statements, %d rows in %d batches, %dms, %d rows/s",
+                    statements, rows, batches, elapsed, getRowsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.cysong.dbassert.utitls;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * read statements of sql script one by one without loading the whole script
+ * <p>
+ * Statements are separated by semicolons outside of quoted strings, quoted identifiers, comments and
+ * dollar quoted strings(like $$...$$ or $tag$...$tag$). Comments are removed from statements.
+ *
+ * @author cysong
+ * @date 2022/9/27 10:10
+ **/
+public class SqlScriptReader implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+    private final Reader reader;
+    /**
+     * backslash escapes the next character in quoted strings, such as mysql
+     **/
+    private final boolean backslashEscapes;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int pushback = -1;
+
+    public static SqlScriptReader create(Reader reader, boolean backslashEscapes) {
+        assert reader != null;
+        return new SqlScriptReader(reader, backslashEscapes);
+    }
+
+    private SqlScriptReader(Reader reader, boolean backslashEscapes) {
+        this.reader = reader;
+        this.backslashEscapes = backslashEscapes;
+    }
+
+    /**
+     * read the next statement
+     *
+     * @return java.lang.String statement without the trailing semicolon and comments, null if no more statements
+     * @author cysong
+     * @date 2022/9/27 10:15
+     **/
+    public String next() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+            if (ch == ';') {
+                String statement = sb.toString().trim();
+                if (!statement.isEmpty()) {
+                    return statement;
+                }
+                sb.setLength(0);
+            } else if (ch == '\'' || ch == '"' || ch == '`') {
+                sb.append(ch);
+                readQuoted(sb, ch);
+            } else if (ch == '-' && peek() == '-') {
+                skipLineComment();
+                sb.append('\n');
+            } else if (ch == '/' && peek() == '*') {
+                read();
+                skipBlockComment();
+                sb.append(' ');
+            } else if (ch == '$' && !endsWithIdentifier(sb)) {
+                sb.append(ch);
+                readDollarQuoted(sb);
+            } else {
+                sb.append(ch);
+            }
+        }
+        String statement = sb.toString().trim();
+        return statement.isEmpty() ? null : statement;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readQuoted(StringBuilder sb, char quote) throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+            sb.append(ch);
+            if (ch == '\\' && backslashEscapes && quote != '`') {
+                c = read();
+                if (c != -1) {
+                    sb.append((char) c);
+                }
+            } else if (ch == quote) {
+                //doubled quote is an escaped quote
+                if (peek() != quote) {
+                    return;
+                }
+                sb.append((char) read());
+            }
+        }
+    }
+
+    /**
+     * dollar quoted string is started by $tag$, tag is empty or an identifier not starting with a digit,
+     * otherwise the dollar sign is a normal character such as a positional parameter($1)
+     **/
+    private void readDollarQuoted(StringBuilder sb) throws IOException {
+        int tagStart = sb.length() - 1;
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+            if (ch == '$') {
+                sb.append(ch);
+                break;
+            }
+            boolean first = sb.length() == tagStart + 1;
+            if (!Character.isLetter(ch) && ch != '_' && (first || !Character.isDigit(ch))) {
+                unread(c);
+                return;
+            }
+            sb.append(ch);
+        }
+        if (c == -1) {
+            return;
+        }
+        String delimiter = sb.substring(tagStart);
+        while ((c = read()) != -1) {
+            sb.append((char) c);
+            if (c == '$' && sb.length() - tagStart >= delimiter.length() * 2
+                    && sb.lastIndexOf(delimiter) == sb.length() - delimiter.length()) {
+                return;
+            }
+        }
+    }
+
+    private void skipLineComment() throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != '\n') {
+            //skip
+        }
+    }
+
+    private void skipBlockComment() throws IOException {
+        int c;
+        int previous = -1;
+        while ((c = read()) != -1) {
+            if (previous == '*' && c == '/') {
+                return;
+            }
+            previous = c;
+        }
+    }
+
+    private static boolean endsWithIdentifier(StringBuilder sb) {
+        if (sb.length() == 0) {
+            return false;
+        }
+        char last = sb.charAt(sb.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_';
+    }
+
+    private int peek() throws IOException {
+        int c = read();
+        unread(c);
+        return c;
+    }
+
+    private void unread(int c) {
+        pushback = c;
+    }
+
+    private int read() throws IOException {
+        if (pushback != -1) {
+            int c = pushback;
+            pushback = -1;
+            return c;
+        }
+        if (position >= limit) {
+            limit = reader.read(buffer, 0, BUFFER_SIZE);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
@@ -1,10 +1,14 @@
 package com.github.cysong.dbassert.utitls;
 
+import com.github.cysong.dbassert.datasource.ResultCache;
+import com.github.cysong.dbassert.option.DbAssertOptions;
+
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.*;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -17,27 +21,27 @@ import java.util.function.Function;
 public class SqlUtils {
 
     /**
-     * load input stream to database as sql script
+     * load input stream to database as sql script by {@link SqlScriptLoader} with batch size and commit interval
+     * of global options, rows cached by the result cache are all dropped
      *
      * @param conn data connection
-     * @param is   input stream
+     * @param is   input stream in utf-8
+     * @return com.github.cysong.dbassert.utitls.SqlScriptLoader.Stats
      * @author cysong
      * @date 2022/8/24 10:20
      **/
-    public static void loadSqlScript(Connection conn, InputStream is) {
+    public static SqlScriptLoader.Stats loadSqlScript(Connection conn, InputStream is) {
         try {
-            String script = Utils.readInputStreamAsString(is);
-            String[] sqlList = script.split(";");
-            for (String sql : sqlList) {
-                if (Utils.isNotBlank(sql)) {
-                    conn.prepareStatement(sql).executeUpdate();
-                }
-            }
-            if (!conn.getAutoCommit()) {
-                conn.commit();
+            DbAssertOptions options = DbAssertOptions.getGlobal();
+            return SqlScriptLoader.create(conn)
+                    .batchSize(options.getScriptBatchSize())
+                    .commitInterval(options.getScriptCommitInterval())
+                    .load(is);
+        } finally {
+            ResultCache resultCache = DbAssertOptions.getGlobal().getResultCache();
+            if (resultCache != null) {
+                resultCache.clear();
             }
-        } catch (SQLException | IOException e) {
-            throw new RuntimeException(e);
         }
     }
 
@@ -54,6 +58,11 @@ public class SqlUtils {
             conn.prepareStatement(String.format("drop table if exists %s", tableName)).executeUpdate();
         } catch (SQLException e) {
             throw new RuntimeException(e);
+        } finally {
+            ResultCache resultCache = DbAssertOptions.getGlobal().getResultCache();
+            if (resultCache != null) {
+                resultCache.invalidateTable(tableName);
+            }
         }
     }
 
@@ -114,6 +123,35 @@ public class SqlUtils {
         return "Sqlite".equalsIgnoreCase(getDatabaseProductName(conn));
     }
 
+    /**
+     * whether is mysql database base on product name
+     *
+     * @param conn database connection
+     * @return boolean
+     * @author cysong
+     * @date 2022/9/27 11:20
+     **/
+    public static boolean isMysql(Connection conn) {
+        return "MySQL".equalsIgnoreCase(getDatabaseProductName(conn));
+    }
+
+    /**
+     * bind ordered values to the placeholders of prepared statement
+     *
+     * @param ps     prepared statement
+     * @param params ordered bind values
+     * @author cysong
+     * @date 2022/9/2 15:40
+     **/
+    public static void setParameters(PreparedStatement ps, List<Object> params) throws SQLException {
+        if (params == null) {
+            return;
+        }
+        for (int i = 0; i < params.size(); i++) {
+            ps.setObject(i + 1, params.get(i));
+        }
+    }
+
     /**
      * 将resultSet当前行的数据转为map
      *
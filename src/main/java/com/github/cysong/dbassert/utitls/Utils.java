@@ -61,6 +61,8 @@ public class Utils {
         try {
             TimeUnit.MILLISECONDS.sleep(milliseconds);
         } catch (InterruptedException e) {
+            //keep interrupt status for the caller
+            Thread.currentThread().interrupt();
         }
     }
 
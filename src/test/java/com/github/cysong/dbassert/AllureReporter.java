@@ -1,10 +1,17 @@
 package com.github.cysong.dbassert;
 
+import com.github.cysong.dbassert.report.AttachmentWriter;
 import com.github.cysong.dbassert.report.Reporter;
 import com.github.cysong.dbassert.report.Status;
 import io.qameta.allure.Allure;
 import io.qameta.allure.model.StepResult;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.UUID;
 
 import static io.qameta.allure.util.ResultsUtils.getStatus;
@@ -55,6 +62,34 @@ public class AllureReporter implements Reporter {
         Allure.addAttachment(name, type, content, extension);
     }
 
+    @Override
+    public boolean isBinaryAttachmentSupported() {
+        return true;
+    }
+
+    /**
+     * content is written to a temporary file and copied to allure results, so it never has to fit in memory
+     **/
+    @Override
+    public void addAttachment(String name, String type, String extension, AttachmentWriter writer) {
+        Path file = null;
+        try {
+            file = Files.createTempFile("dbassert", "." + extension);
+            try (OutputStream out = Files.newOutputStream(file)) {
+                writer.write(out);
+            }
+            try (InputStream in = Files.newInputStream(file)) {
+                Allure.addAttachment(name, type, in, extension);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (file != null) {
+                file.toFile().delete();
+            }
+        }
+    }
+
     private io.qameta.allure.model.Status mapStatus(Status status) {
         return io.qameta.allure.model.Status.fromValue(status.value);
     }
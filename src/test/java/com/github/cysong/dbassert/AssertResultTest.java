@@ -0,0 +1,78 @@
+package com.github.cysong.dbassert;
+
+import com.github.cysong.dbassert.assertion.AssertResult;
+import com.github.cysong.dbassert.assertion.ConditionSummary;
+import com.github.cysong.dbassert.constant.Comparator;
+import com.github.cysong.dbassert.constant.RecordPolicy;
+import com.github.cysong.dbassert.expression.Condition;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AssertResult record policy testcases
+ *
+ * @author cysong
+ * @date 2022/9/22 11:00
+ **/
+public class AssertResultTest {
+
+    @Test
+    public void testAll() {
+        AssertResult result = record(AssertResult.create(RecordPolicy.ALL, 0));
+        Assert.assertEquals(result.getDetails().size(), 100);
+        Assert.assertTrue(result.getSummaries().isEmpty());
+    }
+
+    @Test
+    public void testFailures() {
+        AssertResult result = record(AssertResult.create(RecordPolicy.FAILURES, 0));
+        Assert.assertEquals(result.getDetails().size(), 5);
+        Assert.assertTrue(result.getDetails().stream().noneMatch(detail -> detail.isPass()));
+    }
+
+    @Test
+    public void testFirstFailures() {
+        AssertResult result = record(AssertResult.create(RecordPolicy.FIRST_FAILURES, 3));
+        Assert.assertEquals(result.getDetails().size(), 3);
+        Assert.assertEquals(result.getDetails().get(0).getActual(), 9);
+        Assert.assertEquals(result.getDroppedFailures(), 2);
+        result.clearDetails();
+        Assert.assertEquals(result.getDetails().size(), 0);
+        Assert.assertEquals(result.getDroppedFailures(), 0);
+    }
+
+    @Test
+    public void testSummary() {
+        AssertResult result = record(AssertResult.create(RecordPolicy.SUMMARY, 0));
+        Assert.assertTrue(result.getDetails().isEmpty());
+        List<ConditionSummary> summaries = new ArrayList<>(result.getSummaries());
+        Assert.assertEquals(summaries.size(), 2);
+        ConditionSummary summary = summaries.get(0);
+        Assert.assertEquals(summary.getEvaluated(), 50);
+        Assert.assertEquals(summary.getPassed(), 45);
+        Assert.assertEquals(summary.getFailed(), 5);
+        Assert.assertEquals(summary.getFirstFailedRow(), 10);
+        Assert.assertEquals(summary.getFirstFailedValue(), 9);
+        Assert.assertFalse(summary.isPass());
+        Assert.assertEquals(summary.getTableRow().length, ConditionSummary.getTableHeader().length);
+        Assert.assertTrue(summaries.get(1).isPass());
+        Assert.assertEquals(summaries.get(1).getFirstFailedRow(), -1);
+    }
+
+    /**
+     * 50 rows tested by 2 conditions, values 9,19,29,39,49 failed by the first condition
+     **/
+    private AssertResult record(AssertResult result) {
+        Condition lastDigit = Condition.create("v", Comparator.NOT_EQUAL, 9);
+        Condition notNull = Condition.create("v", Comparator.NOT_NULL);
+        for (int row = 1; row <= 50; row++) {
+            int value = row - 1;
+            result.add(value % 10 != 9, lastDigit, value, row);
+            result.add(true, notNull, value, row);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,208 @@
+package com.github.cysong.dbassert;
+
+import com.github.cysong.dbassert.report.AsyncReporter;
+import com.github.cysong.dbassert.report.Reporter;
+import com.github.cysong.dbassert.report.Status;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * AsyncReporter testcases
+ *
+ * @author cysong
+ * @date 2022/9/23 11:00
+ **/
+public class AsyncReporterTest {
+
+    @Test
+    public void testOrderPerThread() throws InterruptedException {
+        RecordingReporter recording = new RecordingReporter();
+        AsyncReporter reporter = AsyncReporter.create(recording, 4);
+        List<Thread> threads = new ArrayList<>();
+        List<String> renderThreads = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 4; i++) {
+            String name = "t" + i;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 20; j++) {
+                    reporter.startStep(name);
+                    reporter.addAttachment(name, () -> {
+                        renderThreads.add(Thread.currentThread().getName());
+                        return "attachment";
+                    });
+                    reporter.endStep(Status.PASSED);
+                }
+            }, name));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        reporter.flush();
+        Assert.assertEquals(recording.events.size(), 4 * 20 * 3);
+        for (int i = 0; i < 4; i++) {
+            String name = "t" + i;
+            List<String> events = recording.events.stream().filter(e -> e.endsWith(name)).collect(Collectors.toList());
+            Assert.assertEquals(events.size(), 40);
+            for (int j = 0; j < events.size(); j += 2) {
+                Assert.assertEquals(events.get(j), "start " + name);
+                Assert.assertEquals(events.get(j + 1), "attach " + name);
+            }
+        }
+        Assert.assertEquals(recording.events.stream().filter("end"::equals).count(), 80);
+        //lazy attachments are rendered by the worker
+        Assert.assertTrue(renderThreads.stream().allMatch("dbassert-reporter"::equals));
+        reporter.close();
+    }
+
+    @Test
+    public void testContextPerThread() throws InterruptedException {
+        StackReporter stack = new StackReporter();
+        AsyncReporter reporter = AsyncReporter.create(stack, 4);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String name = "t" + i;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 20; j++) {
+                    reporter.startStep(name + "-outer");
+                    reporter.startStep(name + "-inner");
+                    reporter.addAttachment(name, "attachment");
+                    reporter.endStep(Status.PASSED);
+                    reporter.addAttachment(name, "attachment");
+                    reporter.endStep(Status.PASSED);
+                }
+            }, name));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        reporter.flush();
+        Assert.assertEquals(stack.events.size(), 4 * 20 * 4);
+        for (int i = 0; i < 4; i++) {
+            String name = "t" + i;
+            List<String> events = stack.events.stream().filter(e -> e.startsWith(name)).collect(Collectors.toList());
+            Assert.assertEquals(events.size(), 80);
+            //reports of a thread are handled in steps started by the same thread whatever threads interleave
+            for (int j = 0; j < events.size(); j += 4) {
+                Assert.assertEquals(events.get(j), name + " attach in " + name + "-inner");
+                Assert.assertEquals(events.get(j + 1), name + "-inner end");
+                Assert.assertEquals(events.get(j + 2), name + " attach in " + name + "-outer");
+                Assert.assertEquals(events.get(j + 3), name + "-outer end");
+            }
+        }
+        reporter.close();
+    }
+
+    @Test
+    public void testBackPressure() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        RecordingReporter recording = new RecordingReporter() {
+            @Override
+            public void startStep(String name) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.startStep(name);
+            }
+        };
+        AsyncReporter reporter = AsyncReporter.create(recording, 2);
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            //the first is taken by the worker, 2 wait in queue, the last waits for space
+            for (int i = 0; i < 4; i++) {
+                reporter.startStep("s" + i);
+            }
+            submitted.countDown();
+        });
+        thread.start();
+        Assert.assertFalse(submitted.await(300, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(reporter.getPending(), 2);
+        blocked.countDown();
+        Assert.assertTrue(submitted.await(3, TimeUnit.SECONDS));
+        reporter.close();
+        Assert.assertEquals(recording.events.size(), 4);
+        //reports after closed are handled by the calling thread
+        reporter.endStep(Status.PASSED);
+        Assert.assertEquals(recording.events.size(), 5);
+    }
+
+    @Test
+    public void testBinaryAttachmentSupported() {
+        //attachments are not compressed for reporters taking them as text
+        Assert.assertFalse(AsyncReporter.create(new RecordingReporter(), 1).isBinaryAttachmentSupported());
+        Assert.assertTrue(AsyncReporter.create(new AllureReporter(), 1).isBinaryAttachmentSupported());
+    }
+
+    /**
+     * reporter keeps steps started in a thread local stack
+     **/
+    private static class StackReporter extends RecordingReporter {
+        final ThreadLocal<Deque<String>> steps = ThreadLocal.withInitial(ArrayDeque::new);
+
+        @Override
+        public void startStep(String name) {
+            steps.get().push(name);
+        }
+
+        @Override
+        public void endStep(Status status) {
+            events.add(steps.get().pop() + " end");
+        }
+
+        @Override
+        public void addAttachment(String name, String content) {
+            events.add(name + " attach in " + steps.get().peek());
+        }
+
+        @Override
+        public Object captureContext() {
+            return new ArrayDeque<>(steps.get());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void restoreContext(Object context) {
+            steps.set(context == null ? new ArrayDeque<>() : new ArrayDeque<>((Deque<String>) context));
+        }
+    }
+
+    private static class RecordingReporter implements Reporter {
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void startStep(String name) {
+            events.add("start " + name);
+        }
+
+        @Override
+        public void endStep(Status status) {
+            events.add("end");
+        }
+
+        @Override
+        public void endStep(Throwable throwable) {
+            events.add("end");
+        }
+
+        @Override
+        public void addAttachment(String name, String content) {
+            events.add("attach " + name);
+        }
+
+        @Override
+        public void addAttachment(String name, String type, String content, String extension) {
+            events.add("attach " + name);
+        }
+    }
+}
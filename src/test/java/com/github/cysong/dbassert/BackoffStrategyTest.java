@@ -0,0 +1,41 @@
+package com.github.cysong.dbassert;
+
+import com.github.cysong.dbassert.constant.Constants;
+import com.github.cysong.dbassert.retry.BackoffStrategy;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * BackoffStrategy testcases
+ *
+ * @author cysong
+ * @date 2022/9/14 14:00
+ **/
+public class BackoffStrategyTest {
+
+    @Test
+    public void testFixed() {
+        BackoffStrategy backoff = BackoffStrategy.fixed(1000);
+        Assert.assertEquals(backoff.nextInterval(1), 1000);
+        Assert.assertEquals(backoff.nextInterval(10), 1000);
+        Assert.assertEquals(BackoffStrategy.fixed(Constants.MAX_RETRY_INTERVAL * 2).nextInterval(1), Constants.MAX_RETRY_INTERVAL);
+    }
+
+    @Test
+    public void testExponential() {
+        BackoffStrategy backoff = BackoffStrategy.exponential(100, 2);
+        Assert.assertEquals(backoff.nextInterval(1), 100);
+        Assert.assertEquals(backoff.nextInterval(2), 200);
+        Assert.assertEquals(backoff.nextInterval(4), 800);
+        Assert.assertEquals(backoff.nextInterval(100), Constants.MAX_RETRY_INTERVAL);
+    }
+
+    @Test
+    public void testJittered() {
+        BackoffStrategy backoff = BackoffStrategy.jittered(BackoffStrategy.fixed(1000), 0.5);
+        for (int i = 1; i <= 100; i++) {
+            long interval = backoff.nextInterval(i);
+            Assert.assertTrue(interval > 500 && interval <= 1000, String.valueOf(interval));
+        }
+    }
+}
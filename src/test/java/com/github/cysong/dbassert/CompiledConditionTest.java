@@ -0,0 +1,133 @@
+package com.github.cysong.dbassert;
+
+import com.github.cysong.dbassert.assertion.CompiledCondition;
+import com.github.cysong.dbassert.assertion.ConditionTester;
+import com.github.cysong.dbassert.assertion.Converter;
+import com.github.cysong.dbassert.constant.Comparator;
+import com.github.cysong.dbassert.expression.Boundary;
+import com.github.cysong.dbassert.expression.Condition;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * CompiledCondition testcases, results must be the same as ConditionTester
+ *
+ * @author cysong
+ * @date 2022/9/7 15:10
+ **/
+public class CompiledConditionTest {
+    private static final List<Object> ACTUALS = Arrays.asList(null, 9, 10, 11, 10L, 9.5d, 10.0d, 10.0f, (short) 10, "10", "9", "alice");
+
+    @Test
+    public void testComparisons() {
+        List<Comparator> comparators = Arrays.asList(Comparator.EQUAL, Comparator.NOT_EQUAL,
+                Comparator.LESS_THAN, Comparator.LESS_THAN_OR_EQUAL,
+                Comparator.GREATER_THAN, Comparator.GREATER_THAN_OR_EQUAL);
+        for (Comparator comparator : comparators) {
+            for (Object expected : Arrays.asList(10, 10L, 10.0d, "10")) {
+                assertSameResult(Condition.create("col", comparator, expected));
+            }
+        }
+    }
+
+    @Test
+    public void testBetween() {
+        assertSameResult(Condition.create("col", Comparator.BETWEEN, Boundary.create(9, 11)));
+        assertSameResult(Condition.create("col", Comparator.BETWEEN, Boundary.create(9, true, 10, false)));
+        assertSameResult(Condition.create("col", Comparator.BETWEEN, Boundary.create("10", true, "11", true)));
+    }
+
+    @Test
+    public void testNoArgs() {
+        for (Comparator comparator : Arrays.asList(Comparator.NULL, Comparator.NOT_NULL)) {
+            assertSameResult(Condition.create("col", comparator));
+        }
+        for (Object actual : Arrays.asList(null, true, false, 1, 0, 1L, 0L, "true", "false", "1", "0")) {
+            Assert.assertEquals(CompiledCondition.compile(Condition.create("col", Comparator.IS_TRUE)).test(actual),
+                    ConditionTester.isTrue(actual));
+            Assert.assertEquals(CompiledCondition.compile(Condition.create("col", Comparator.IS_FALSE)).test(actual),
+                    ConditionTester.isFalse(actual));
+        }
+    }
+
+    @Test
+    public void testContains() {
+        for (Object actual : Arrays.asList(null, "alice", "bob")) {
+            for (Comparator comparator : Arrays.asList(Comparator.CONTAINS, Comparator.NOT_CONTAIN)) {
+                Condition condition = Condition.create("col", comparator, "li");
+                Assert.assertEquals(CompiledCondition.compile(condition).test(actual),
+                        ConditionTester.test(comparator, actual, "li"));
+            }
+        }
+    }
+
+    @Test
+    public void testMembership() {
+        for (Comparator comparator : Arrays.asList(Comparator.IN, Comparator.NOT_IN)) {
+            assertSameResult(Condition.create("col", comparator, Arrays.asList(10, "9")));
+            assertSameResult(Condition.create("col", comparator, Arrays.asList(10L, 11.0d)));
+        }
+        //numbers of the same value are equal whatever the type is
+        Assert.assertTrue(CompiledCondition.compile(Condition.create("col", Comparator.IN, Arrays.asList(1, 2))).test(new BigDecimal("2.00")));
+        Assert.assertFalse(CompiledCondition.compile(Condition.create("col", Comparator.NOT_IN, Arrays.asList(1L, 2L))).test(1));
+        //integers of 19 digits fit in long
+        Assert.assertTrue(CompiledCondition.compile(Condition.create("col", Comparator.IN, Arrays.asList(1000000000000000000L))).test(new BigDecimal("1E+18")));
+        Assert.assertTrue(CompiledCondition.compile(Condition.create("col", Comparator.IN, Arrays.asList(Long.MAX_VALUE))).test(BigInteger.valueOf(Long.MAX_VALUE)));
+        Assert.assertEquals(Converter.toKey(BigInteger.valueOf(Long.MAX_VALUE)), Long.MAX_VALUE);
+        Assert.assertEquals(Converter.toKey(new BigDecimal("1E+18")), 1000000000000000000L);
+        //beyond long, such as bigint unsigned
+        BigInteger unsigned = BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE);
+        Assert.assertEquals(Converter.toKey(unsigned), new BigDecimal(unsigned));
+        Assert.assertFalse(CompiledCondition.compile(Condition.create("col", Comparator.IN, Arrays.asList(Long.MAX_VALUE))).test(unsigned));
+    }
+
+    @Test
+    public void testListComparators() {
+        List<List<Object>> actuals = Arrays.asList(null, Arrays.asList(1, 2, 2, 3), Arrays.asList(3L, 2L, 1L, 2L),
+                Arrays.asList(1, 2, 3), Arrays.asList("1", "2"), Arrays.asList(1.0d, 2.0d, 2.0d, 3.0d));
+        List<Object> expecteds = Arrays.asList(2, "2", Arrays.asList(1, 2, 2, 3), Arrays.asList(2L, 3L), Arrays.asList(4, 5), new ArrayList<>());
+        List<Comparator> comparators = Arrays.asList(Comparator.LIST_EQUALS_AT_ANY_ORDER, Comparator.LIST_CONTAINS,
+                Comparator.LIST_NOT_CONTAIN, Comparator.LIST_CONTAINS_ANY);
+        for (Comparator comparator : comparators) {
+            for (Object expected : expecteds) {
+                if (comparator == Comparator.LIST_EQUALS_AT_ANY_ORDER && !(expected instanceof List)) {
+                    continue;
+                }
+                CompiledCondition compiled = CompiledCondition.compile(Condition.create("col", comparator, expected));
+                for (List<Object> actual : actuals) {
+                    Assert.assertEquals(compiled.test(actual), ConditionTester.test(comparator, actual, expected),
+                            String.format("%s %s %s", actual, comparator, expected));
+                }
+            }
+        }
+        Assert.assertTrue(ConditionTester.listEqualsAtAnyOrder(Arrays.asList(3L, 2L, 1L, 2L), Arrays.asList(1, 2, 2, 3)));
+        Assert.assertFalse(ConditionTester.listEqualsAtAnyOrder(Arrays.asList(1, 2, 3, 3), Arrays.asList(1, 2, 2, 3)));
+    }
+
+    private void assertSameResult(Condition condition) {
+        CompiledCondition compiled = CompiledCondition.compile(condition);
+        for (Object actual : ACTUALS) {
+            Boolean expected = testQuietly(() -> ConditionTester.test(condition.getComparator(), actual, condition.getExpected()));
+            Boolean result = testQuietly(() -> compiled.test(actual));
+            Assert.assertEquals(result, expected, String.format("%s %s %s", actual, condition.getComparator(), condition.getExpected()));
+        }
+    }
+
+    /**
+     * return null if values can not be compared
+     */
+    private Boolean testQuietly(BooleanSupplier supplier) {
+        try {
+            return supplier.getAsBoolean();
+        } catch (ClassCastException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
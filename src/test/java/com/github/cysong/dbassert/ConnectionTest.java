@@ -1,7 +1,11 @@
 package com.github.cysong.dbassert;
 
+import com.github.cysong.dbassert.datasource.ConnectionFactory;
+import com.github.cysong.dbassert.exception.ConnectionPoolException;
+import com.github.cysong.dbassert.option.DbAssertOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.testng.Assert;
 import org.testng.annotations.AfterSuite;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -10,6 +14,11 @@ import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * ConnectionFactory testcases
@@ -20,6 +29,8 @@ import java.sql.SQLException;
 public class ConnectionTest {
     private static final Logger log = LoggerFactory.getLogger(ConnectionTest.class);
     private static String dbFile = "test1.db";
+    private static String pooledDbFile = "pooled.db";
+    private static String pooledDbKey = "pooled";
     private static Connection conn;
 
     @BeforeClass
@@ -39,6 +50,46 @@ public class ConnectionTest {
                 .run();
     }
 
+    @Test
+    public void testPooledConnections() throws Exception {
+        ConnectionFactory factory = DbAssertOptions.getGlobal().getFactory();
+        TestUtils.initDb(factory.getConnectionByDbKey(pooledDbKey));
+        Connection conn1 = factory.borrowConnection(pooledDbKey);
+        Connection conn2 = factory.borrowConnection(pooledDbKey);
+        Connection conn3 = factory.borrowConnection(pooledDbKey);
+        Assert.assertTrue(conn1 != conn2 && conn2 != conn3 && conn1 != conn3);
+        long start = System.currentTimeMillis();
+        Assert.assertThrows(ConnectionPoolException.class, () -> factory.borrowConnection(pooledDbKey));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 500);
+        factory.returnConnection(pooledDbKey, conn3);
+        Assert.assertSame(factory.borrowConnection(pooledDbKey), conn3);
+        //closed connection is evicted when given back
+        conn3.close();
+        factory.returnConnection(pooledDbKey, conn3);
+        Connection conn4 = factory.borrowConnection(pooledDbKey);
+        Assert.assertNotSame(conn4, conn3);
+        Assert.assertFalse(conn4.isClosed());
+        factory.returnConnection(pooledDbKey, conn1);
+        factory.returnConnection(pooledDbKey, conn2);
+        factory.returnConnection(pooledDbKey, conn4);
+
+        //assertions more than pool size wait for connections given back
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            futures.add(executor.submit(() -> DbAssert.create(pooledDbKey)
+                    .table(TestConstants.DEFAULT_TABLE_NAME)
+                    .where("id", 1)
+                    .col("name")
+                    .isEqual("alice")
+                    .run()));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
     @AfterSuite
     public static void tearDown() {
         try {
@@ -46,9 +97,11 @@ public class ConnectionTest {
         } catch (SQLException e) {
             log.error(e.getMessage(), e);
         }
-        File db = new File(dbFile);
-        if (db.exists()) {
-            db.delete();
+        for (String file : new String[]{dbFile, pooledDbFile}) {
+            File db = new File(file);
+            if (db.exists()) {
+                db.delete();
+            }
         }
     }
 }
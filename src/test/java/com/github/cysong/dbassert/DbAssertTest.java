@@ -1,8 +1,33 @@
 package com.github.cysong.dbassert;
 
+import com.github.cysong.dbassert.assertion.AssertResult;
 import com.github.cysong.dbassert.assertion.AssertionExecutor;
+import com.github.cysong.dbassert.assertion.DbAssertExecutor;
+import com.github.cysong.dbassert.assertion.Detail;
+import com.github.cysong.dbassert.assertion.SampleEstimate;
+import com.github.cysong.dbassert.datasource.ConnectionFactory;
+import com.github.cysong.dbassert.datasource.QueryCoalescer;
+import com.github.cysong.dbassert.datasource.ResultCache;
+import com.github.cysong.dbassert.datasource.Snapshot;
+import com.github.cysong.dbassert.datasource.Snapshots;
+import com.github.cysong.dbassert.datasource.StatementCache;
+import com.github.cysong.dbassert.constant.RecordPolicy;
+import com.github.cysong.dbassert.exception.AssertionInterruptedException;
+import com.github.cysong.dbassert.exception.ConfigurationException;
+import com.github.cysong.dbassert.metrics.AssertionListener;
+import com.github.cysong.dbassert.metrics.ConsistencyMetricsListener;
+import com.github.cysong.dbassert.metrics.Histogram;
+import com.github.cysong.dbassert.metrics.HistogramMetricsListener;
+import com.github.cysong.dbassert.metrics.Phase;
 import com.github.cysong.dbassert.option.DbAssertOptions;
 import com.github.cysong.dbassert.option.DbAssertSetup;
+import com.github.cysong.dbassert.probe.ChangeProbe;
+import com.github.cysong.dbassert.probe.ChangeProbes;
+import com.github.cysong.dbassert.retry.BackoffStrategy;
+import com.github.cysong.dbassert.sql.Dialect;
+import com.github.cysong.dbassert.sql.DialectRegistry;
+import com.github.cysong.dbassert.sql.SqlTemplateCache;
+import com.github.cysong.dbassert.utitls.SqlScriptLoader;
 import com.github.cysong.dbassert.utitls.SqlUtils;
 import com.github.cysong.dbassert.utitls.Utils;
 import org.slf4j.Logger;
@@ -13,12 +38,22 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -327,6 +362,808 @@ public class DbAssertTest {
                 .run();
     }
 
+    public void testDetailWithAggregateAssertion(String dbKey) {
+        //aggregates returned along with detail rows by a single query
+        DbAssert.create(dbKey)
+                .table(TestConstants.DEFAULT_TABLE_NAME)
+                .where("gender", "M")
+                .orderBy("id")
+                .rowsEqual(2)
+                .col("name")
+                .countEquals(2)
+                .listEquals(Arrays.asList("bob", "carl"))
+                .col("age")
+                .isNotEqual(10)
+                .countEquals(1)
+                .run();
+        //count(distinct) can not be a window function, fallback to separate queries
+        DbAssert.create(dbKey)
+                .table(TestConstants.DEFAULT_TABLE_NAME)
+                .where("gender", "M")
+                .col("gender")
+                .distinctCountEqual(1)
+                .listHasSize(2)
+                .run();
+    }
+
+    public void testFetchSize(String dbKey) {
+        DbAssert.create(dbKey)
+                .fetchSize(1)
+                .table(TestConstants.DEFAULT_TABLE_NAME)
+                .orderBy("id")
+                .col("id")
+                .isNotNull()
+                .listEquals(Arrays.asList(1, 2, 3))
+                .run();
+    }
+
+    public void testStatementCache(String dbKey) {
+        StatementCache cache = DbAssertOptions.getGlobal().getStatementCache();
+        long hits = cache.getHits();
+        //filter values are bound as parameters, so the same statement is reused
+        for (int id = 1; id <= 3; id++) {
+            DbAssert.create(dbKey)
+                    .table(TestConstants.DEFAULT_TABLE_NAME)
+                    .where("id", id)
+                    .col("name")
+                    .isNotNull()
+                    .run();
+        }
+        Assert.assertTrue(cache.getHits() >= hits + 2);
+    }
+
+    public void testSqlTemplateCache(String dbKey) {
+        SqlTemplateCache cache = DbAssertOptions.getGlobal().getSqlTemplateCache();
+        long hits = cache.getHits();
+        //the same shape with different values is built once and bound again
+        String[] names = {"alice", "bob"};
+        for (int i = 0; i < 3; i++) {
+            int id = i % 2 + 1;
+            DbAssert.create(dbKey)
+                    .pushdown(true)
+                    .table(TestConstants.DEFAULT_TABLE_NAME)
+                    .where("id", id)
+                    .and("name", names[id - 1])
+                    .col("name").isEqual(names[id - 1]).notContain("z" + id)
+                    .col("id").between(id, id + 1)
+                    .countEquals(1)
+                    .run();
+        }
+        Assert.assertTrue(cache.getHits() >= hits + 2);
+        //values bound to a cached template are still verified
+        Assert.assertThrows(AssertionError.class, () -> DbAssert.create(dbKey)
+                .pushdown(true)
+                .retry(false)
+                .table(TestConstants.DEFAULT_TABLE_NAME)
+                .where("id", 2)
+                .and("name", "bob")
+                .col("name").isEqual("alice").notContain("z2")
+                .col("id").between(2, 3)
+                .countEquals(1)
+                .run());
+    }
+
+    public void testMetricsListener(String dbKey) throws SQLException {
+        Connection conn = DbAssertOptions.getGlobal().getFactory().getConnectionByDbKey(dbKey);
+        conn.createStatement().execute("create table metrics_test(id int primary key, v varchar(10))");
+        conn.createStatement().execute("insert into metrics_test values(1,'a'),(2,'b'),(3,'c')");
+        HistogramMetricsListener histograms = HistogramMetricsListener.create();
+        //only metrics of this test, assertions of other tests run in parallel
+        AssertionListener listener = metrics -> {
+            if ("metrics_test".equals(metrics.getTableName())) {
+                histograms.onComplete(metrics);
+            }
+        };
+        DbAssertOptions.getGlobal().addListener(listener);
+        try {
+            DbAssert.create(dbKey)
+                    .table("metrics_test")
+                    .col("v").isNotNull()
+                    .countEquals(3)
+                    .run();
+            Assert.assertThrows(AssertionError.class, () -> DbAssert.create(dbKey)
+                    .retryTimes(2)
+                    .retryInterval(50)
+                    .table("metrics_test")
+                    .col("v").isEqual("a")
+                    .run());
+        } finally {
+            DbAssertOptions.getGlobal().removeListener(listener);
+        }
+        Assert.assertEquals(histograms.getPassed(), 1);
+        Assert.assertEquals(histograms.getFailed(), 1);
+        Assert.assertEquals(histograms.getTimeToPass().getCount(), 1);
+        Assert.assertEquals(histograms.getRetries().getMax(), 2);
+        Assert.assertTrue(histograms.getRowsScanned().getMin() >= 3);
+        Assert.assertTrue(histograms.getBytesFetched().getMin() > 0);
+        for (Phase phase : new Phase[]{Phase.SQL_BUILD, Phase.QUERY_EXECUTE, Phase.ROW_FETCH, Phase.CONDITION_EVALUATE}) {
+            Assert.assertEquals(histograms.getPhase(phase).getCount(), 2);
+            Assert.assertTrue(histograms.getPhase(phase).getMin() > 0, phase.name());
+        }
+        String dump = histograms.dump();
+        log.info(dump);
+        Assert.assertTrue(dump.contains("query_execute(ms)"));
+        histograms.reset();
+        Assert.assertEquals(histograms.getPassed(), 0);
+        Assert.assertEquals(histograms.getPhase(Phase.SQL_BUILD).getCount(), 0);
+    }
+
+    public void testMeasureConsistency(String dbKey) throws SQLException {
+        Connection conn = DbAssertOptions.getGlobal().getFactory().getConnectionByDbKey(dbKey);
+        conn.createStatement().execute("create table consistency_test(id int primary key, v int)");
+        ConsistencyMetricsListener consistency = ConsistencyMetricsListener.create();
+        DbAssertOptions.getGlobal().addListener(consistency);
+        try {
+            for (int i = 1; i <= 2; i++) {
+                updateLater(conn, "insert into consistency_test values(" + i + ", 0)", 300);
+                DbAssert.create(dbKey)
+                        .name("consistency")
+                        .timeout(3000)
+                        .measureConsistency()
+                        .table("consistency_test")
+                        .where("id", i)
+                        .col("v").isEqual(0)
+                        .run();
+            }
+            //measured from the reference timestamp instead of create
+            DbAssert.create(dbKey)
+                    .since(System.currentTimeMillis() - 10000)
+                    .measureConsistency()
+                    .table("consistency_test")
+                    .col("v").isEqual(0)
+                    .run();
+            Assert.assertThrows(AssertionError.class, () -> DbAssert.create(dbKey)
+                    .name("consistency")
+                    .timeout(200)
+                    .measureConsistency()
+                    .table("consistency_test")
+                    .col("v").isEqual(1)
+                    .run());
+        } finally {
+            DbAssertOptions.getGlobal().removeListener(consistency);
+        }
+        Histogram histogram = consistency.getHistogram("consistency");
+        Assert.assertEquals(histogram.getCount(), 2);
+        Assert.assertTrue(histogram.getMin() >= 250 && histogram.getMax() < 1500, consistency.dump());
+        Assert.assertEquals(consistency.getTimeouts("consistency"), 1);
+        Assert.assertTrue(consistency.getHistogram("consistency_test").getMin() >= 10000);
+        log.info(consistency.dump());
+    }
+
+    public void testRunAsync(String dbKey) throws SQLException {
+        Connection conn = DbAssertOptions.getGlobal().getFactory().getConnectionByDbKey(dbKey);
+        conn.createStatement().execute("create table async_test(id int primary key, v int)");
+        updateLater(conn, "insert into async_test with recursive s(x) as (select 1 union all select x+1 from s where x<20) select x, 0 from s", 1000);
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<AssertResult>> futures = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            futures.add(DbAssert.create(dbKey)
+                    .retryInterval(200)
+                    .timeout(5000)
+                    .table("async_test")
+                    .where("id", i)
+                    .col("v").isEqual(0)
+                    .runAsync());
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        long duration = System.currentTimeMillis() - start;
+        Assert.assertTrue(duration >= 1000 && duration < 3000, "duration:" + duration);
+        futures.forEach(future -> {
+            List<Detail> details = future.join().getDetails();
+            Assert.assertFalse(details.isEmpty());
+            Assert.assertTrue(details.stream().allMatch(Detail::isPass));
+        });
+
+        CompletableFuture<AssertResult> failed = DbAssert.create(dbKey)
+                .retry(false)
+                .table("async_test")
+                .col("v").isEqual(1)
+                .runAsync();
+        CompletionException e = Assert.expectThrows(CompletionException.class, failed::join);
+        Assert.assertTrue(e.getCause() instanceof AssertionError);
+    }
+
+    public void testAsyncConcurrencyLimit(String dbKey) {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ChangeProbe probe = (conn, assertion) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Utils.sleep(20);
+            running.decrementAndGet();
+            return null;
+        };
+        DbAssertExecutor executor = DbAssertExecutor.create(8, 4).limit(dbKey, 2);
+        DbAssertOptions.getGlobal().executor(executor);
+        try {
+            List<CompletableFuture<AssertResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(DbAssert.create(dbKey)
+                        .retryInterval(10)
+                        .retryTimes(5)
+                        .changeProbe(probe)
+                        .table(TestConstants.DEFAULT_TABLE_NAME)
+                        .where("id", 1)
+                        .col("name").isEqual("nobody")
+                        .runAsync());
+            }
+            futures.forEach(future -> Assert.expectThrows(CompletionException.class, future::join));
+            Assert.assertEquals(maxRunning.get(), 2);
+            Assert.assertEquals(executor.getPending(), 0);
+            Assert.assertEquals(executor.getRunning(), 0);
+        } finally {
+            DbAssertOptions.getGlobal().executor(null);
+            executor.close();
+        }
+    }
+
+    public void testAsyncCloseWhilePolling(String dbKey) throws InterruptedException {
+        CountDownLatch polling = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        ChangeProbe probe = (conn, assertion) -> {
+            running.incrementAndGet();
+            polling.countDown();
+            //a poll not stopped by interrupt
+            long end = System.currentTimeMillis() + 300;
+            while (System.currentTimeMillis() < end) {
+                Thread.interrupted();
+                Utils.sleep(10);
+            }
+            Thread.interrupted();
+            running.decrementAndGet();
+            return null;
+        };
+        DbAssertExecutor executor = DbAssertExecutor.create(2, 2);
+        DbAssertOptions.getGlobal().executor(executor);
+        try {
+            AtomicInteger runningAtCompletion = new AtomicInteger(-1);
+            CompletableFuture<AssertResult> future = DbAssert.create(dbKey)
+                    .retryInterval(10)
+                    .retryTimes(100)
+                    .changeProbe(probe)
+                    .table(TestConstants.DEFAULT_TABLE_NAME)
+                    .where("id", 1)
+                    .col("name").isEqual("nobody")
+                    .runAsync();
+            future.whenComplete((result, error) -> runningAtCompletion.set(running.get()));
+            Assert.assertTrue(polling.await(3, TimeUnit.SECONDS));
+            executor.close();
+            CompletionException e = Assert.expectThrows(CompletionException.class, future::join);
+            Assert.assertTrue(e.getCause() instanceof AssertionInterruptedException);
+            //the poll running is completed by itself, not failed by close in the middle
+            Assert.assertEquals(runningAtCompletion.get(), 0);
+            Assert.assertEquals(executor.getPending(), 0);
+        } finally {
+            DbAssertOptions.getGlobal().executor(null);
+            executor.close();
+        }
+    }
+
+    public void testQueryCoalescing(String dbKey) throws SQLException {
+        Connection conn = DbAssertOptions.getGlobal().getFactory().getConnectionByDbKey(dbKey);
+        conn.createStatement().execute("create table coalesce_test(id int primary key, v int)");
+        updateLater(conn, "insert into coalesce_test values(1, 0)", 500);
+        DbAssertOptions.getGlobal().coalesceWindow(200);
+        try {
+            QueryCoalescer coalescer = DbAssertOptions.getGlobal().getQueryCoalescer();
+            List<CompletableFuture<AssertResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(DbAssert.create(dbKey)
+                        .retryInterval(100)
+                        .timeout(3000)
+                        .table("coalesce_test")
+                        .where("id", 1)
+                        .col("v").isEqual(0)
+                        .runAsync());
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            Assert.assertTrue(coalescer.getHits() > coalescer.getExecutions(),
+                    "hits:" + coalescer.getHits() + ",executions:" + coalescer.getExecutions());
+            Assert.assertThrows(AssertionError.class, () -> DbAssert.create(dbKey)
+                    .retry(false)
+                    .table("coalesce_test")
+                    .where("id", 1)
+                    .col("v").isEqual(1)
+                    .run());
+        } finally {
+            DbAssertOptions.getGlobal().coalesceWindow(0);
+        }
+        Assert.assertNull(DbAssertOptions.getGlobal().getQueryCoalescer());
+    }
+
+    public void testCoalescedTimeout(String dbKey) throws SQLException {
+        Connection conn = DbAssertOptions.getGlobal().getFactory().getConnectionByDbKey(dbKey);
+        conn.createStatement().execute("create table coalesce_timeout_test(id int primary key, v int)");
+        conn.createStatement().execute("insert into coalesce_timeout_test values(1, 0)");
+        //takes about a second to evaluate
+        String slow = "(select count(*) from (with recursive s(x) as (select 1 union all select x+1 from s where x<2000000) select x from s)) > 0";
+        DbAssertOptions.getGlobal().coalesceWindow(200);
+        try {
+            CompletableFuture<AssertResult> shorter = DbAssert.create(dbKey)
+                    .timeout(300)
+                    .table("coalesce_timeout_test")
+                    .where(slow)
+                    .col("v").isEqual(0)
+                    .runAsync();
+            Utils.sleep(100);
+            CompletableFuture<AssertResult> longer = DbAssert.create(dbKey)
+                    .timeout(10000)
+                    .table("coalesce_timeout_test")
+                    .where(slow)
+                    .col("v").isEqual(0)
+                    .runAsync();
+            CompletionException e = Assert.expectThrows(CompletionException.class, shorter::join);
+            Assert.assertTrue(e.getCause().getMessage().contains("timeout after 300ms"), e.getCause().getMessage());
+            //the timeout of the assertion executing the query is not shared, the waiting one executes it instead
+            Assert.assertTrue(longer.join().getDetails().stream().allMatch(Detail::isPass));
+        } finally {
+            DbAssertOptions.getGlobal().coalesceWindow(0);
+        }
+    }
+
+    public void testResultCache(String dbKey) throws SQLException {
+        Connection conn = DbAssertOptions.getGlobal().getFactory().getConnectionByDbKey(dbKey);
+        conn.createStatement().execute("create table cache_test(id int primary key, v int)");
+        conn.createStatement().execute("insert into cache_test values(1, 0)");
+        DbAssertOptions.getGlobal().resultCacheSize(16);
+        try {
+            ResultCache cache = DbAssertOptions.getGlobal().getResultCache().ttl("cache_test", 60000);
+            for (int i = 0; i < 3; i++) {
+                DbAssert.create(dbKey)
+                        .retry(false)
+                        .table("cache_test")
+                        .where("id", 1)
+                        .col("v").isEqual(0)
+                        .run();
+            }
+            Assert.assertEquals(cache.getMisses(), 1);
+            Assert.assertEquals(cache.getHits(), 2);
+
+            //rows are cached until invalidated
+            conn.createStatement().execute("update cache_test set v=1 where id=1");
+            DbAssert.create(dbKey)
+                    .retry(false)
+                    .table("cache_test")
+                    .where("id", 1)
+                    .col("v").isEqual(0)
+                    .run();
+            cache.invalidate(dbKey, "cache_test");
+            Assert.assertEquals(cache.size(), 0);
+            DbAssert.create(dbKey)
+                    .retry(false)
+                    .table("cache_test")
+                    .where("id", 1)
+                    .col("v").isEqual(1)
+                    .run();
+
+            //rows are dropped when expired
+            cache.ttl("cache_test", 100);
+            conn.createStatement().execute("update cache_test set v=2 where id=1");
+            DbAssert.create(dbKey)
+                    .retryInterval(50)
+                    .timeout(1000)
+                    .table("cache_test")
+                    .where("id", 1)
+                    .col("v").isEqual(2)
+                    .run();
+
+            //tables without TTL are not cached
+            DbAssert.create(dbKey)
+                    .table(TestConstants.DEFAULT_TABLE_NAME)
+                    .where("id", 1)
+                    .col("name").isEqual("alice")
+                    .run();
+            Assert.assertEquals(cache.size(), 1);
+        } finally {
+            DbAssertOptions.getGlobal().resultCacheSize(0);
+        }
+        Assert.assertNull(DbAssertOptions.getGlobal().getResultCache());
+    }
+
+    public void testLoadSqlScript(String dbKey) throws SQLException {
+        Connection conn = DbAssertOptions.getGlobal().getFactory().getConnectionByDbKey(dbKey);
+        StringBuilder script = new StringBuilder("create table script_test(id int primary key, v text);\n");
+        for (int i = 1; i <= 2500; i++) {
+            script.append("insert into script_test(id, v) values(").append(i).append(", 'a;b');\n");
+        }
+        script.append("-- rolled back;\nbegin transaction;\ninsert into script_test values(0, 'x');\nrollback;\n");
+        script.append("update script_test set v='c' where id=1;");
+        SqlScriptLoader.Stats stats = SqlScriptLoader.create(conn)
+                .batchSize(1000)
+                .commitInterval(1000)
+                .load(new ByteArrayInputStream(script.toString().getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(stats.getStatements(), 2505);
+        Assert.assertEquals(stats.getRows(), 2501);
+        Assert.assertEquals(stats.getBatches(), 3);
+        Assert.assertTrue(stats.getRowsPerSecond() > 0);
+        Assert.assertTrue(conn.getAutoCommit());
+        DbAssert.create(dbKey)
+                .retry(false)
+                .pageSize(10000)
+                .table("script_test")
+                .rowsEqual(2500)
+                .col("v").countEquals(2500)
+                .run();
+        DbAssert.create(dbKey)
+                .retry(false)
+                .table("script_test")
+                .where("id", 1)
+                .col("v").isEqual("c")
+                .run();
+    }
+
+    public void testLoadSqlScriptInTransaction(String dbKey) throws SQLException {
+        Connection conn = DbAssertOptions.getGlobal().getFactory().getConnectionByDbKey(dbKey);
+        conn.createStatement().execute("create table script_tx_test(id int primary key)");
+        conn.setAutoCommit(false);
+        try {
+            conn.createStatement().execute("insert into script_tx_test values(1)");
+            //a failed script only rolls back its own changes
+            Assert.assertThrows(RuntimeException.class, () -> SqlScriptLoader.create(conn)
+                    .load(new ByteArrayInputStream("insert into script_tx_test values(2);\ninsert into script_tx_test values(2);"
+                            .getBytes(StandardCharsets.UTF_8))));
+            Assert.assertEquals(countRows(conn, "script_tx_test"), 1);
+            SqlScriptLoader.create(conn)
+                    .commitInterval(1)
+                    .load(new ByteArrayInputStream(("insert into script_tx_test values(3);\nbegin;\n" +
+                            "insert into script_tx_test values(4);\nrollback;").getBytes(StandardCharsets.UTF_8)));
+            Assert.assertEquals(countRows(conn, "script_tx_test"), 2);
+            Assert.assertFalse(conn.getAutoCommit());
+            //nothing committed by the script
+            conn.rollback();
+            Assert.assertEquals(countRows(conn, "script_tx_test"), 0);
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    public void testSnapshot(String dbKey) throws SQLException {
+        ConnectionFactory factory = DbAssertOptions.getGlobal().getFactory();
+        Connection conn = factory.getConnectionByDbKey(dbKey);
+        conn.createStatement().execute("create table snapshot_test(id int primary key, v int)");
+        conn.createStatement().execute("insert into snapshot_test values(1, 0),(2, 0)");
+        try (Snapshot snapshot = factory.snapshot(dbKey)) {
+            for (int i = 0; i < 2; i++) {
+                conn.createStatement().execute("update snapshot_test set v=1");
+                conn.createStatement().execute("insert into snapshot_test values(3, 1)");
+                conn.createStatement().execute("create table snapshot_extra(id int)");
+                snapshot.restore();
+                DbAssert.create(dbKey)
+                        .retry(false)
+                        .table("snapshot_test")
+                        .rowsEqual(2)
+                        .col("v").isEqual(0)
+                        .run();
+                DbAssert.create(dbKey)
+                        .retry(false)
+                        .failIfNotFound(false)
+                        .table("sqlite_master")
+                        .where("name", "snapshot_extra")
+                        .rowsEqual(0)
+                        .run();
+            }
+        }
+
+        //savepoint restores changes not committed of the shared connection
+        try (Snapshot snapshot = Snapshots.savepoint(factory, dbKey)) {
+            conn.createStatement().execute("delete from snapshot_test");
+            snapshot.restore();
+            DbAssert.create(dbKey)
+                    .retry(false)
+                    .table("snapshot_test")
+                    .rowsEqual(2)
+                    .run();
+        }
+        Assert.assertTrue(conn.getAutoCommit());
+    }
+
+    public void testSample(String dbKey) throws SQLException {
+        Connection conn = DbAssertOptions.getGlobal().getFactory().getConnectionByDbKey(dbKey);
+        conn.createStatement().execute("create table sample_test(id int primary key, v int)");
+        conn.createStatement().execute("insert into sample_test with recursive s(x) as (select 1 union all select x+1 from s where x<5000) " +
+                "select x, case when x % 200 = 0 then 1 else 0 end from s");
+        SampleEstimate first = null;
+        for (int i = 0; i < 2; i++) {
+            AssertResult result = DbAssert.create(dbKey)
+                    .retry(false)
+                    .table("sample_test")
+                    .sample(1000, 0.05)
+                    .sampleSeed(7)
+                    .col("v").isEqual(0)
+                    .runAsync().join();
+            SampleEstimate estimate = result.getSampleEstimate();
+            Assert.assertEquals(estimate.getSampled(), 1000, estimate.toString());
+            Assert.assertTrue(estimate.isPass() && estimate.getUpper() < 0.05, estimate.toString());
+            if (first == null) {
+                first = estimate;
+            } else {
+                //the same seed samples the same rows
+                Assert.assertEquals(estimate.getSampled(), first.getSampled());
+                Assert.assertEquals(estimate.getViolated(), first.getViolated());
+            }
+        }
+
+        //violation rate of 0.5% can not be within tolerance of 0.1%
+        Assert.assertThrows(AssertionError.class, () -> DbAssert.create(dbKey)
+                .retry(false)
+                .table("sample_test")
+                .sample(4000, 0.001)
+                .col("v").isEqual(0)
+                .run());
+        //samples too small to pass even without violation are rejected
+        ConfigurationException e = Assert.expectThrows(ConfigurationException.class, () -> DbAssert.create(dbKey)
+                .table("sample_test")
+                .sample(2000, 0.001)
+                .col("v").isEqual(0)
+                .run());
+        Assert.assertTrue(e.getMessage().contains("at least " + SampleEstimate.getMinSampleSize(0.95, 0.001) + " rows"), e.getMessage());
+        Assert.assertThrows(ConfigurationException.class, () -> DbAssert.create(dbKey)
+                .table("sample_test")
+                .sample(4000, 0)
+                .col("v").isEqual(0)
+                .run());
+
+        //total rows are verified on all rows
+        DbAssert.create(dbKey)
+                .retry(false)
+                .table("sample_test")
+                .sample(100, 0.1)
+                .rowsEqual(5000)
+                .col("v").isEqual(0)
+                .run();
+
+        //violations clustered in a block of keys are drawn at their rate
+        conn.createStatement().execute("update sample_test set v=1 where id between 1001 and 1250");
+        Assert.assertThrows(AssertionError.class, () -> DbAssert.create(dbKey)
+                .retry(false)
+                .table("sample_test")
+                .sample(1000, 0.02)
+                .col("v").isEqual(0)
+                .run());
+        Assert.assertThrows(ConfigurationException.class, () -> DbAssert.create(dbKey)
+                .table("sample_test")
+                .fullScan()
+                .sample(100, 0.1)
+                .col("v").isEqual(0)
+                .run());
+    }
+
+    public void testRecordPolicy(String dbKey) {
+        for (RecordPolicy policy : RecordPolicy.values()) {
+            DbAssert.create(dbKey)
+                    .recordPolicy(policy)
+                    .table(TestConstants.DEFAULT_TABLE_NAME)
+                    .where("id", 1)
+                    .col("name").isEqual("alice")
+                    .countEquals(1)
+                    .run();
+            Assert.assertThrows(AssertionError.class, () -> DbAssert.create(dbKey)
+                    .recordPolicy(policy)
+                    .retry(false)
+                    .table(TestConstants.DEFAULT_TABLE_NAME)
+                    .col("id").lessThan(2)
+                    .run());
+        }
+        Assert.assertThrows(AssertionError.class, () -> DbAssert.create(dbKey)
+                .recordFirstFailures(1)
+                .retry(false)
+                .table(TestConstants.DEFAULT_TABLE_NAME)
+                .col("id").lessThan(2)
+                .run());
+    }
+
+    public void testDialect(String dbKey) {
+        Connection conn = DbAssertOptions.getGlobal().getFactory().getConnectionByDbKey(dbKey);
+        Dialect dialect = DialectRegistry.getDialect(conn);
+        //resolved once per connection
+        Assert.assertSame(DialectRegistry.getDialect(conn), dialect);
+        Assert.assertTrue(dialect.isSqlite());
+        Assert.assertTrue(dialect.isWindowFunctionSupported());
+        Assert.assertEquals(dialect.getLimitSyntax().getStatement(1, 2), " limit 2 offset 1");
+        Assert.assertEquals(Dialect.LimitSyntax.OFFSET_FETCH.getStatement(1, 2), " offset 1 rows fetch next 2 rows only");
+        DbAssert.create(dbKey)
+                .startIndex(1)
+                .table(TestConstants.DEFAULT_TABLE_NAME)
+                .orderBy("id")
+                .col("id")
+                .listEquals(Arrays.asList(2, 3))
+                .run();
+    }
+
+    public void testPushdown(String dbKey) {
+        //all conditions evaluated by database
+        DbAssert.create(dbKey)
+                .pushdown(true)
+                .table(TestConstants.DEFAULT_TABLE_NAME)
+                .where("gender", "M")
+                .col("id").greaterThan(1).between(2, 3).in(Arrays.asList(2, 3, 4)).notIn(Arrays.asList(1))
+                .col("age").lessThan(30).isNotEqual(10)
+                .col("adult").isNotEqual(false)
+                .col("gender").isEqual("M").notContain("F")
+                .run();
+        //list and predicate conditions still evaluated by detail rows
+        DbAssert.create(dbKey)
+                .pushdown(true)
+                .table(TestConstants.DEFAULT_TABLE_NAME)
+                .orderBy("id")
+                .col("id").isNotNull().listEquals(Arrays.asList(1, 2, 3))
+                .col("gender").matches(gender -> gender != null)
+                .run();
+    }
+
+    @Test(dataProvider = DB_PROVIDER, expectedExceptions = AssertionError.class,
+            expectedExceptionsMessageRegExp = "age expected greater than 15, actual is 10")
+    public void testPushdownFail(String dbKey) {
+        DbAssert.create(dbKey)
+                .pushdown(true)
+                .retry(false)
+                .table(TestConstants.DEFAULT_TABLE_NAME)
+                .where("gender", "F")
+                .col("age").greaterThan(15)
+                .run();
+    }
+
+    public void testFullScan(String dbKey) {
+        //a chunk of one row, all rows are read by keyset pagination
+        DbAssert.create(dbKey)
+                .fullScan()
+                .pageSize(1)
+                .table(TestConstants.DEFAULT_TABLE_NAME)
+                .rowsEqual(3)
+                .col("id").isNotNull().listIsOrderedAsc().listHasSize(3).listEquals(Arrays.asList(1, 2, 3))
+                .col("gender").in(Arrays.asList("M", "F")).listContains(Arrays.asList("M", "F")).listNotContain("X")
+                .run();
+        DbAssert.create(dbKey)
+                .fullScan("id")
+                .pushdown(true)
+                .pageSize(2)
+                .table(TestConstants.DEFAULT_TABLE_NAME)
+                .where("gender", "M")
+                .col("id").greaterThan(1).listEqualAtAnyOrder(Arrays.asList(3L, 2L))
+                .run();
+    }
+
+    @Test(dataProvider = DB_PROVIDER, expectedExceptions = AssertionError.class,
+            expectedExceptionsMessageRegExp = "list of id expected ordered descending .*unordered at index 1")
+    public void testFullScanFail(String dbKey) {
+        DbAssert.create(dbKey)
+                .fullScan()
+                .pageSize(1)
+                .retry(false)
+                .table(TestConstants.DEFAULT_TABLE_NAME)
+                .col("id").listIsOrderedDesc()
+                .run();
+    }
+
+    @Test(dataProvider = DB_PROVIDER, expectedExceptions = ConfigurationException.class)
+    public void testFullScanWithSort(String dbKey) {
+        DbAssert.create(dbKey)
+                .fullScan()
+                .table(TestConstants.DEFAULT_TABLE_NAME)
+                .orderBy("name")
+                .col("id").isNotNull()
+                .run();
+    }
+
+    public void testTimeout(String dbKey) {
+        long start = System.currentTimeMillis();
+        try {
+            DbAssert.create(dbKey)
+                    .timeout(1500)
+                    .backoff(BackoffStrategy.exponential(100, 2))
+                    .table(TestConstants.DEFAULT_TABLE_NAME)
+                    .where("id", 1)
+                    .col("name").isEqual("nobody")
+                    .run();
+            Assert.fail("AssertionError expected");
+        } catch (AssertionError e) {
+            Assert.assertTrue(e.getMessage().contains("nobody"), e.getMessage());
+        }
+        long duration = System.currentTimeMillis() - start;
+        Assert.assertTrue(duration >= 700 && duration < 2500, "duration:" + duration);
+    }
+
+    public void testQueryCancelledAtDeadline(String dbKey) {
+        long start = System.currentTimeMillis();
+        try {
+            DbAssert.create(dbKey)
+                    .timeout(1000)
+                    .table(TestConstants.DEFAULT_TABLE_NAME)
+                    .where("(with recursive c(x) as (select 1 union all select x+1 from c where x<1000000000) select count(*) from c)>0")
+                    .col("name").isNotNull()
+                    .run();
+            Assert.fail("AssertionError expected");
+        } catch (AssertionError e) {
+            Assert.assertTrue(e.getMessage().contains("timeout"), e.getMessage());
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 3000);
+    }
+
+    public void testInterrupt(String dbKey) throws InterruptedException {
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                DbAssert.create(dbKey)
+                        .retryInterval(1000)
+                        .table(TestConstants.DEFAULT_TABLE_NAME)
+                        .where("id", 1)
+                        .col("name").isEqual("nobody")
+                        .run();
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        thread.start();
+        Utils.sleep(500);
+        thread.interrupt();
+        thread.join(3000);
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertTrue(error.get() instanceof AssertionInterruptedException, String.valueOf(error.get()));
+    }
+
+    public void testChangeProbe(String dbKey) throws SQLException {
+        Connection conn = DbAssertOptions.getGlobal().getFactory().getConnectionByDbKey(dbKey);
+        conn.createStatement().execute("create table probe_test(id int primary key, v int)");
+        conn.createStatement().execute("insert into probe_test values(1, 0)");
+        updateLater(conn, "update probe_test set v=1 where id=1", 300);
+        long start = System.currentTimeMillis();
+        DbAssert.create(dbKey)
+                .changeProbe(ChangeProbes.sqliteDataVersion())
+                .retryInterval(200)
+                .retryTimes(20)
+                .table("probe_test")
+                .col("v").isEqual(1)
+                .run();
+        Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+
+        //fingerprint never moves, only the final poll is verified
+        updateLater(conn, "update probe_test set v=2 where id=1", 300);
+        start = System.currentTimeMillis();
+        DbAssert.create(dbKey)
+                .changeProbe((c, assertion) -> "unchanged")
+                .retryInterval(200)
+                .retryTimes(5)
+                .table("probe_test")
+                .col("v").isEqual(2)
+                .run();
+        Assert.assertTrue(System.currentTimeMillis() - start >= 900);
+    }
+
+    public void testWaitOnChange(String dbKey) throws SQLException {
+        Connection conn = DbAssertOptions.getGlobal().getFactory().getConnectionByDbKey(dbKey);
+        conn.createStatement().execute("create table wait_test(id int primary key, v int)");
+        conn.createStatement().execute("insert into wait_test values(1, 0)");
+        updateLater(conn, "update wait_test set v=1 where id=1", 300);
+        long start = System.currentTimeMillis();
+        //woken up by the write instead of waiting the whole interval
+        DbAssert.create(dbKey)
+                .waitOnChange(true)
+                .retryInterval(5000)
+                .retryTimes(2)
+                .table("wait_test")
+                .col("v").isEqual(1)
+                .run();
+        Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+
+    private static int countRows(Connection conn, String table) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("select count(*) from " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private void updateLater(Connection conn, String sql, long delay) {
+        new Thread(() -> {
+            Utils.sleep(delay);
+            try {
+                conn.createStatement().executeUpdate(sql);
+            } catch (SQLException e) {
+                log.error(e.getMessage(), e);
+            }
+        }).start();
+    }
+
     public void testSuccessIfNotFound(String dbKey) {
         DbAssert.create(dbKey)
                 .table(TestConstants.DEFAULT_TABLE_NAME)
@@ -0,0 +1,59 @@
+package com.github.cysong.dbassert;
+
+import com.github.cysong.dbassert.metrics.Histogram;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Histogram testcases
+ *
+ * @author cysong
+ * @date 2022/9/20 14:00
+ **/
+public class HistogramTest {
+
+    @Test
+    public void testSmallValues() {
+        Histogram histogram = Histogram.create();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(histogram.getCount(), 10);
+        Assert.assertEquals(histogram.getMin(), 1);
+        Assert.assertEquals(histogram.getMax(), 10);
+        Assert.assertEquals(histogram.getMean(), 5.5);
+        Assert.assertEquals(histogram.getPercentile(50), 5);
+        Assert.assertEquals(histogram.getPercentile(100), 10);
+    }
+
+    @Test
+    public void testPercentiles() {
+        Histogram histogram = Histogram.create();
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertNear(histogram.getPercentile(50), 50_000_000L);
+        assertNear(histogram.getPercentile(95), 95_000_000L);
+        assertNear(histogram.getPercentile(99), 99_000_000L);
+        Assert.assertEquals(histogram.getPercentile(100), 100_000_000L);
+        Assert.assertEquals(histogram.getPercentile(0), 1000L);
+    }
+
+    @Test
+    public void testEmptyAndReset() {
+        Histogram histogram = Histogram.create();
+        Assert.assertEquals(histogram.getPercentile(99), 0);
+        Assert.assertEquals(histogram.getMax(), 0);
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(histogram.getMin(), 0);
+        Assert.assertEquals(histogram.getPercentile(100), Long.MAX_VALUE);
+        histogram.reset();
+        Assert.assertEquals(histogram.getCount(), 0);
+        Assert.assertEquals(histogram.getMean(), 0.0);
+    }
+
+    private void assertNear(long actual, long expected) {
+        Assert.assertTrue(Math.abs(actual - expected) <= expected * 0.07, actual + " not near " + expected);
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.cysong.dbassert;
+
+import com.github.cysong.dbassert.report.ReportFormat;
+import com.github.cysong.dbassert.report.ReportWriter;
+import com.github.cysong.dbassert.utitls.Utils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * ReportWriter testcases
+ *
+ * @author cysong
+ * @date 2022/9/24 11:00
+ **/
+public class ReportWriterTest {
+
+    @Test
+    public void testHtml() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ReportWriter writer = ReportWriter.create(out, ReportFormat.HTML, 2, 0, false)) {
+            writer.writeHeader("title", "column", "value");
+            Assert.assertTrue(writer.writeRow(true, "name", "<alice>"));
+            Assert.assertTrue(writer.writeRow(false, "name", "bob & cole"));
+            Assert.assertFalse(writer.writeRow(true, "name", "dave"));
+            writer.skipRows(2);
+        }
+        String html = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        Assert.assertTrue(html.startsWith("<html>"));
+        Assert.assertTrue(html.endsWith("</html>"));
+        Assert.assertTrue(html.contains("<th>column</th><th>value</th>"));
+        Assert.assertTrue(html.contains("<td>&lt;alice&gt;</td>"));
+        Assert.assertTrue(html.contains("<tr bgcolor=\"red\"><td>name</td><td>bob &amp; cole</td></tr>"));
+        Assert.assertFalse(html.contains("dave"));
+        Assert.assertTrue(html.contains("truncated, 3 more rows not written"));
+    }
+
+    @Test
+    public void testJsonLinesByteLimit() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReportWriter writer = ReportWriter.create(out, ReportFormat.JSONL, 0, 100, false);
+        writer.writeHeader(null, "column", "value");
+        int written = 0;
+        for (int i = 0; i < 10; i++) {
+            if (writer.writeRow(i % 2 == 0, "v", "line\n\"" + i + "\"")) {
+                written++;
+            }
+        }
+        writer.close();
+        Assert.assertTrue(writer.getBytes() <= 100);
+        Assert.assertEquals(writer.getRows(), written);
+        Assert.assertEquals(writer.getSkippedRows(), 10 - written);
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        Assert.assertEquals(lines.length, written + 1);
+        Assert.assertEquals(lines[0], "{\"column\":\"v\",\"value\":\"line\\n\\\"0\\\"\",\"pass\":true}");
+        Assert.assertEquals(lines[written], "{\"truncated\":true,\"skippedRows\":" + (10 - written) + "}");
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ReportWriter writer = ReportWriter.create(out, ReportFormat.JSONL, 0, 0, true)) {
+            writer.writeHeader(null, "id");
+            for (int i = 0; i < 10000; i++) {
+                writer.writeRow(true, "same value");
+            }
+        }
+        String content = Utils.readInputStreamAsString(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())));
+        Assert.assertEquals(content.split("\n").length, 10000);
+        Assert.assertTrue(out.size() < content.length() / 10);
+        Assert.assertEquals(ReportFormat.JSONL.getExtension(true), "jsonl.gz");
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.cysong.dbassert;
+
+import com.github.cysong.dbassert.assertion.SampleEstimate;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * SampleEstimate testcases
+ *
+ * @author cysong
+ * @date 2022/9/29 14:00
+ **/
+public class SampleEstimateTest {
+
+    @Test
+    public void testWilsonInterval() {
+        SampleEstimate estimate = SampleEstimate.create(100, 10, 0.95, 0.2);
+        Assert.assertEquals(estimate.getRate(), 0.1, 1e-9);
+        Assert.assertEquals(estimate.getLower(), 0.0552, 1e-3);
+        Assert.assertEquals(estimate.getUpper(), 0.1744, 1e-3);
+        Assert.assertTrue(estimate.isPass());
+        Assert.assertFalse(SampleEstimate.create(100, 10, 0.95, 0.15).isPass());
+
+        //higher confidence gives a wider interval
+        SampleEstimate wider = SampleEstimate.create(100, 10, 0.99, 0.2);
+        Assert.assertTrue(wider.getLower() < estimate.getLower() && wider.getUpper() > estimate.getUpper());
+    }
+
+    @Test
+    public void testNoViolation() {
+        SampleEstimate estimate = SampleEstimate.create(1000, 0, 0.95, 0.01);
+        Assert.assertEquals(estimate.getLower(), 0, 1e-9);
+        Assert.assertEquals(estimate.getUpper(), 0.00383, 1e-4);
+        Assert.assertTrue(estimate.isPass());
+        //too few rows sampled to be confident even if no violation
+        Assert.assertFalse(SampleEstimate.create(100, 0, 0.95, 0.01).isPass());
+        Assert.assertTrue(estimate.toString().contains("95% confidence interval"), estimate.toString());
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.cysong.dbassert;
+
+import com.github.cysong.dbassert.utitls.SqlScriptReader;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SqlScriptReader testcases
+ *
+ * @author cysong
+ * @date 2022/9/27 14:00
+ **/
+public class SqlScriptReaderTest {
+
+    @Test
+    public void testStatements() throws IOException {
+        Assert.assertEquals(read("select 1; select 2;\n\n;select 3", false),
+                Arrays.asList("select 1", "select 2", "select 3"));
+        Assert.assertEquals(read("  ;\n  ", false), Arrays.asList());
+    }
+
+    @Test
+    public void testQuotes() throws IOException {
+        Assert.assertEquals(read("insert into t values('a;b', \"c;d\", `e;f`);select 'it''s;'", false),
+                Arrays.asList("insert into t values('a;b', \"c;d\", `e;f`)", "select 'it''s;'"));
+        //backslash only escapes quotes if enabled
+        Assert.assertEquals(read("select 'a\\';b';select 1", true),
+                Arrays.asList("select 'a\\';b'", "select 1"));
+        Assert.assertEquals(read("select 'a\\';select 1", false),
+                Arrays.asList("select 'a\\'", "select 1"));
+    }
+
+    @Test
+    public void testComments() throws IOException {
+        Assert.assertEquals(read("-- drop; table\nselect 1; /* a; b */select 2 -- c;\n;select '--;/*'", false),
+                Arrays.asList("select 1", "select 2", "select '--;/*'"));
+    }
+
+    @Test
+    public void testDollarQuotes() throws IOException {
+        Assert.assertEquals(read("create function f() as $$ begin; end; $$;select 1", false),
+                Arrays.asList("create function f() as $$ begin; end; $$", "select 1"));
+        Assert.assertEquals(read("select $tag$ a;$$;b $tag$;select $1;select a$b", false),
+                Arrays.asList("select $tag$ a;$$;b $tag$", "select $1", "select a$b"));
+    }
+
+    @Test
+    public void testLargeScript() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append("insert into t values(").append(i).append(", 'v;").append(i).append("');\n");
+        }
+        List<String> statements = read(sb.toString(), false);
+        Assert.assertEquals(statements.size(), 10000);
+        Assert.assertEquals(statements.get(9999), "insert into t values(9999, 'v;9999')");
+    }
+
+    private List<String> read(String script, boolean backslashEscapes) throws IOException {
+        List<String> statements = new ArrayList<>();
+        try (SqlScriptReader reader = SqlScriptReader.create(new StringReader(script), backslashEscapes)) {
+            String statement;
+            while ((statement = reader.next()) != null) {
+                statements.add(statement);
+            }
+        }
+        return statements;
+    }
+}
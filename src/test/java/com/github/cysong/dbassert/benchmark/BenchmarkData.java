@@ -0,0 +1,86 @@
+package com.github.cysong.dbassert.benchmark;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * data generator for benchmarks
+ *
+ * @author cysong
+ * @date 2022/9/7 14:30
+ **/
+public class BenchmarkData {
+    public static final String TABLE_NAME = "bench";
+
+    public static Object value(String type, int n) {
+        switch (type) {
+            case "Integer":
+                return n;
+            case "Long":
+                return (long) n;
+            case "Double":
+                return (double) n;
+            case "BigDecimal":
+                return BigDecimal.valueOf(n);
+            case "String":
+                return String.valueOf(n);
+            default:
+                throw new IllegalArgumentException("Unsupported type:" + type);
+        }
+    }
+
+    /**
+     * integer values from 0 to size-1
+     *
+     * @param size list size
+     * @return java.util.List<java.lang.Object>
+     * @author cysong
+     * @date 2022/9/21 10:00
+     **/
+    public static List<Object> list(int size) {
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    /**
+     * create benchmark table with rows of random values
+     *
+     * @param conn database connection
+     * @param rows rows inserted
+     * @author cysong
+     * @date 2022/9/21 10:05
+     **/
+    public static void createTable(Connection conn, int rows) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("drop table if exists " + TABLE_NAME);
+            statement.execute("create table " + TABLE_NAME + "(id integer primary key, name varchar(20), age integer, score double)");
+        }
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        Random random = new Random(42);
+        try (PreparedStatement ps = conn.prepareStatement("insert into " + TABLE_NAME + "(id, name, age, score) values(?,?,?,?)")) {
+            for (int i = 1; i <= rows; i++) {
+                ps.setInt(1, i);
+                ps.setString(2, "name" + i);
+                ps.setInt(3, 18 + random.nextInt(50));
+                ps.setDouble(4, random.nextInt(10000) / 100.0);
+                ps.addBatch();
+                if (i % 1000 == 0) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+        conn.commit();
+        conn.setAutoCommit(autoCommit);
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.cysong.dbassert.benchmark;
+
+import com.github.cysong.dbassert.assertion.CompiledCondition;
+import com.github.cysong.dbassert.assertion.ConditionTester;
+import com.github.cysong.dbassert.constant.Comparator;
+import com.github.cysong.dbassert.expression.Boundary;
+import com.github.cysong.dbassert.expression.Condition;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compare {@link ConditionTester} with {@link CompiledCondition} on a row loop
+ *
+ * @author cysong
+ * @date 2022/9/7 14:30
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionBenchmark {
+
+    @Param({"EQUAL", "NOT_EQUAL", "GREATER_THAN", "LESS_THAN_OR_EQUAL", "BETWEEN", "IN", "CONTAINS"})
+    private String comparator;
+
+    /**
+     * BigDecimal is not included, it's not supported by comparisons of both testers
+     **/
+    @Param({"Integer", "Long", "Double", "String"})
+    private String type;
+
+    @Param({"10000"})
+    private int rows;
+
+    private Object[] values;
+    private Condition condition;
+    private CompiledCondition compiled;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        values = new Object[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = BenchmarkData.value(type, random.nextInt(1000));
+        }
+        Comparator c = Comparator.valueOf(comparator);
+        Object expected;
+        if (c == Comparator.BETWEEN) {
+            expected = Boundary.create("100", "900");
+        } else if (c == Comparator.CONTAINS) {
+            expected = "5";
+        } else if (c == Comparator.IN) {
+            expected = Arrays.asList(1, 10L, "100", 500.0d, 999);
+        } else {
+            expected = "500";
+        }
+        condition = Condition.create("col", c, expected);
+        compiled = CompiledCondition.compile(condition);
+    }
+
+    @Benchmark
+    public void conditionTester(Blackhole bh) {
+        Comparator c = condition.getComparator();
+        Object expected = condition.getExpected();
+        for (Object value : values) {
+            bh.consume(ConditionTester.test(c, asActual(value), expected));
+        }
+    }
+
+    @Benchmark
+    public void compiledCondition(Blackhole bh) {
+        for (Object value : values) {
+            bh.consume(compiled.test(asActual(value)));
+        }
+    }
+
+    private Object asActual(Object value) {
+        //contains only supports string values
+        return condition.getComparator() == Comparator.CONTAINS ? String.valueOf(value) : value;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConditionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.cysong.dbassert.benchmark;
+
+import com.github.cysong.dbassert.DbAssert;
+import com.github.cysong.dbassert.option.DbAssertOptions;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * end-to-end {@link DbAssert#run()} against an in-memory sqlite table,
+ * the table size is set by -p rows=...
+ *
+ * @author cysong
+ * @date 2022/9/21 10:30
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DbAssertBenchmark {
+
+    @Param({"1000", "100000"})
+    private int rows;
+
+    /**
+     * page: verify the first page of rows, aggregate: verify counts only, scan: verify all rows by full scan
+     **/
+    @Param({"page", "aggregate", "scan"})
+    private String mode;
+
+    private Connection conn;
+
+    @Setup
+    public void setup() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        BenchmarkData.createTable(conn, rows);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        DbAssertOptions.getGlobal().getStatementCache().invalidate(conn);
+        conn.close();
+    }
+
+    @Benchmark
+    public void run() {
+        DbAssert dbAssert = DbAssert.create(conn)
+                .retry(false)
+                .table(BenchmarkData.TABLE_NAME);
+        switch (mode) {
+            case "page":
+                dbAssert.col("name").isNotNull()
+                        .col("age").between(18, 70)
+                        .col("id").listIsOrderedAsc();
+                break;
+            case "aggregate":
+                dbAssert.where("age", 30)
+                        .rowsGreaterThan(0)
+                        .col("name").distinctCountGreaterThan(0);
+                break;
+            case "scan":
+                dbAssert.fullScan()
+                        .pageSize(1000)
+                        .col("name").isNotNull()
+                        .col("age").between(18, 70)
+                        .col("id").listIsOrderedAsc();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported mode:" + mode);
+        }
+        dbAssert.run();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DbAssertBenchmark.class.getSimpleName()).build()).run();
+    }
+}
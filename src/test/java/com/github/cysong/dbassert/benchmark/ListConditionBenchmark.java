@@ -0,0 +1,97 @@
+package com.github.cysong.dbassert.benchmark;
+
+import com.github.cysong.dbassert.assertion.CompiledCondition;
+import com.github.cysong.dbassert.assertion.ConditionTester;
+import com.github.cysong.dbassert.assertion.ListAccumulator;
+import com.github.cysong.dbassert.constant.Comparator;
+import com.github.cysong.dbassert.expression.ListCondition;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * list comparators on lists of 1k/10k/100k elements,
+ * tested on the whole list and by streaming values one by one as full scan does
+ *
+ * @author cysong
+ * @date 2022/9/21 10:10
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListConditionBenchmark {
+
+    @Param({"LIST_EQUALS", "LIST_EQUALS_AT_ANY_ORDER", "LIST_CONTAINS", "LIST_CONTAINS_ANY", "LIST_IS_ORDERED_ASC"})
+    private String comparator;
+
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    private List<Object> actual;
+    private ListCondition condition;
+    private CompiledCondition compiled;
+
+    @Setup
+    public void setup() {
+        actual = BenchmarkData.list(size);
+        Comparator c = Comparator.valueOf(comparator);
+        Object expected;
+        switch (c) {
+            case LIST_EQUALS:
+                expected = new ArrayList<>(actual);
+                break;
+            case LIST_EQUALS_AT_ANY_ORDER:
+                List<Object> reversed = new ArrayList<>(actual);
+                Collections.reverse(reversed);
+                expected = reversed;
+                break;
+            case LIST_CONTAINS:
+                List<Object> sample = new ArrayList<>();
+                for (int i = 0; i < size; i += size / 100) {
+                    sample.add((long) i);
+                }
+                expected = sample;
+                break;
+            case LIST_CONTAINS_ANY:
+                //the only value found is the last one
+                expected = Collections.singletonList(size - 1);
+                break;
+            default:
+                expected = null;
+        }
+        condition = ListCondition.create("col", c, expected);
+        compiled = CompiledCondition.compile(condition);
+    }
+
+    @Benchmark
+    public boolean conditionTester() {
+        return ConditionTester.test(condition.getComparator(), actual, condition.getExpected());
+    }
+
+    @Benchmark
+    public boolean compiledCondition() {
+        return compiled.test(actual);
+    }
+
+    @Benchmark
+    public boolean listAccumulator() {
+        ListAccumulator accumulator = ListAccumulator.create(condition);
+        for (Object value : actual) {
+            accumulator.accept(value);
+        }
+        return accumulator.test();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ListConditionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.cysong.dbassert.benchmark;
+
+import com.github.cysong.dbassert.assertion.Assertion;
+import com.github.cysong.dbassert.constant.Comparator;
+import com.github.cysong.dbassert.constant.Sort;
+import com.github.cysong.dbassert.expression.*;
+import com.github.cysong.dbassert.option.DbAssertOptions;
+import com.github.cysong.dbassert.sql.SqlBuilderSelector;
+import com.github.cysong.dbassert.sql.SqlResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * build sql of a realistic assertion, a new assertion with different values is created every invocation
+ *
+ * @author cysong
+ * @date 2022/9/21 10:20
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlBuilderBenchmark {
+
+    @Param({"false", "true"})
+    private boolean pushdown;
+
+    /**
+     * 0 to disable sql template cache
+     **/
+    @Param({"0", "256"})
+    private int templateCacheSize;
+
+    private Connection conn;
+    private int value;
+
+    @Setup
+    public void setup() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        BenchmarkData.createTable(conn, 0);
+        DbAssertOptions.getGlobal().sqlTemplateCacheSize(templateCacheSize);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        DbAssertOptions.getGlobal().getStatementCache().invalidate(conn);
+        conn.close();
+    }
+
+    @Benchmark
+    public SqlResult build() {
+        value++;
+        Assertion assertion = new Assertion(conn);
+        assertion.setTableName(BenchmarkData.TABLE_NAME);
+        assertion.setPushdown(pushdown);
+        assertion.addFilter(Filter.create("age", value % 50));
+        assertion.addFilter(Filter.create("name", Comparator.NOT_NULL, null));
+        assertion.addSort(Sort.create("id"));
+        assertion.addVerify(Condition.create("name", Comparator.NOT_NULL));
+        assertion.addVerify(Condition.create("age", Comparator.BETWEEN, Boundary.create(18, 70)));
+        assertion.addVerify(Condition.create("score", Comparator.LESS_THAN, 100));
+        assertion.addVerify(Condition.create("id", Comparator.NOT_IN, Arrays.asList(value, value + 1)));
+        assertion.addVerify(ListCondition.create("id", Comparator.LIST_IS_ORDERED_ASC, null));
+        assertion.addVerify(CountCondition.create("id", Comparator.GREATER_THAN, 0));
+        return SqlBuilderSelector.getSqlBuilder(assertion).build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SqlBuilderBenchmark.class.getSimpleName()).build()).run();
+    }
+}